@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.guice;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging many modules with {@link ModuleBuilder#build(Module...)}, on its own and
+ * together with creating the injector, where the nested overrides are actually resolved. The
+ * modules bind overlapping keys so that later modules override earlier ones. Run with
+ * {@code ./gradlew jmh -PjmhInclude=ModuleBuilderBenchmark -Pcheck=false}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModuleBuilderBenchmark {
+
+  private static final int DISTINCT_KEYS = 4;
+
+  @Param({"4", "16", "64"})
+  private int count;
+
+  private final ModuleBuilder moduleBuilder = new ModuleBuilder();
+  private Module[] modules;
+
+  /**
+   * Creates the modules merged by the benchmarks.
+   */
+  @Setup
+  public final void setUp() {
+    modules = new Module[count];
+    for (int i = 0; i < count; i += 1) {
+      modules[i] = new ConstantModule("key" + i % DISTINCT_KEYS, "value" + i);
+    }
+  }
+
+  /**
+   * Merges the modules.
+   *
+   * @return The merged module.
+   */
+  @Benchmark
+  public final Module build() {
+    return moduleBuilder.build(modules);
+  }
+
+  /**
+   * Merges the modules and creates an injector from the merged module.
+   *
+   * @return The injector created.
+   */
+  @Benchmark
+  public final Injector buildAndCreateInjector() {
+    return Guice.createInjector(moduleBuilder.build(modules));
+  }
+
+  /**
+   * Module which binds a named string constant.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class ConstantModule extends AbstractModule {
+
+    private final String name;
+    private final String value;
+
+    /**
+     * Constructs a new {@link ConstantModule} instance.
+     *
+     * @param name The name of the constant.
+     * @param value The value of the constant.
+     */
+    private ConstantModule(final String name, final String value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    protected void configure() {
+      bindConstant().annotatedWith(Names.named(name)).to(value);
+    }
+  }
+}
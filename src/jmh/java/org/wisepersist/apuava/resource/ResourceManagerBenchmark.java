@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.resource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link ResourceManager#with(Closeable)} and
+ * {@link ResourceManager#run(ResourceHandler)} against a plain try/finally block closing the
+ * same resource. Run with {@code ./gradlew jmh -PjmhInclude=ResourceManagerBenchmark
+ * -Pcheck=false}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResourceManagerBenchmark {
+
+  private final ResourceManager resourceManager = new ResourceManager();
+  private final CountingCloseable resource = new CountingCloseable();
+
+  /**
+   * Uses and closes the resource in a try/finally block as the baseline.
+   *
+   * @return The number of times the resource was closed.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final long tryFinally() throws IOException {
+    try {
+      return resource.getCount();
+    } finally {
+      resource.close();
+    }
+  }
+
+  /**
+   * Uses and closes the resource with a resource handler returning a result.
+   *
+   * @return The number of times the resource was closed.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final long withRun() throws IOException {
+    return resourceManager.with(resource).run(new ResourceHandler<Long>() {
+      @Override
+      public Long handle(final Closeable closeable) throws IOException {
+        return resource.getCount();
+      }
+    });
+  }
+
+  /**
+   * Uses and closes the resource with a void resource handler.
+   *
+   * @return The number of times the resource was closed.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final long withRunVoid() throws IOException {
+    resourceManager.with(resource).run(new VoidResourceHandler() {
+      @Override
+      public void handle(final Closeable closeable) throws IOException {
+        resource.getCount();
+      }
+    });
+    return resource.getCount();
+  }
+
+  /**
+   * Resource which only counts how many times it was closed.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingCloseable implements Closeable {
+
+    private long count;
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public void close() {
+      count += 1;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up settings of {@link AbstractSettings} as strings and typed values, for
+ * keys which are present, keys which fall back to their defaults and keys overridden by system
+ * properties. Overridden keys cost the same as the others, since overrides are resolved when
+ * the settings are created instead of on each lookup. Run with
+ * {@code ./gradlew jmh -PjmhInclude=SettingsBenchmark -Pcheck=false}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SettingsBenchmark {
+
+  private static final String PATH = "/test/test-settings.properties";
+  private static final String NAME_KEY = "app.name";
+  private static final String MISSING_KEY = "app.missing";
+  private static final int DEFAULT_INT = 42;
+
+  private Settings settings;
+  private Settings overriddenSettings;
+
+  /**
+   * Loads the settings looked up by the benchmarks, and settings whose name is overridden by a
+   * system property.
+   */
+  @Setup
+  public final void setUp() {
+    settings = new FileBasedSettings(PATH);
+    System.setProperty(NAME_KEY, "overridden");
+    try {
+      overriddenSettings = new FileBasedSettings(PATH);
+    } finally {
+      System.clearProperty(NAME_KEY);
+    }
+  }
+
+  /**
+   * Looks up a string setting which is present.
+   *
+   * @return The setting value.
+   */
+  @Benchmark
+  public final String getString() {
+    return settings.getString(NAME_KEY);
+  }
+
+  /**
+   * Looks up a string setting which is overridden by a system property.
+   *
+   * @return The value of the system property.
+   */
+  @Benchmark
+  public final String getStringOverridden() {
+    return overriddenSettings.getString(NAME_KEY);
+  }
+
+  /**
+   * Looks up a string setting which is absent.
+   *
+   * @return The default value.
+   */
+  @Benchmark
+  public final String getStringDefault() {
+    return settings.getString(MISSING_KEY, "default");
+  }
+
+  /**
+   * Looks up an integer setting which is present.
+   *
+   * @return The setting value.
+   */
+  @Benchmark
+  public final Integer getInt() {
+    return settings.getInt("app.int");
+  }
+
+  /**
+   * Looks up an integer setting which is absent.
+   *
+   * @return The default value.
+   */
+  @Benchmark
+  public final Integer getIntDefault() {
+    return settings.getInt(MISSING_KEY, DEFAULT_INT);
+  }
+
+  /**
+   * Looks up a boolean setting which is present.
+   *
+   * @return The setting value.
+   */
+  @Benchmark
+  public final Boolean getBoolean() {
+    return settings.getBoolean("app.boolean");
+  }
+
+  /**
+   * Looks up a double setting which is present.
+   *
+   * @return The setting value.
+   */
+  @Benchmark
+  public final Double getDouble() {
+    return settings.getDouble("app.double");
+  }
+
+  /**
+   * Loads settings layered from several files, which are read in parallel.
+   *
+   * @return The settings loaded.
+   */
+  @Benchmark
+  public final Settings loadLayeredFiles() {
+    return new FileBasedSettings("/test/layer-1.properties", "/test/layer-2.properties",
+        "/test/layer-3.properties", "/test/test-settings.xml", PATH);
+  }
+
+  /**
+   * Settings loaded from the files specified.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileBasedSettings extends AbstractSettings {
+
+    /**
+     * Constructs a new {@link FileBasedSettings} instance.
+     *
+     * @param paths The paths of the settings files.
+     */
+    private FileBasedSettings(final String... paths) {
+      super(paths);
+    }
+
+    @Override
+    protected Class getClassType() {
+      return getClass();
+    }
+
+    @Override
+    protected String getAppConfigFolder() {
+      return "";
+    }
+  }
+}
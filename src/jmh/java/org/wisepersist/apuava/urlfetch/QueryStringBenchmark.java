@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding query strings with {@link URLEncoder}, as done before, against
+ * {@link QueryStrings} with {@link PercentEncoder}. Run with
+ * {@code ./gradlew jmh -PjmhInclude=QueryStringBenchmark -Pcheck=false} and compare the
+ * allocation rates with {@code -prof gc}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryStringBenchmark {
+
+  private static final String CHARSET = "UTF-8";
+
+  @Param({"ascii", "mixed"})
+  private String values;
+
+  @Param({"4", "32"})
+  private int count;
+
+  private List<Map.Entry<String, String>> params;
+
+  /**
+   * Creates the parameters encoded by the benchmarks.
+   */
+  @Setup
+  public final void setUp() {
+    String value = "value-0123456789";
+    if ("mixed".equals(values)) {
+      value = "café & crème";
+    }
+    params = new ArrayList<>(count);
+    for (int i = 0; i < count; i += 1) {
+      params.add(new AbstractMap.SimpleEntry<>("param" + i, value + i));
+    }
+  }
+
+  /**
+   * Encodes the parameters with {@link URLEncoder} as the baseline.
+   *
+   * @return The query string.
+   * @throws UnsupportedEncodingException Never, UTF-8 is always supported.
+   */
+  @Benchmark
+  public final String urlEncoder() throws UnsupportedEncodingException {
+    final StringBuilder query = new StringBuilder();
+    for (final Map.Entry<String, String> pair : params) {
+      if (query.length() > 0) {
+        query.append('&');
+      }
+      query.append(URLEncoder.encode(pair.getKey(), CHARSET));
+      query.append('=');
+      query.append(URLEncoder.encode(pair.getValue(), CHARSET));
+    }
+    return query.toString();
+  }
+
+  /**
+   * Encodes the parameters with {@link QueryStrings}.
+   *
+   * @return The query string.
+   */
+  @Benchmark
+  public final String percentEncoder() {
+    return QueryStrings.join("", params);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole fetches against the embedded Jetty server of the integration tests, so that
+ * regressions anywhere between building the request and reading the body show up. Run with
+ * {@code ./gradlew jmh -PjmhInclude=UrlFetchBenchmark -Pcheck=false}; the server listens on
+ * the same port as in the tests, so they must not run at the same time.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UrlFetchBenchmark {
+
+  private UrlFetcher getFetcher;
+  private UrlFetcher tracedFetcher;
+  private UrlFetcher postFetcher;
+  private UrlRequest getRequest;
+
+  /**
+   * Creates the URL fetchers used by the benchmarks once the server is started.
+   *
+   * @param server The embedded Jetty server.
+   * @throws IOException If the request URL is malformed.
+   */
+  @Setup
+  public final void setUp(final JettyServer server) throws IOException {
+    final String baseUrl = server.getBaseUrl();
+    getFetcher = new UrlFetcher().setUrl(baseUrl + "/testget");
+    tracedFetcher = new UrlFetcher().setUrl(baseUrl + "/testget")
+        .setEventListener(new FetchMetrics());
+    postFetcher = new UrlFetcher().setUrl(baseUrl + "/testecho")
+        .setRequestMethod(RequestMethod.POST).addParam("name", "value");
+    getRequest = getFetcher.toRequest();
+  }
+
+  /**
+   * Fetches a small page, building the request each time.
+   *
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final UrlResponse get() throws IOException {
+    return getFetcher.execute();
+  }
+
+  /**
+   * Fetches a small page with a request built once.
+   *
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final UrlResponse getPrepared() throws IOException {
+    return getRequest.execute();
+  }
+
+  /**
+   * Fetches a small page and decodes the body with a body handler, bypassing
+   * {@link UrlResponse}.
+   *
+   * @return The body bytes.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final byte[] getBytes() throws IOException {
+    return getFetcher.execute(BodyHandlers.ofByteArray());
+  }
+
+  /**
+   * Fetches a small page while recording {@link FetchMetrics}.
+   *
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final UrlResponse getTraced() throws IOException {
+    return tracedFetcher.execute();
+  }
+
+  /**
+   * Posts form parameters which are echoed back.
+   *
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  @Benchmark
+  public final UrlResponse post() throws IOException {
+    return postFetcher.execute();
+  }
+
+  /**
+   * Embedded Jetty server shared by all benchmark threads for the whole trial.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  @State(Scope.Benchmark)
+  public static class JettyServer extends AbstractHttpServerSupport {
+
+    /**
+     * Starts the server and waits until it serves requests.
+     *
+     * @throws Exception If the server fails to start.
+     */
+    @Setup(Level.Trial)
+    public final void start() throws Exception {
+      setUpEnvironment();
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @throws Exception If the server fails to stop.
+     */
+    @TearDown(Level.Trial)
+    public final void stop() throws Exception {
+      tearDownEnvironment();
+    }
+
+    @Override
+    protected final GuiceServletContextListener getGuiceServletContextListener() {
+      return new TestAppGuiceConfig();
+    }
+
+    @Override
+    protected final String getWelcomeServiceMessage() {
+      return TestWelcomeServlet.WELCOME_MESSAGE;
+    }
+  }
+}
@@ -16,9 +16,6 @@
 
 package org.wisepersist.apuava.settings;
 
-import org.apache.commons.lang3.BooleanUtils;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wisepersist.apuava.resource.ResourceHandler;
@@ -28,22 +25,67 @@ import org.wisepersist.apuava.settings.env.EnvType;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 import static org.apache.commons.lang3.StringUtils.isEmpty;
-import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 /**
- * The abstract class for most used config getter methods.
+ * The abstract class for most used config getter methods. The settings are resolved once when
+ * they are created, from layers in precedence order: system properties override environment
+ * variables, which override the settings files. Blank values don't override anything, and the
+ * overridden settings are logged once.
+ *
+ * <p>Environment variables are only read by subclasses which opt in with
+ * {@link #getEnvironmentPrefix()}, so that variables every process has, e.g. {@code PATH} or
+ * {@code HOME}, never replace settings of the same name. They only override settings of the
+ * files, named by the prefix followed by the upper-cased setting name with other characters
+ * than letters and digits replaced by underscores, e.g. {@code MYAPP_APP_INT} for
+ * {@code app.int} with the prefix {@code MYAPP_}.</p>
+ *
+ * <p>The values are kept in a {@link SettingsSnapshot}, parsed to the types they are read as, so
+ * that getters don't lock, parse, allocate or read system properties; system properties set
+ * later are not seen until the settings are reloaded.</p>
+ *
+ * <p>Several settings files are read in parallel, and settings of later files override those of
+ * earlier ones. Files which are rarely used can be added with {@link #addLazyFile(String,
+ * String)}, so that they are only read when one of their settings is first looked up.</p>
+ *
+ * <p>{@link #reload()} reads the settings files again and swaps in a new snapshot atomically, so
+ * getters see either all the old values or all the new ones. {@link SettingsWatcher} reloads the
+ * settings when their files change.</p>
  *
  * @author delight.wjk@gmail.com
  */
+@SuppressWarnings("ClassDataAbstractionCoupling")
 public abstract class AbstractSettings implements Settings { //NOPMD
 
   private static final Logger log = LoggerFactory.getLogger(AbstractSettings.class); //NOPMD
+  private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^A-Za-z0-9]");
 
   private ResourceManager resourceManager = new ResourceManager();
+  private final List<SettingsListener> listeners = new CopyOnWriteArrayList<>();
+  private final Lock reloadLock = new ReentrantLock();
+  private final String[] paths;
+  private final Map<String, String> environment;
+  private final List<LazyFile> lazyFiles = new ArrayList<>();
   private Properties mergedProperties;
+  private volatile SettingsSnapshot snapshot;
+  private volatile String[] lazyPrefixes = new String[0];
 
   /**
    * Constructor by EnvType.
@@ -60,43 +102,380 @@ public abstract class AbstractSettings implements Settings { //NOPMD
    * @param paths The env of this settings.
    */
   public AbstractSettings(final String... paths) {
-    initialize(paths);
+    this(System.getenv(), paths);
+  }
+
+  /**
+   * Constructor by config paths and environment variables.
+   *
+   * @param environment The environment variables which may override settings.
+   * @param paths The resource locations of the settings files.
+   */
+  AbstractSettings(final Map<String, String> environment, final String... paths) {
+    this.environment = environment;
+    this.paths = paths.clone();
+    initialize();
   }
 
   /**
    * Initialize config prop.
-   * @param paths Is the resource location of config.
    */
-  private void initialize(final String... paths) {
-    ensureConfigNotNull();
-    for (final String path : paths) {
-      readConfigFile(path);
+  private void initialize() {
+    mergedProperties = ConfigFilesTask.readAll(this, paths);
+    final SettingsLayers layers = buildLayers();
+    for (final Map.Entry<String, Set<String>> overrides : layers.getOverrides().entrySet()) {
+      log.info("Settings {} are overridden by {}", overrides.getValue(), overrides.getKey());
+    }
+    snapshot = layers.toSnapshot();
+  }
+
+  /**
+   * Reads the settings files again and swaps in the new settings, then notifies the listeners
+   * of the settings whose values changed. The current settings are kept if a file cannot be
+   * read. System properties are read again too, so this is also how system properties set
+   * after the settings were created are picked up.
+   *
+   * @throws IllegalStateException If a settings file cannot be read or parsed.
+   */
+  public final void reload() {
+    final List<SettingChange> changes;
+    reloadLock.lock();
+    try {
+      final Properties properties = ConfigFilesTask.readAll(this, paths);
+      final Map<LazyFile, Properties> lazyProperties = readLoadedLazyFiles();
+      mergedProperties = properties;
+      for (final Map.Entry<LazyFile, Properties> entry : lazyProperties.entrySet()) {
+        entry.getKey().properties = entry.getValue();
+      }
+      final SettingsSnapshot previous = snapshot;
+      snapshot = buildLayers().toSnapshot();
+      changes = diff(previous.asMap(), snapshot.asMap());
+    } finally {
+      reloadLock.unlock();
     }
+    notifyListeners(changes);
   }
 
   /**
-   * Ensures that the {@link #mergedProperties} is not null.
+   * Reads the lazy files which have been read before again.
+   *
+   * @return The settings read, by lazy file.
+   */
+  private Map<LazyFile, Properties> readLoadedLazyFiles() {
+    final Map<LazyFile, Properties> lazyProperties = new HashMap<>();
+    for (final LazyFile lazyFile : lazyFiles) {
+      if (lazyFile.properties != null) {
+        lazyProperties.put(lazyFile, readConfigFile(lazyFile.path));
+      }
+    }
+    return lazyProperties;
+  }
+
+  /**
+   * Finds the settings whose values differ.
+   *
+   * @param previous The previous settings.
+   * @param current The current settings.
+   * @return The settings changed.
+   */
+  private static List<SettingChange> diff(final Map<String, String> previous,
+      final Map<String, String> current) {
+    final Set<String> names = new HashSet<>(previous.keySet());
+    names.addAll(current.keySet());
+    final List<SettingChange> changes = new ArrayList<>();
+    for (final String name : names) {
+      final String oldValue = previous.get(name);
+      final String newValue = current.get(name);
+      if (!Objects.equals(oldValue, newValue)) {
+        changes.add(new SettingChange(name, oldValue, newValue));
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Notifies the listeners of the settings changed. It is called without holding the reload
+   * lock, so listeners may read the settings or reload them again. An error thrown by a
+   * listener is logged and doesn't keep the other listeners from being notified.
+   *
+   * @param changes The settings changed.
+   */
+  @SuppressWarnings("IllegalCatch")
+  private void notifyListeners(final List<SettingChange> changes) {
+    for (final SettingChange change : changes) {
+      log.info("Setting {} changed", change.name);
+      for (final SettingsListener listener : listeners) {
+        try {
+          listener.onChange(change.name, change.oldValue, change.newValue);
+        } catch (final RuntimeException ex) { //NOPMD
+          log.warn("Settings listener failed on change of " + change.name, ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a listener which is notified of the settings changed when the settings are reloaded.
+   *
+   * @param listener The listener specified.
+   */
+  public final void addListener(final SettingsListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener added before.
+   *
+   * @param listener The listener specified.
+   */
+  public final void removeListener(final SettingsListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Adds a settings file which is only read when a setting whose name starts with the prefix
+   * specified is first looked up, e.g. from the constructor of the concrete settings class.
+   * Settings of lazy files override those of the files passed to the constructor, and those of
+   * lazy files added earlier. Lookups of other settings don't read the file, even if they are
+   * in it. If the file cannot be read or parsed when it is first looked up, the error is logged
+   * and the settings of the file are treated as absent, so that getters return their defaults.
+   *
+   * @param prefix The prefix of the names of the settings in the file.
+   * @param path The path of the settings file.
+   * @throws IllegalStateException If the settings file doesn't exist.
+   */
+  protected final void addLazyFile(final String prefix, final String path) {
+    if (getResource(path) == null) {
+      throw new IllegalStateException("Couldn't find resource file " + path);
+    }
+    reloadLock.lock();
+    try {
+      lazyFiles.add(new LazyFile(prefix, path));
+      lazyPrefixes = getPendingPrefixes();
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the snapshot to look up a setting in, after reading the lazy files of the setting if
+   * they haven't been read yet.
+   *
+   * @param name The setting name specified.
+   * @return The snapshot of the settings.
+   */
+  private SettingsSnapshot snapshotOf(final String name) {
+    for (final String prefix : lazyPrefixes) {
+      if (name.startsWith(prefix)) {
+        readLazyFiles(name);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Reads the lazy files of a setting which haven't been read yet, and swaps in the settings
+   * read.
+   *
+   * @param name The setting name specified.
+   */
+  private void readLazyFiles(final String name) {
+    reloadLock.lock();
+    try {
+      boolean read = false;
+      for (final LazyFile lazyFile : lazyFiles) {
+        if (lazyFile.properties == null && name.startsWith(lazyFile.prefix)) {
+          lazyFile.properties = readLazyFile(lazyFile.path);
+          read = true;
+        }
+      }
+      if (read) {
+        snapshot = buildLayers().toSnapshot();
+        lazyPrefixes = getPendingPrefixes();
+      }
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Reads a lazy file, logging the error instead of failing the lookup which triggered it.
+   *
+   * @param path The path of the lazy file.
+   * @return The settings read, or no settings if the file cannot be read or parsed.
+   */
+  private Properties readLazyFile(final String path) {
+    Properties properties;
+    try {
+      properties = readConfigFile(path);
+    } catch (final IllegalStateException ex) {
+      log.error("Couldn't read lazy settings file " + path + ", its settings are ignored", ex);
+      properties = new Properties();
+    }
+    return properties;
+  }
+
+  /**
+   * Gets the prefixes of the lazy files which haven't been read yet.
+   *
+   * @return The prefixes of the lazy files not read.
    */
+  private String[] getPendingPrefixes() {
+    final List<String> prefixes = new ArrayList<>();
+    for (final LazyFile lazyFile : lazyFiles) {
+      if (lazyFile.properties == null) {
+        prefixes.add(lazyFile.prefix);
+      }
+    }
+    return prefixes.toArray(new String[prefixes.size()]);
+  }
+
+  /**
+   * Gets the paths of the settings files, including the lazy files.
+   *
+   * @return A copy of the paths of the settings files.
+   */
+  final String[] getPaths() {
+    reloadLock.lock();
+    try {
+      final List<String> allPaths = new ArrayList<>(Arrays.asList(paths));
+      for (final LazyFile lazyFile : lazyFiles) {
+        allPaths.add(lazyFile.path);
+      }
+      return allPaths.toArray(new String[allPaths.size()]);
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the URL of a settings file.
+   *
+   * @param path The path of the settings file specified.
+   * @return The URL of the settings file, or null if it doesn't exist.
+   */
+  final URL getResource(final String path) {
+    return getClassType().getResource(composeResourceFilePath(path));
+  }
+
+  /**
+   * Opens a resource without the caches of the URL handler, e.g. of jar files, so that changes
+   * to it are seen when it is read again.
+   *
+   * @param url The URL of the resource, or null.
+   * @return The input stream of the resource, or null if the URL is null.
+   * @throws IOException If IO errors occur.
+   */
+  static InputStream openUncached(final URL url) throws IOException {
+    InputStream inputStream = null;
+    if (url != null) {
+      final URLConnection conn = url.openConnection();
+      conn.setUseCaches(false);
+      inputStream = conn.getInputStream();
+    }
+    return inputStream;
+  }
+
+  /**
+   * Merges the settings read with the environment variables and the system properties.
+   *
+   * @return The settings merged.
+   */
+  private SettingsLayers buildLayers() {
+    final Map<String, String> fileSettings = toMap(mergedProperties);
+    for (final LazyFile lazyFile : lazyFiles) {
+      if (lazyFile.properties != null) {
+        fileSettings.putAll(toMap(lazyFile.properties));
+      }
+    }
+    final SettingsLayers layers = new SettingsLayers(fileSettings);
+    layers.override("environment variables", readEnvironment(fileSettings.keySet()));
+    layers.override("system properties", toMap(System.getProperties()));
+    return layers;
+  }
+
+  /**
+   * Reads the environment variables which override settings of the files, if the subclass opts
+   * in with a prefix.
+   *
+   * @param names The names of the settings of the files.
+   * @return The values of the environment variables, by setting name.
+   */
+  private Map<String, String> readEnvironment(final Set<String> names) {
+    final String prefix = getEnvironmentPrefix();
+    final Map<String, String> environmentSettings = new HashMap<>();
+    if (prefix != null) {
+      for (final String name : names) {
+        final String value = environment.get(prefix + toEnvironmentName(name));
+        if (value != null) {
+          environmentSettings.put(name, value);
+        }
+      }
+    }
+    return environmentSettings;
+  }
+
+  /**
+   * Gets the prefix of the environment variables which override settings, e.g.
+   * {@code MYAPP_}. Called while the settings are created, so it should return a constant.
+   *
+   * @return The prefix, or null, the default, to ignore environment variables.
+   */
+  @SuppressWarnings("DesignForExtension")
+  protected String getEnvironmentPrefix() {
+    return null;
+  }
+
+  /**
+   * Ensures that the settings read are not null. They are always read when the settings are
+   * created, so this does nothing.
+   *
+   * @deprecated The settings read are never null.
+   */
+  @Deprecated
   protected final void ensureConfigNotNull() {
-    if (mergedProperties == null) {
-      mergedProperties = new Properties();
+    // Do nothing here
+  }
+
+  /**
+   * Gets the name of the environment variable which overrides a setting, without the prefix.
+   *
+   * @param name The setting name specified.
+   * @return The name of the environment variable.
+   */
+  static String toEnvironmentName(final String name) {
+    return NON_ALPHANUMERIC.matcher(name).replaceAll("_").toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * Copies properties whose keys and values are strings to a map.
+   *
+   * @param properties The properties specified.
+   * @return The properties by name.
+   */
+  private static Map<String, String> toMap(final Properties properties) {
+    final Map<String, String> map = new HashMap<>();
+    for (final String name : properties.stringPropertyNames()) {
+      map.put(name, properties.getProperty(name));
     }
+    return map;
   }
 
   /**
-   * Reads the config file and add them to main props data structure.
+   * Reads a config file.
+   *
    * @param path Is the path to resource config file.
+   * @return The settings read.
+   * @throws IllegalStateException If the config file cannot be read or parsed.
    */
-  private void readConfigFile(final String path) {
-    final String filePath = composeResourceFilePath(path);
+  final Properties readConfigFile(final String path) {
     try {
-      final InputStream inputStream = getClassType().getResourceAsStream(filePath);
-      resourceManager.with(inputStream).run(new ResourceHandler<Void>() {
+      final InputStream inputStream = openUncached(getResource(path));
+      return resourceManager.with(inputStream).run(new ResourceHandler<Properties>() {
         @Override
-        public Void handle(final Closeable closeable) throws IOException {
+        public Properties handle(final Closeable closeable) throws IOException {
           ensureInputStreamIsValid(inputStream);
-          mergedProperties.putAll(loadProperties(path, inputStream));
-          return null;
+          return loadProperties(path, inputStream);
         }
       });
     } catch (final IOException ex) {
@@ -153,30 +532,35 @@ public abstract class AbstractSettings implements Settings { //NOPMD
 
   /**
    * Gets a setting value by given setting name. If no value found, gets the default
-   * value provided.
+   * value provided. System properties override the value as they were when the settings were
+   * created or last reloaded; later changes are only seen after {@link #reload()}.
    *
    * @param name The setting name specified.
    * @param defaultVal The default value.
    * @return The setting value if exists, otherwise default value.
    */
   protected final String get(final String name, final String defaultVal) {
-    String value = System.getProperty(name);
-    if (StringUtils.isBlank(value)) {
-      value = mergedProperties.getProperty(name, defaultVal);
-    } else {
-      log.info("get {} from system property instead of system config file", name);
+    String value = snapshotOf(name).get(name);
+    if (value == null) {
+      value = defaultVal;
     }
     return value;
   }
 
   /**
    * Gets a setting value by given setting name. If no value found, empty string will be returned.
+   * As with {@link #get(String, String)}, system properties are those captured when the
+   * settings were created or last reloaded.
    *
    * @param name The setting name specified.
    * @return The setting value if exists, otherwise empty string.
    */
   protected final String get(final String name) {
-    return get(name, "").trim();
+    String value = snapshotOf(name).getTrimmed(name);
+    if (value == null) {
+      value = "";
+    }
+    return value;
   }
 
   /**
@@ -208,22 +592,16 @@ public abstract class AbstractSettings implements Settings { //NOPMD
 
   @Override
   public final Integer getInt(final String key, final int defaultVal) {
-    final String value = getString(key);
-    int valueInt = defaultVal;
-    if (isNotEmpty(value)) {
-      valueInt = NumberUtils.toInt(value, defaultVal);
+    Integer value = snapshotOf(key).getInt(key);
+    if (value == null) {
+      value = defaultVal;
     }
-    return valueInt;
+    return value;
   }
 
   @Override
   public final Boolean getBoolean(final String key) {
-    final String value = getString(key);
-    boolean valueBoolean = false;
-    if (isNotEmpty(value)) {
-      valueBoolean = BooleanUtils.toBoolean(value);
-    }
-    return valueBoolean;
+    return snapshotOf(key).getBoolean(key);
   }
 
   @Override
@@ -233,12 +611,58 @@ public abstract class AbstractSettings implements Settings { //NOPMD
 
   @Override
   public final Double getDouble(final String key, final double defaultVal) {
-    final String value = getString(key);
-    double valueDouble = defaultVal;
-    if (isNotEmpty(value)) {
-      valueDouble = NumberUtils.toDouble(value, defaultVal);
+    Double value = snapshotOf(key).getDouble(key);
+    if (value == null) {
+      value = defaultVal;
     }
-    return valueDouble;
+    return value;
   }
 
+  /**
+   * Change of the value of a setting found on reload.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class SettingChange {
+
+    private final String name;
+    private final String oldValue;
+    private final String newValue;
+
+    /**
+     * Constructs a new {@link SettingChange} instance.
+     *
+     * @param name The setting name.
+     * @param oldValue The previous value, or null if the setting was added.
+     * @param newValue The new value, or null if the setting was removed.
+     */
+    private SettingChange(final String name, final String oldValue, final String newValue) {
+      this.name = name;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+  }
+
+  /**
+   * Settings file which is only read when one of its settings is first looked up.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class LazyFile {
+
+    private final String prefix;
+    private final String path;
+    private Properties properties;
+
+    /**
+     * Constructs a new {@link LazyFile} instance.
+     *
+     * @param prefix The prefix of the names of the settings in the file.
+     * @param path The path of the settings file.
+     */
+    private LazyFile(final String prefix, final String path) {
+      this.prefix = prefix;
+      this.path = path;
+    }
+  }
 }
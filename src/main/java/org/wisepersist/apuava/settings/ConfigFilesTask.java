@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads settings files in parallel on a fork-join pool, which is shut down once the files are read
+ * so that no threads are left behind by settings read once at startup. The paths are split in
+ * halves until each task reads one file, and the results are merged left to right, so that settings
+ * of later files override those of earlier files whatever order the files are read in.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class ConfigFilesTask extends RecursiveTask<Properties> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient AbstractSettings settings;
+  private final List<String> paths;
+
+  /**
+   * Constructs a new {@link ConfigFilesTask} instance.
+   *
+   * @param settings The settings whose files are read.
+   * @param paths The paths of the files to read, in precedence order.
+   */
+  private ConfigFilesTask(final AbstractSettings settings, final List<String> paths) {
+    this.settings = settings;
+    this.paths = paths;
+  }
+
+  /**
+   * Reads settings files, in parallel if there are several.
+   *
+   * @param settings The settings whose files are read.
+   * @param paths The paths of the files to read, in precedence order.
+   * @return The settings of the files merged, where later files override earlier ones.
+   * @throws IllegalStateException If a file cannot be read or parsed.
+   */
+  static Properties readAll(final AbstractSettings settings, final String... paths) {
+    final ConfigFilesTask task = new ConfigFilesTask(settings, Arrays.asList(paths));
+    Properties properties = new Properties();
+    if (paths.length == 1) {
+      properties = task.compute();
+    } else if (paths.length > 1) {
+      final ForkJoinPool pool =
+          new ForkJoinPool(Math.min(paths.length, Runtime.getRuntime().availableProcessors()));
+      try {
+        properties = pool.invoke(task);
+      } finally {
+        pool.shutdown();
+      }
+    }
+    return properties;
+  }
+
+  @Override
+  protected Properties compute() {
+    final Properties properties;
+    if (paths.size() == 1) {
+      properties = settings.readConfigFile(paths.get(0));
+    } else {
+      final int middle = paths.size() / 2;
+      final ConfigFilesTask earlier = new ConfigFilesTask(settings, paths.subList(0, middle));
+      final ConfigFilesTask later =
+          new ConfigFilesTask(settings, paths.subList(middle, paths.size()));
+      earlier.fork();
+      final Properties laterProperties = later.compute();
+      properties = earlier.join();
+      properties.putAll(laterProperties);
+    }
+    return properties;
+  }
+}
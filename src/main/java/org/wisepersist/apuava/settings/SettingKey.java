@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a method of a settings interface to a setting. For each interface whose methods are
+ * annotated, {@link org.wisepersist.apuava.settings.processor.SettingKeyProcessor} generates an
+ * implementation named after the interface with an {@code Impl} suffix, whose constructor reads
+ * all settings once from {@link Settings} into final fields. The methods return
+ * {@code String}, {@code int}, {@code long}, {@code double} or {@code boolean}, see
+ * {@link SettingType}. The fields aren't updated when the settings are reloaded, so a new
+ * implementation should be created, e.g. by a {@link SettingsListener}, to see reloaded values.
+ *
+ * <pre>
+ * public interface AppSettings {
+ *   &#64;SettingKey("app.int")
+ *   int appInt();
+ *
+ *   &#64;SettingKey(value = "app.name", defaultValue = "apuava")
+ *   String appName();
+ * }
+ *
+ * final AppSettings appSettings = new AppSettingsImpl(settings);
+ * </pre>
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface SettingKey {
+
+  /**
+   * The default value of {@link #defaultValue()}, which means that the setting is required.
+   */
+  String NO_DEFAULT = "\n\t\t\n";
+
+  /**
+   * The setting name.
+   *
+   * @return The setting name.
+   */
+  String value();
+
+  /**
+   * The value used if the setting is absent, which must be valid for the return type of the
+   * method. Settings without a default value are required.
+   *
+   * @return The default value.
+   */
+  String defaultValue() default NO_DEFAULT;
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.lang3.BooleanUtils;
+
+/**
+ * Types of settings which methods annotated with {@link SettingKey} can return. Values are
+ * trimmed before being parsed, and booleans are parsed like {@link Settings#getBoolean(String)}
+ * but values which aren't booleans are invalid instead of false.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public enum SettingType {
+
+  /**
+   * Strings, returned trimmed.
+   */
+  STRING("java.lang.String", "getString", "") {
+    @Override
+    public Object parse(final String value) {
+      return value.trim();
+    }
+  },
+  /**
+   * Integers.
+   */
+  INT("int", "getInt", 0) {
+    @Override
+    public Object parse(final String value) {
+      return Integer.valueOf(value.trim());
+    }
+  },
+  /**
+   * Long integers.
+   */
+  LONG("long", "getLong", 0L) {
+    @Override
+    public Object parse(final String value) {
+      return Long.valueOf(value.trim());
+    }
+  },
+  /**
+   * Doubles.
+   */
+  DOUBLE("double", "getDouble", 0D) {
+    @Override
+    public Object parse(final String value) {
+      return Double.valueOf(value.trim());
+    }
+  },
+  /**
+   * Booleans, e.g. {@code true}, {@code yes} or {@code on}, case-insensitive.
+   */
+  BOOLEAN("boolean", "getBoolean", false) {
+    @Override
+    public Object parse(final String value) {
+      final Boolean parsed = BooleanUtils.toBooleanObject(value.trim());
+      if (parsed == null) {
+        throw new IllegalArgumentException("Not a boolean: " + value);
+      }
+      return parsed;
+    }
+  };
+
+  private final String typeName;
+  private final String accessorName;
+  private final Object missingValue;
+
+  /**
+   * Constructs a new {@link SettingType} instance.
+   *
+   * @param typeName The name of the Java type of the values.
+   * @param accessorName The name of the method of {@link SettingValues} which reads the values.
+   * @param missingValue The value read for settings which are missing or invalid.
+   */
+  SettingType(final String typeName, final String accessorName, final Object missingValue) {
+    this.typeName = typeName;
+    this.accessorName = accessorName;
+    this.missingValue = missingValue;
+  }
+
+  public String getTypeName() {
+    return typeName;
+  }
+
+  public String getAccessorName() {
+    return accessorName;
+  }
+
+  /**
+   * Gets the value read for settings which are missing or invalid, before the errors are
+   * reported.
+   *
+   * @return The value read for missing or invalid settings.
+   */
+  Object getMissingValue() {
+    return missingValue;
+  }
+
+  /**
+   * Parses a setting value.
+   *
+   * @param value The value specified.
+   * @return The value parsed, boxed.
+   * @throws IllegalArgumentException If the value is invalid for this type.
+   */
+  public abstract Object parse(String value);
+
+  /**
+   * Gets the setting type of a Java type.
+   *
+   * @param typeName The name of the Java type, e.g. {@code int} or {@code java.lang.String}.
+   * @return The setting type, or absent if the Java type isn't supported.
+   */
+  public static Optional<SettingType> fromTypeName(final String typeName) {
+    Optional<SettingType> result = Optional.absent();
+    for (final SettingType type : values()) {
+      if (type.typeName.equals(typeName)) {
+        result = Optional.of(type);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import com.google.common.base.Joiner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads settings for the implementations generated from interfaces annotated with
+ * {@link SettingKey}. Missing and invalid settings are collected instead of failing on the
+ * first one, so that {@link #validate(Class)} reports all of them at once.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class SettingValues {
+
+  private final Settings settings;
+  private final List<String> errors = new ArrayList<>();
+
+  /**
+   * Constructs a new {@link SettingValues} instance.
+   *
+   * @param settings The settings to read.
+   */
+  public SettingValues(final Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Reads a string setting, trimmed.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @return The setting value, or an empty string if it is missing.
+   */
+  public String getString(final String name, final String defaultValue) {
+    return (String) get(name, defaultValue, SettingType.STRING);
+  }
+
+  /**
+   * Reads an integer setting.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @return The setting value, or 0 if it is missing or invalid.
+   */
+  public int getInt(final String name, final String defaultValue) {
+    return (Integer) get(name, defaultValue, SettingType.INT);
+  }
+
+  /**
+   * Reads a long setting.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @return The setting value, or 0 if it is missing or invalid.
+   */
+  public long getLong(final String name, final String defaultValue) {
+    return (Long) get(name, defaultValue, SettingType.LONG);
+  }
+
+  /**
+   * Reads a double setting.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @return The setting value, or 0 if it is missing or invalid.
+   */
+  public double getDouble(final String name, final String defaultValue) {
+    return (Double) get(name, defaultValue, SettingType.DOUBLE);
+  }
+
+  /**
+   * Reads a boolean setting.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @return The setting value, or false if it is missing or invalid.
+   */
+  public boolean getBoolean(final String name, final String defaultValue) {
+    return (Boolean) get(name, defaultValue, SettingType.BOOLEAN);
+  }
+
+  /**
+   * Throws if settings read were missing or invalid.
+   *
+   * @param type The settings interface whose settings were read.
+   * @throws IllegalStateException If settings read were missing or invalid.
+   */
+  public void validate(final Class<?> type) {
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Invalid settings of " + type.getName() + ": "
+          + Joiner.on(", ").join(errors));
+    }
+  }
+
+  /**
+   * Reads a setting and records an error if it is missing or invalid.
+   *
+   * @param name The setting name.
+   * @param defaultValue The value used if the setting is absent, or null if it is required.
+   * @param type The type of the setting.
+   * @return The setting value parsed, or the missing value of the type if it is missing or
+   *     invalid.
+   */
+  private Object get(final String name, final String defaultValue, final SettingType type) {
+    String value = settings.getString(name, null);
+    if (value == null) {
+      value = defaultValue;
+    }
+    Object parsed = type.getMissingValue();
+    if (value == null) {
+      errors.add(name + " is missing");
+    } else {
+      try {
+        parsed = type.parse(value);
+      } catch (final IllegalArgumentException ex) {
+        errors.add(name + " is not a valid " + type.getTypeName() + ": '" + value + "'");
+      }
+    }
+    return parsed;
+  }
+}
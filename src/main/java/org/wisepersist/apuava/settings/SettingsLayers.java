@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Settings merged from layers in precedence order, where each layer overrides the settings of
+ * the layers added before it. Values which are blank don't override anything. The names of the
+ * settings overridden by each layer are kept, so that overrides are reported once when the
+ * settings are built instead of on each lookup.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class SettingsLayers {
+
+  private final Map<String, String> settings;
+  private final Map<String, Set<String>> overrides = new LinkedHashMap<>();
+
+  /**
+   * Constructs a new {@link SettingsLayers} instance.
+   *
+   * @param base The settings of the lowest layer, e.g. read from the settings files.
+   */
+  SettingsLayers(final Map<String, String> base) {
+    this.settings = new HashMap<>(base);
+  }
+
+  /**
+   * Adds a layer which overrides the layers added before.
+   *
+   * @param layer The name of the layer, used to report its overrides.
+   * @param values The setting values of the layer by name.
+   */
+  void override(final String layer, final Map<String, String> values) {
+    final Set<String> overridden = new TreeSet<>();
+    for (final Map.Entry<String, String> value : values.entrySet()) {
+      if (StringUtils.isNotBlank(value.getValue())
+          && settings.put(value.getKey(), value.getValue()) != null) {
+        overridden.add(value.getKey());
+      }
+    }
+    if (!overridden.isEmpty()) {
+      overrides.put(layer, overridden);
+    }
+  }
+
+  /**
+   * Gets the names of the settings overridden by each layer which overrode some.
+   *
+   * @return The names of the settings overridden by layer name, in the order the layers were
+   *     added.
+   */
+  Map<String, Set<String>> getOverrides() {
+    return overrides;
+  }
+
+  /**
+   * Builds the snapshot of the merged settings.
+   *
+   * @return The snapshot built.
+   */
+  SettingsSnapshot toSnapshot() {
+    return SettingsSnapshot.of(settings);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+/**
+ * Listener of settings changed when settings are reloaded, e.g. by {@link SettingsWatcher}. It
+ * is called in the thread which reloads the settings, after the new values are visible to the
+ * getters, and only for settings whose values actually changed. It is called without holding
+ * the reload lock, so it may read or reload the settings itself; its runtime errors are logged.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface SettingsListener {
+
+  /**
+   * Called when the value of a setting changes.
+   *
+   * @param name The setting name.
+   * @param oldValue The previous value, or null if the setting was added.
+   * @param newValue The new value, or null if the setting was removed.
+   */
+  void onChange(String name, String oldValue, String newValue);
+}
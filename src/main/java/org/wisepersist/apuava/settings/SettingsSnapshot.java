@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import org.apache.commons.lang3.BooleanUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of settings, whose values are trimmed and parsed to integers, doubles and
+ * booleans once when the snapshot is built. Keys are stored in an open-addressed table with
+ * linear probing which is at most half full, so a lookup is one hash probe and a few array
+ * reads, without locking, parsing or allocating. Numbers are kept boxed, so that present
+ * values are returned without boxing them again.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class SettingsSnapshot {
+
+  private static final int HASH_SHIFT = 16;
+
+  private final int mask;
+  private final String[] keys;
+  private final String[] values;
+  private final String[] trimmedValues;
+  private final Integer[] intValues;
+  private final Double[] doubleValues;
+  private final boolean[] booleanValues;
+  private final int size;
+
+  /**
+   * Constructs a new empty {@link SettingsSnapshot} instance.
+   *
+   * @param size The number of settings which will be put.
+   */
+  private SettingsSnapshot(final int size) {
+    int capacity = 2;
+    while (capacity < size * 2) {
+      capacity <<= 1;
+    }
+    this.mask = capacity - 1;
+    this.keys = new String[capacity];
+    this.values = new String[capacity];
+    this.trimmedValues = new String[capacity];
+    this.intValues = new Integer[capacity];
+    this.doubleValues = new Double[capacity];
+    this.booleanValues = new boolean[capacity];
+    this.size = size;
+  }
+
+  /**
+   * Builds a snapshot of settings.
+   *
+   * @param settings The setting values by name.
+   * @return The snapshot built.
+   */
+  static SettingsSnapshot of(final Map<String, String> settings) {
+    final SettingsSnapshot snapshot = new SettingsSnapshot(settings.size());
+    for (final Map.Entry<String, String> setting : settings.entrySet()) {
+      snapshot.put(setting.getKey(), setting.getValue());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the number of settings.
+   *
+   * @return The number of settings.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Copies the settings to a map, e.g. to compare snapshots when settings are reloaded.
+   *
+   * @return The setting values by name.
+   */
+  Map<String, String> asMap() {
+    final Map<String, String> settings = new HashMap<>();
+    for (int i = 0; i < keys.length; i += 1) {
+      if (keys[i] != null) {
+        settings.put(keys[i], values[i]);
+      }
+    }
+    return settings;
+  }
+
+  /**
+   * Gets the value of a setting as it was specified.
+   *
+   * @param key The setting name specified.
+   * @return The setting value, or null if absent.
+   */
+  String get(final String key) {
+    final int index = indexOf(key);
+    String value = null;
+    if (index >= 0) {
+      value = values[index];
+    }
+    return value;
+  }
+
+  /**
+   * Gets the value of a setting without leading and trailing whitespace.
+   *
+   * @param key The setting name specified.
+   * @return The trimmed setting value, or null if absent.
+   */
+  String getTrimmed(final String key) {
+    final int index = indexOf(key);
+    String value = null;
+    if (index >= 0) {
+      value = trimmedValues[index];
+    }
+    return value;
+  }
+
+  /**
+   * Gets the value of a setting parsed as an integer.
+   *
+   * @param key The setting name specified.
+   * @return The integer value, or null if absent or not an integer.
+   */
+  Integer getInt(final String key) {
+    final int index = indexOf(key);
+    Integer value = null;
+    if (index >= 0) {
+      value = intValues[index];
+    }
+    return value;
+  }
+
+  /**
+   * Gets the value of a setting parsed as a double.
+   *
+   * @param key The setting name specified.
+   * @return The double value, or null if absent or not a number.
+   */
+  Double getDouble(final String key) {
+    final int index = indexOf(key);
+    Double value = null;
+    if (index >= 0) {
+      value = doubleValues[index];
+    }
+    return value;
+  }
+
+  /**
+   * Gets the value of a setting parsed as a boolean, see
+   * {@link BooleanUtils#toBoolean(String)}.
+   *
+   * @param key The setting name specified.
+   * @return The boolean value, or false if absent.
+   */
+  boolean getBoolean(final String key) {
+    final int index = indexOf(key);
+    return index >= 0 && booleanValues[index];
+  }
+
+  /**
+   * Finds the slot of a setting.
+   *
+   * @param key The setting name specified.
+   * @return The slot of the setting, or -1 if absent.
+   */
+  private int indexOf(final String key) {
+    int index = slotOf(key);
+    int found = -1;
+    String candidate = keys[index];
+    while (candidate != null && found < 0) {
+      if (candidate.equals(key)) {
+        found = index;
+      } else {
+        index = (index + 1) & mask;
+        candidate = keys[index];
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Puts a setting in the first free slot from its home slot. Keys must be distinct.
+   *
+   * @param key The setting name specified.
+   * @param value The setting value specified.
+   */
+  private void put(final String key, final String value) {
+    int index = slotOf(key);
+    while (keys[index] != null) {
+      index = (index + 1) & mask;
+    }
+    final String trimmed = value.trim();
+    keys[index] = key;
+    values[index] = value;
+    trimmedValues[index] = trimmed;
+    intValues[index] = parseInt(trimmed);
+    doubleValues[index] = parseDouble(trimmed);
+    booleanValues[index] = BooleanUtils.toBoolean(trimmed);
+  }
+
+  /**
+   * Gets the home slot of a key, mixing the high bits of its hash code into the low bits.
+   *
+   * @param key The key specified.
+   * @return The home slot of the key.
+   */
+  private int slotOf(final String key) {
+    final int hash = key.hashCode();
+    return (hash ^ hash >>> HASH_SHIFT) & mask;
+  }
+
+  /**
+   * Parses an integer.
+   *
+   * @param value The value specified.
+   * @return The integer parsed, or null if the value isn't an integer.
+   */
+  private static Integer parseInt(final String value) {
+    Integer parsed = null;
+    try {
+      parsed = Integer.valueOf(value);
+    } catch (final NumberFormatException expected) {
+      // Lookups fall back to their default
+    }
+    return parsed;
+  }
+
+  /**
+   * Parses a double.
+   *
+   * @param value The value specified.
+   * @return The double parsed, or null if the value isn't a number.
+   */
+  private static Double parseDouble(final String value) {
+    Double parsed = null;
+    try {
+      parsed = Double.valueOf(value);
+    } catch (final NumberFormatException expected) {
+      // Lookups fall back to their default
+    }
+    return parsed;
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisepersist.apuava.resource.ResourceHandler;
+import org.wisepersist.apuava.resource.ResourceManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reloads settings when their files change. Files on the filesystem, e.g. in an exploded
+ * classes folder, are watched with a {@link WatchService}, while other resources, e.g. in jar
+ * files, are polled and compared by checksum. Changes are debounced, so that a burst of edits
+ * causes one reload once the files are quiet for the debounce delay.
+ *
+ * <p>Settings are reloaded in a daemon thread of the watcher, off the request path, with
+ * {@link AbstractSettings#reload()}. If a file cannot be parsed, e.g. while it is being
+ * written, the current settings are kept until the next change.</p>
+ *
+ * @author delight.wjk@gmail.com
+ */
+@SuppressWarnings("ClassDataAbstractionCoupling")
+public final class SettingsWatcher implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SettingsWatcher.class); //NOPMD
+  private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+  private static final long DEFAULT_POLL_MILLIS = 5000;
+
+  private final AbstractSettings settings;
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+      new ThreadFactoryBuilder().setNameFormat("apuava-settings-%d").setDaemon(true).build());
+  private final AtomicReference<ScheduledFuture<?>> pendingReload = new AtomicReference<>();
+  private final Map<URL, HashCode> checksums = new HashMap<>();
+  private final Set<Path> watchedFiles =
+      Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+  private final AtomicLong reloadCount = new AtomicLong();
+  private final ResourceManager resourceManager = new ResourceManager();
+  private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+  private long pollMillis = DEFAULT_POLL_MILLIS;
+  private boolean watchServiceEnabled = true;
+  private WatchService watchService;
+
+  /**
+   * Constructs a new {@link SettingsWatcher} instance, which watches nothing until it is
+   * started.
+   *
+   * @param settings The settings to reload.
+   */
+  public SettingsWatcher(final AbstractSettings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Specifies how long the files must be quiet after a change before the settings are
+   * reloaded, 500 milliseconds by default.
+   *
+   * @param theDebounceMillis The debounce delay in milliseconds.
+   * @return This watcher.
+   */
+  public SettingsWatcher setDebounceMillis(final long theDebounceMillis) {
+    this.debounceMillis = theDebounceMillis;
+    return this;
+  }
+
+  /**
+   * Specifies how often resources which aren't watched are polled, 5 seconds by default.
+   *
+   * @param thePollMillis The poll interval in milliseconds.
+   * @return This watcher.
+   */
+  public SettingsWatcher setPollMillis(final long thePollMillis) {
+    this.pollMillis = thePollMillis;
+    return this;
+  }
+
+  /**
+   * Specifies whether files on the filesystem are watched with a {@link WatchService}, true by
+   * default. If false they are polled like other resources, e.g. on network filesystems whose
+   * changes aren't reported to watch services.
+   *
+   * @param enabled Whether watch services are used.
+   * @return This watcher.
+   */
+  public SettingsWatcher setWatchServiceEnabled(final boolean enabled) {
+    this.watchServiceEnabled = enabled;
+    return this;
+  }
+
+  /**
+   * Gets the number of times the settings were reloaded by this watcher.
+   *
+   * @return The number of reloads.
+   */
+  public long getReloadCount() {
+    return reloadCount.get();
+  }
+
+  /**
+   * Starts watching the settings files.
+   *
+   * @return This watcher.
+   * @throws IOException If the files cannot be watched or read.
+   */
+  public SettingsWatcher start() throws IOException {
+    for (final String path : settings.getPaths()) {
+      final URL url = settings.getResource(path);
+      final Path file = toFile(url);
+      if (file != null && watchServiceEnabled) {
+        watch(file);
+      } else if (url != null) {
+        checksums.put(url, checksum(url));
+      }
+    }
+    if (!checksums.isEmpty()) {
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          poll();
+        }
+      }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+    return this;
+  }
+
+  /**
+   * Stops watching the settings files.
+   *
+   * @throws IOException If the watch service cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdownNow();
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  /**
+   * Gets the file of a resource on the default filesystem.
+   *
+   * @param url The URL of the resource, or null.
+   * @return The file of the resource, or null if the resource isn't a file.
+   */
+  private static Path toFile(final URL url) {
+    Path file = null;
+    if (url != null && "file".equals(url.getProtocol())) {
+      try {
+        file = Paths.get(url.toURI());
+      } catch (final URISyntaxException ex) {
+        log.debug("Polling {} which cannot be watched: {}", url, ex.getMessage());
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Watches the folder of a file, and starts the thread which takes the events of the watch
+   * service when the first file is watched.
+   *
+   * @param file The file specified.
+   * @throws IOException If the folder cannot be watched.
+   */
+  private void watch(final Path file) throws IOException {
+    if (watchService == null) {
+      watchService = file.getFileSystem().newWatchService();
+      scheduler.execute(new Runnable() {
+        @Override
+        public void run() {
+          takeEvents();
+        }
+      });
+    }
+    watchedFiles.add(file);
+    file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+  }
+
+  /**
+   * Takes the events of the watch service until it is closed, and schedules a reload when a
+   * watched file changes.
+   */
+  private void takeEvents() {
+    try {
+      while (true) {
+        final WatchKey key = watchService.take();
+        final Path folder = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+          final Object context = event.context();
+          if (!(context instanceof Path) || watchedFiles.contains(folder.resolve((Path) context))) {
+            scheduleReload();
+          }
+        }
+        key.reset();
+      }
+    } catch (final ClosedWatchServiceException | InterruptedException ex) {
+      log.debug("Stopped watching settings files");
+    }
+  }
+
+  /**
+   * Polls the resources which aren't watched, and schedules a reload if one changed.
+   */
+  private void poll() {
+    boolean changed = false;
+    for (final Map.Entry<URL, HashCode> entry : checksums.entrySet()) {
+      try {
+        final HashCode checksum = checksum(entry.getKey());
+        if (!checksum.equals(entry.getValue())) {
+          entry.setValue(checksum);
+          changed = true;
+        }
+      } catch (final IOException ex) {
+        log.warn("Failed to poll settings file {}: {}", entry.getKey(), ex.getMessage());
+      }
+    }
+    if (changed) {
+      scheduleReload();
+    }
+  }
+
+  /**
+   * Computes the checksum of a resource.
+   *
+   * @param url The URL of the resource.
+   * @return The checksum of the resource.
+   * @throws IOException If IO errors occur.
+   */
+  private HashCode checksum(final URL url) throws IOException {
+    final InputStream inputStream = AbstractSettings.openUncached(url);
+    return resourceManager.with(inputStream).run(new ResourceHandler<HashCode>() {
+      @Override
+      public HashCode handle(final Closeable closeable) throws IOException {
+        return Hashing.crc32().hashBytes(ByteStreams.toByteArray(inputStream));
+      }
+    });
+  }
+
+  /**
+   * Schedules a reload after the debounce delay, replacing the reload scheduled before unless
+   * it already started.
+   */
+  private void scheduleReload() {
+    try {
+      final ScheduledFuture<?> previous = pendingReload.getAndSet(scheduler.schedule(
+          new Runnable() {
+            @Override
+            public void run() {
+              reload();
+            }
+          }, debounceMillis, TimeUnit.MILLISECONDS));
+      if (previous != null) {
+        previous.cancel(false);
+      }
+    } catch (final RejectedExecutionException ex) {
+      log.debug("Not reloading settings as the watcher is closed");
+    }
+  }
+
+  /**
+   * Reloads the settings, keeping the current ones if a file cannot be read.
+   */
+  private void reload() {
+    try {
+      settings.reload();
+      reloadCount.incrementAndGet();
+    } catch (final IllegalStateException ex) {
+      log.warn("Failed to reload settings, keeping the current ones: {}", ex.getMessage());
+    }
+  }
+}
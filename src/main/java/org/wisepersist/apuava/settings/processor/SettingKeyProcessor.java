@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings.processor;
+
+import com.google.common.base.Optional;
+
+import org.wisepersist.apuava.resource.ResourceManager;
+import org.wisepersist.apuava.resource.VoidResourceHandler;
+import org.wisepersist.apuava.settings.SettingKey;
+import org.wisepersist.apuava.settings.SettingType;
+import org.wisepersist.apuava.settings.SettingValues;
+import org.wisepersist.apuava.settings.Settings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the implementations of interfaces whose methods are annotated with
+ * {@link SettingKey}. Each implementation reads all its settings in its constructor into final
+ * fields, so that reading a setting is a field load without lookups or parsing, and missing or
+ * invalid settings are reported together when it is created. Interfaces which cannot be
+ * implemented, e.g. because a method has no {@link SettingKey}, returns an unsupported type or
+ * has an invalid default value, are reported as compilation errors.
+ *
+ * <p>The processor is registered as a service, so it runs when this library is on the
+ * compilation classpath.</p>
+ *
+ * @author delight.wjk@gmail.com
+ */
+@SupportedAnnotationTypes("org.wisepersist.apuava.settings.SettingKey")
+public final class SettingKeyProcessor extends AbstractProcessor {
+
+  private static final String IMPL_SUFFIX = "Impl";
+
+  private final ResourceManager resourceManager = new ResourceManager();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations,
+      final RoundEnvironment roundEnv) {
+    final Set<TypeElement> types = new LinkedHashSet<>();
+    for (final Element method : roundEnv.getElementsAnnotatedWith(SettingKey.class)) {
+      types.add((TypeElement) method.getEnclosingElement());
+    }
+    for (final TypeElement type : types) {
+      if (isValid(type)) {
+        generate(type);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether an implementation of a settings type can be generated, and reports errors if
+   * not.
+   *
+   * @param type The settings type specified.
+   * @return True if the settings type is valid.
+   */
+  private boolean isValid(final TypeElement type) {
+    boolean valid = type.getKind() == ElementKind.INTERFACE && type.getInterfaces().isEmpty()
+        && type.getTypeParameters().isEmpty();
+    if (!valid) {
+      error(type, "Settings type must be an interface which isn't generic and doesn't extend "
+          + "other interfaces");
+    }
+    for (final ExecutableElement method : methodsOf(type)) {
+      final String message = checkMethod(method);
+      if (message != null) {
+        error(method, message);
+        valid = false;
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * Checks whether a method of a settings interface can be implemented.
+   *
+   * @param method The method specified.
+   * @return The error message, or null if the method is valid.
+   */
+  private String checkMethod(final ExecutableElement method) {
+    final SettingKey key = method.getAnnotation(SettingKey.class);
+    final Optional<SettingType> settingType = typeOf(method);
+    String message = null;
+    if (key == null) {
+      message = "Method of settings interface must be annotated with @SettingKey";
+    } else if (!method.getParameters().isEmpty()) {
+      message = "Setting method must not have parameters";
+    } else if (!settingType.isPresent()) {
+      message = "Setting method must return String, int, long, double or boolean";
+    } else {
+      message = checkDefaultValue(key, settingType.get());
+    }
+    return message;
+  }
+
+  /**
+   * Checks whether the default value of a setting is valid for its type.
+   *
+   * @param key The annotation of the setting.
+   * @param settingType The type of the setting.
+   * @return The error message, or null if the default value is valid or absent.
+   */
+  private String checkDefaultValue(final SettingKey key, final SettingType settingType) {
+    String message = null;
+    if (!SettingKey.NO_DEFAULT.equals(key.defaultValue())) {
+      try {
+        settingType.parse(key.defaultValue());
+      } catch (final IllegalArgumentException ex) {
+        message = "Default value '" + key.defaultValue() + "' of " + key.value()
+            + " is not a valid " + settingType.getTypeName();
+      }
+    }
+    return message;
+  }
+
+  /**
+   * Generates the implementation of a settings interface.
+   *
+   * @param type The settings interface specified.
+   */
+  private void generate(final TypeElement type) {
+    final String packageName =
+        processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    final String implName =
+        binaryName.substring(binaryName.lastIndexOf('.') + 1).replace('$', '_') + IMPL_SUFFIX;
+    final StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    appendClass(source, type, implName);
+    try {
+      write(binaryName.replace('$', '_') + IMPL_SUFFIX, type, source);
+    } catch (final IOException ex) {
+      error(type, "Failed to generate " + implName + ": " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Appends the implementation class of a settings interface.
+   *
+   * @param source The source which the class is appended to.
+   * @param type The settings interface specified.
+   * @param implName The simple name of the implementation class.
+   */
+  private void appendClass(final StringBuilder source, final TypeElement type,
+      final String implName) {
+    final String typeName = type.getQualifiedName().toString();
+    source.append("/**\n * Implementation of {@link ").append(typeName)
+        .append("} generated by\n * {@link ").append(SettingKeyProcessor.class.getName())
+        .append("}, whose settings\n * are read once when it is created.\n */\n")
+        .append("public final class ").append(implName).append(" implements ").append(typeName)
+        .append(" {\n");
+    for (final ExecutableElement method : methodsOf(type)) {
+      source.append("\n  private final ").append(typeOf(method).get().getTypeName()).append(' ')
+          .append(method.getSimpleName()).append(';');
+    }
+    appendConstructor(source, type, implName);
+    for (final ExecutableElement method : methodsOf(type)) {
+      source.append("\n  @Override\n  public ").append(typeOf(method).get().getTypeName())
+          .append(' ').append(method.getSimpleName()).append("() {\n    return ")
+          .append(method.getSimpleName()).append(";\n  }\n");
+    }
+    source.append("}\n");
+  }
+
+  /**
+   * Appends the constructor of the implementation class, which reads all settings and then
+   * validates them.
+   *
+   * @param source The source which the constructor is appended to.
+   * @param type The settings interface specified.
+   * @param implName The simple name of the implementation class.
+   */
+  private void appendConstructor(final StringBuilder source, final TypeElement type,
+      final String implName) {
+    final String valuesName = SettingValues.class.getName();
+    source.append("\n\n  public ").append(implName).append("(final ")
+        .append(Settings.class.getName()).append(" settings) {\n    final ").append(valuesName)
+        .append(" values = new ").append(valuesName).append("(settings);\n");
+    for (final ExecutableElement method : methodsOf(type)) {
+      final SettingKey key = method.getAnnotation(SettingKey.class);
+      String defaultValue = "null";
+      if (!SettingKey.NO_DEFAULT.equals(key.defaultValue())) {
+        defaultValue = processingEnv.getElementUtils().getConstantExpression(key.defaultValue());
+      }
+      source.append("    this.").append(method.getSimpleName()).append(" = values.")
+          .append(typeOf(method).get().getAccessorName()).append('(')
+          .append(processingEnv.getElementUtils().getConstantExpression(key.value()))
+          .append(", ").append(defaultValue).append(");\n");
+    }
+    source.append("    values.validate(").append(type.getQualifiedName()).append(".class);\n  }\n");
+  }
+
+  /**
+   * Writes a generated source file.
+   *
+   * @param className The qualified name of the generated class.
+   * @param type The settings interface which the class is generated from.
+   * @param source The source of the generated class.
+   * @throws IOException If IO errors occur.
+   */
+  private void write(final String className, final TypeElement type, final CharSequence source)
+      throws IOException {
+    final Writer writer = processingEnv.getFiler().createSourceFile(className, type).openWriter();
+    resourceManager.with(writer).run(new VoidResourceHandler() {
+      @Override
+      public void handle(final Closeable closeable) throws IOException {
+        writer.append(source);
+      }
+    });
+  }
+
+  /**
+   * Gets the abstract methods declared by a settings type.
+   *
+   * @param type The settings type specified.
+   * @return The abstract methods of the settings type.
+   */
+  private static List<ExecutableElement> methodsOf(final TypeElement type) {
+    final List<ExecutableElement> methods = new ArrayList<>();
+    for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+        methods.add(method);
+      }
+    }
+    return methods;
+  }
+
+  /**
+   * Gets the setting type returned by a method.
+   *
+   * @param method The method specified.
+   * @return The setting type, or absent if the return type isn't supported.
+   */
+  private static Optional<SettingType> typeOf(final ExecutableElement method) {
+    return SettingType.fromTypeName(method.getReturnType().toString());
+  }
+
+  /**
+   * Reports a compilation error.
+   *
+   * @param element The element which the error is reported on.
+   * @param message The error message.
+   */
+  private void error(final Element element, final String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+}
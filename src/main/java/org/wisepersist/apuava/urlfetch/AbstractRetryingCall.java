@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes one request following a {@link RetryPolicy}. Subclasses send the attempts.
+ *
+ * @author delight.wjk@gmail.com
+ * @param <T> The type of the result of the request.
+ */
+abstract class AbstractRetryingCall<T> {
+
+  private static final Logger log = LoggerFactory.getLogger(AbstractRetryingCall.class); //NOPMD
+  private final RetryPolicy policy;
+  private final ListeningExecutorService executor;
+  private final TimedAttempt timedAttempt = new TimedAttempt();
+  private T lastResult;
+
+  /**
+   * Constructs a new {@link AbstractRetryingCall} instance, whose hedged attempts run on the
+   * executor specified, or on {@link FetchExecutors#attemptExecutor()} if it rejects them.
+   *
+   * @param policy The retry policy specified.
+   * @param executor The executor of the URL fetcher which sends the request.
+   */
+  AbstractRetryingCall(final RetryPolicy policy, final ListeningExecutorService executor) {
+    this.policy = policy;
+    this.executor = executor;
+  }
+
+  /**
+   * Sends one attempt of the request.
+   *
+   * @return The result of the attempt.
+   * @throws IOException If IO errors occur.
+   */
+  protected abstract T attempt() throws IOException;
+
+  /**
+   * Executes the request, retrying failed attempts as the policy allows.
+   *
+   * @return The result of the last attempt.
+   * @throws IOException If the last attempt fails with IO errors.
+   */
+  final T call() throws IOException {
+    int attempt = 1;
+    while (!tryOnce(attempt)) {
+      sleep(policy.getBackoff(attempt));
+      attempt += 1;
+    }
+    return lastResult;
+  }
+
+  /**
+   * Sends one attempt, hedged if enabled.
+   *
+   * @param attempt The number of the attempt, starting from 1.
+   * @return True if the attempt succeeded, or false if it failed and is retried.
+   * @throws IOException If the attempt fails with IO errors and isn't retried.
+   */
+  private boolean tryOnce(final int attempt) throws IOException {
+    final RetryBudget budget = policy.getRetryBudget();
+    boolean succeeded = false;
+    try {
+      lastResult = hedgeOrCall();
+      succeeded = true;
+      budget.recordSuccess();
+    } catch (final IOException ex) {
+      if (!isRetryable(ex)) {
+        throw ex;
+      }
+      budget.recordFailure();
+      if (!canRetry(attempt)) {
+        throw ex;
+      }
+    }
+    return succeeded;
+  }
+
+  /**
+   * Checks whether an attempt which failed with the error specified may be retried. Error
+   * status codes are retryable only if the policy says so. Of the other IO errors only
+   * transient connection failures are, i.e. refused or reset connections and connect or read
+   * timeouts, while e.g. malformed URLs, unknown hosts, TLS handshake failures and calls
+   * rejected by a circuit breaker never are.
+   *
+   * @param error The error of the attempt.
+   * @return True if the attempt may be retried.
+   */
+  private boolean isRetryable(final IOException error) {
+    boolean retryable = error instanceof SocketException
+        || error instanceof SocketTimeoutException;
+    if (error instanceof HttpStatusException) {
+      retryable = policy.isRetryable(((HttpStatusException) error).getStatusCode());
+    }
+    return retryable;
+  }
+
+  /**
+   * Checks whether another attempt may follow the attempt specified.
+   *
+   * @param attempt The number of the attempt, starting from 1.
+   * @return True if another attempt is allowed.
+   */
+  private boolean canRetry(final int attempt) {
+    return attempt < policy.getMaxAttempts() && policy.getRetryBudget().canRetry();
+  }
+
+  /**
+   * Sends an attempt, hedging it if enabled.
+   *
+   * @return The result.
+   * @throws IOException If IO errors occur.
+   */
+  private T hedgeOrCall() throws IOException {
+    final long delay = policy.getHedgeDelay();
+    final T value;
+    if (delay < 0) {
+      value = timedAttempt.call();
+    } else {
+      value = hedge(delay);
+    }
+    return value;
+  }
+
+  /**
+   * Sends an attempt and a hedged attempt if the first one hasn't completed after the delay.
+   * The attempt which loses is cancelled once the result is known. Attempts run on the
+   * executor of the fetcher, which may be running this call too, so if no attempt has started
+   * after a delay, the queued attempts are run in the calling thread rather than waited for.
+   *
+   * @param delay The hedge delay in milliseconds.
+   * @return The result of the first successful attempt.
+   * @throws IOException If all attempts fail with IO errors.
+   */
+  private T hedge(final long delay) throws IOException {
+    final Hedge hedge = new Hedge();
+    hedge.send(true);
+    boolean hedged = false;
+    try {
+      while (!await(hedge.result, delay)) {
+        if (hedge.running.get() == 0) {
+          hedge.runQueued();
+        } else if (!hedged) {
+          hedged = true;
+          sendHedged(hedge);
+        }
+      }
+      return get(hedge.result);
+    } finally {
+      hedge.cancel();
+    }
+  }
+
+  /**
+   * Waits for the result of a hedged request up to a delay.
+   *
+   * @param result The result specified.
+   * @param delay The delay in milliseconds.
+   * @return True if the result is known, or false if the delay elapsed first.
+   */
+  private static boolean await(final ListenableFuture<?> result, final long delay) {
+    boolean done = true;
+    try {
+      Uninterruptibles.getUninterruptibly(result, delay, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException ex) {
+      done = false;
+    } catch (final ExecutionException expected) {
+      // All attempts failed, which the caller reports
+    }
+    return done;
+  }
+
+  /**
+   * Sends the hedged attempt if the first one is still running and the retry budget allows,
+   * taking a token from the budget. Nothing is sent if the executors are saturated.
+   *
+   * @param hedge The attempts of the request.
+   */
+  private void sendHedged(final Hedge hedge) {
+    final RetryBudget budget = policy.getRetryBudget();
+    if (!hedge.result.isDone() && budget.canRetry()) {
+      budget.recordHedge();
+      hedge.send(false);
+    }
+  }
+
+  /**
+   * Discards the result of an attempt which lost to another one, closing it if it holds
+   * resources.
+   *
+   * @param value The result of the attempt.
+   */
+  private static void discard(final Object value) {
+    if (value instanceof Closeable) {
+      try {
+        ((Closeable) value).close();
+      } catch (final IOException ex) {
+        log.warn("Failed to close discarded hedged attempt", ex);
+      }
+    }
+  }
+
+  /**
+   * Waits for an attempt, unwrapping its IO errors.
+   *
+   * @param attempt The future of the attempt.
+   * @param <V> The type of the result of the attempt.
+   * @return The result of the attempt.
+   * @throws IOException If the attempt fails with IO errors.
+   */
+  private static <V> V get(final ListenableFuture<V> attempt) throws IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(attempt);
+    } catch (final ExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause(), IOException.class);
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  /**
+   * Sleeps for the backoff before a retry.
+   *
+   * @param millis The backoff in milliseconds.
+   * @throws InterruptedIOException If the thread is interrupted.
+   */
+  private static void sleep(final long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting to retry request");
+    }
+  }
+
+  /**
+   * Attempts of a hedged request. The result is set by the first attempt which succeeds, or
+   * fails with the error of the last attempt if all attempts fail.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private final class Hedge implements Callable<T> {
+
+    private final SettableFuture<T> result = SettableFuture.create();
+    private final List<ListenableFutureTask<T>> attempts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+    @Override
+    public T call() throws IOException {
+      running.incrementAndGet();
+      try {
+        final T value = timedAttempt.call();
+        if (!result.set(value)) {
+          discard(value);
+        }
+        return value;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    /**
+     * Sends an attempt on the executor of the fetcher, or on the shared attempt executor if
+     * the executor of the fetcher rejects it.
+     *
+     * @param runIfRejected True to run the attempt in the calling thread if both executors are
+     *     saturated, otherwise it isn't sent.
+     */
+    private void send(final boolean runIfRejected) {
+      sent.incrementAndGet();
+      final ListenableFutureTask<T> task = ListenableFutureTask.create(this);
+      Futures.addCallback(task, new FailureCallback());
+      attempts.add(task);
+      try {
+        execute(task);
+      } catch (final RejectedExecutionException ex) {
+        if (runIfRejected) {
+          task.run();
+        } else if (sent.decrementAndGet() == failed.get()) {
+          result.setException(lastError.get());
+        }
+      }
+    }
+
+    /**
+     * Executes an attempt on the executor of the fetcher, falling back to the shared attempt
+     * executor.
+     *
+     * @param task The attempt specified.
+     */
+    private void execute(final Runnable task) {
+      try {
+        executor.execute(task);
+      } catch (final RejectedExecutionException ex) {
+        FetchExecutors.attemptExecutor().execute(task);
+      }
+    }
+
+    /**
+     * Runs the attempts which are still queued in the calling thread. Attempts which have
+     * started or completed aren't run again.
+     */
+    private void runQueued() {
+      for (final ListenableFutureTask<T> attempt : attempts) {
+        attempt.run();
+      }
+    }
+
+    /**
+     * Cancels the attempts still running. A queued attempt never runs, and a running one is
+     * interrupted and discards its result if it completes anyway.
+     */
+    private void cancel() {
+      for (final ListenableFutureTask<T> attempt : attempts) {
+        attempt.cancel(true);
+      }
+    }
+
+    /**
+     * Fails the result once all attempts sent have failed.
+     *
+     * @author delight.wjk@gmail.com
+     */
+    private final class FailureCallback implements FutureCallback<T> {
+
+      @Override
+      public void onSuccess(final T value) {
+        // The attempt has set the result already
+      }
+
+      @Override
+      public void onFailure(final Throwable error) {
+        lastError.set(error);
+        if (failed.incrementAndGet() == sent.get()) {
+          result.setException(error);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends an attempt and records its latency.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private final class TimedAttempt implements Callable<T> {
+
+    @Override
+    public T call() throws IOException {
+      final long start = System.nanoTime();
+      final T value = attempt();
+      policy.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return value;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules the requests of one batch of {@link BatchFetcher}. Pending requests are queued
+ * per route and started round-robin across routes, so that a slow or large route doesn't
+ * starve the others, while the number of requests in flight is bounded in total and per route.
+ * Requests the executor rejects complete with the {@link RejectedExecutionException}, so that
+ * every request queued delivers a result.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class BatchDispatcher {
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final int maxPerRoute;
+  private final BlockingQueue<BatchResult> completed = new LinkedBlockingQueue<>();
+  private final Map<String, Queue<UrlFetcher>> pending = new HashMap<>();
+  private final Deque<String> routes = new ArrayDeque<>();
+  private final Multiset<String> running = HashMultiset.create();
+  private final Lock lock = new ReentrantLock();
+  private int inFlight;
+  private boolean dispatching;
+
+  /**
+   * Constructs a new {@link BatchDispatcher} instance.
+   *
+   * @param executor The executor which runs the requests.
+   * @param maxConcurrency The maximum number of requests in flight.
+   * @param maxPerRoute The maximum number of requests in flight per route.
+   */
+  BatchDispatcher(final Executor executor, final int maxConcurrency, final int maxPerRoute) {
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.maxPerRoute = maxPerRoute;
+  }
+
+  /**
+   * Gets the queue which completed results are added to.
+   *
+   * @return The queue of completed results.
+   */
+  BlockingQueue<BatchResult> getCompleted() {
+    return completed;
+  }
+
+  /**
+   * Queues a request. Requests with malformed URLs complete immediately with the error.
+   *
+   * @param fetcher The URL fetcher of the request.
+   */
+  void enqueue(final UrlFetcher fetcher) {
+    try {
+      final String route = UrlRoutes.of(new URL(fetcher.getUrl()));
+      lock.lock();
+      try {
+        Queue<UrlFetcher> queue = pending.get(route);
+        if (queue == null) {
+          queue = new ArrayDeque<>();
+          pending.put(route, queue);
+          routes.addLast(route);
+        }
+        queue.add(fetcher);
+      } finally {
+        lock.unlock();
+      }
+    } catch (final MalformedURLException ex) {
+      completed.add(new BatchResult(fetcher, null, ex));
+    }
+  }
+
+  /**
+   * Starts pending requests round-robin across routes until a limit is reached. A request which
+   * completes while requests are being started, e.g. run inline by a direct executor, doesn't
+   * dispatch again from its completion; the loop already running starts the next requests, so
+   * that the stack doesn't grow with the number of requests.
+   */
+  void dispatch() {
+    lock.lock();
+    try {
+      if (!dispatching) {
+        dispatching = true;
+        try {
+          startPending();
+        } finally {
+          dispatching = false;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Starts pending requests round-robin across routes until a limit is reached.
+   */
+  private void startPending() {
+    int skipped = 0;
+    while (inFlight < maxConcurrency && skipped < routes.size()) {
+      if (startNext()) {
+        skipped = 0;
+      } else {
+        skipped += 1;
+      }
+    }
+  }
+
+  /**
+   * Starts the next pending request of the next route in turn, unless the route is at its
+   * limit.
+   *
+   * @return True if a request was started.
+   */
+  private boolean startNext() {
+    final String route = routes.removeFirst();
+    final Queue<UrlFetcher> queue = pending.get(route);
+    final boolean available = running.count(route) < maxPerRoute;
+    if (available) {
+      start(route, queue.remove());
+    }
+    if (queue.isEmpty()) {
+      pending.remove(route);
+    } else {
+      routes.addLast(route);
+    }
+    return available;
+  }
+
+  /**
+   * Starts a request on the executor.
+   *
+   * @param route The route of the request.
+   * @param fetcher The URL fetcher of the request.
+   */
+  private void start(final String route, final UrlFetcher fetcher) {
+    inFlight += 1;
+    running.add(route);
+    try {
+      executor.execute(newTask(route, fetcher));
+    } catch (final RejectedExecutionException ex) {
+      inFlight -= 1;
+      running.remove(route);
+      completed.add(new BatchResult(fetcher, null, ex));
+    }
+  }
+
+  /**
+   * Creates the task of a request, which completes the request when done.
+   *
+   * @param route The route of the request.
+   * @param fetcher The URL fetcher of the request.
+   * @return The task created.
+   */
+  private ListenableFutureTask<UrlResponse> newTask(final String route,
+      final UrlFetcher fetcher) {
+    final ListenableFutureTask<UrlResponse> task = ListenableFutureTask.create(
+        new Callable<UrlResponse>() {
+          @Override
+          public UrlResponse call() throws IOException {
+            return fetcher.execute();
+          }
+        });
+    task.addListener(new Runnable() {
+      @Override
+      public void run() {
+        complete(route, fetcher, task);
+      }
+    }, MoreExecutors.directExecutor());
+    return task;
+  }
+
+  /**
+   * Records a completed request and starts the next pending ones, unless requests are already
+   * being started in this thread.
+   *
+   * @param route The route of the request.
+   * @param fetcher The URL fetcher of the request.
+   * @param task The completed task of the request.
+   */
+  private void complete(final String route, final UrlFetcher fetcher,
+      final ListenableFutureTask<UrlResponse> task) {
+    lock.lock();
+    try {
+      inFlight -= 1;
+      running.remove(route);
+    } finally {
+      lock.unlock();
+    }
+    BatchResult result;
+    try {
+      result = new BatchResult(fetcher, Uninterruptibles.getUninterruptibly(task), null);
+    } catch (final ExecutionException ex) {
+      result = new BatchResult(fetcher, null, ex.getCause());
+    }
+    completed.add(result);
+    dispatch();
+  }
+}
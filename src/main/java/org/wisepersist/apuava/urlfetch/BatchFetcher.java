@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+/**
+ * Executes batches of requests with bounded concurrency. Requests are spread round-robin across
+ * routes (protocol, host and port) with a limit per route, so that the wall time of a batch
+ * tracks its slowest route rather than the sum of all requests. Results are delivered in
+ * completion order as they arrive.
+ *
+ * <pre>
+ * for (final BatchResult result : new BatchFetcher().setMaxConcurrency(32).fetch(fetchers)) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>Connections are still leased from the connection manager of each {@link UrlFetcher}, so
+ * the per route limit of this batch fetcher shouldn't exceed the one of the connection
+ * manager.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class BatchFetcher {
+
+  private static final int DEFAULT_MAX_CONCURRENCY = 64;
+  private static final int DEFAULT_MAX_PER_ROUTE = 6;
+
+  private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+  private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+  private Executor executor = FetchExecutors.defaultExecutor();
+
+  /**
+   * Specifies the maximum number of requests of a batch in flight.
+   *
+   * @param theMaxConcurrency The maximum number of requests in flight.
+   * @return This batch fetcher.
+   */
+  public final BatchFetcher setMaxConcurrency(final int theMaxConcurrency) {
+    Preconditions.checkArgument(theMaxConcurrency > 0, "maxConcurrency must be positive");
+    this.maxConcurrency = theMaxConcurrency;
+    return this;
+  }
+
+  /**
+   * Specifies the maximum number of requests of a batch in flight per route.
+   *
+   * @param theMaxPerRoute The maximum number of requests in flight per route.
+   * @return This batch fetcher.
+   */
+  public final BatchFetcher setMaxPerRoute(final int theMaxPerRoute) {
+    Preconditions.checkArgument(theMaxPerRoute > 0, "maxPerRoute must be positive");
+    this.maxPerRoute = theMaxPerRoute;
+    return this;
+  }
+
+  /**
+   * Specifies the executor which runs the requests. It should be able to run at least the
+   * maximum number of requests in flight at the same time, which
+   * {@link FetchExecutors#virtualThreadExecutor()} does cheaply on Java 21 and later.
+   *
+   * @param theExecutor The executor specified.
+   * @return This batch fetcher.
+   */
+  public final BatchFetcher setExecutor(final Executor theExecutor) {
+    this.executor = Preconditions.checkNotNull(theExecutor);
+    return this;
+  }
+
+  /**
+   * Starts executing a batch of requests and returns without waiting for them. The URL
+   * fetchers shouldn't be modified until their results are delivered.
+   *
+   * @param fetchers The URL fetchers of the requests.
+   * @return The results in completion order.
+   */
+  public final BatchResults fetch(final Collection<UrlFetcher> fetchers) {
+    final BatchDispatcher dispatcher = new BatchDispatcher(executor, maxConcurrency,
+        maxPerRoute);
+    for (final UrlFetcher fetcher : fetchers) {
+      dispatcher.enqueue(fetcher);
+    }
+    dispatcher.dispatch();
+    return new BatchResults(dispatcher.getCompleted(), fetchers.size());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Result of one request of a batch executed by {@link BatchFetcher}, which holds either the
+ * response or the error of the request.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class BatchResult {
+
+  private final UrlFetcher fetcher;
+  private final UrlResponse response;
+  private final Throwable error;
+
+  /**
+   * Constructs a new {@link BatchResult} instance.
+   *
+   * @param fetcher The URL fetcher of the request.
+   * @param response The response, or null if the request failed.
+   * @param error The error, or null if the request succeeded.
+   */
+  BatchResult(final UrlFetcher fetcher, final UrlResponse response, final Throwable error) {
+    this.fetcher = fetcher;
+    this.response = response;
+    this.error = error;
+  }
+
+  /**
+   * Gets the URL fetcher of the request, which tells which request this result belongs to.
+   *
+   * @return The URL fetcher of the request.
+   */
+  public final UrlFetcher getFetcher() {
+    return fetcher;
+  }
+
+  /**
+   * Checks whether a response was received. Responses with error status codes are successful
+   * results as well.
+   *
+   * @return True if a response was received.
+   */
+  public final boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * Gets the response of the request.
+   *
+   * @return The response, or null if the request failed.
+   */
+  public final UrlResponse getResponse() {
+    return response;
+  }
+
+  /**
+   * Gets the error of the request.
+   *
+   * @return The error, or null if the request succeeded.
+   */
+  public final Throwable getError() {
+    return error;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Results of a batch executed by {@link BatchFetcher} in completion order. Iterating blocks
+ * until the next request completes, so results can be processed while the rest of the batch
+ * is still running. The results can be iterated only once.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class BatchResults implements Iterable<BatchResult> {
+
+  private final BlockingQueue<BatchResult> completed;
+  private final int size;
+  private int taken;
+
+  /**
+   * Constructs a new {@link BatchResults} instance.
+   *
+   * @param completed The queue which completed results are added to.
+   * @param size The number of requests of the batch.
+   */
+  BatchResults(final BlockingQueue<BatchResult> completed, final int size) {
+    this.completed = completed;
+    this.size = size;
+  }
+
+  /**
+   * Gets the number of requests of the batch.
+   *
+   * @return The number of results.
+   */
+  public final int size() {
+    return size;
+  }
+
+  /**
+   * Gets the iterator of results in completion order. {@link Iterator#next()} throws
+   * {@link IllegalStateException} if the thread is interrupted while waiting.
+   *
+   * @return The iterator of results.
+   */
+  @Override
+  public final Iterator<BatchResult> iterator() {
+    return new AbstractIterator<BatchResult>() {
+      @Override
+      protected BatchResult computeNext() {
+        BatchResult result = null;
+        if (taken < size) {
+          result = take();
+        } else {
+          endOfData();
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Waits for the next completed result.
+   *
+   * @return The next completed result.
+   */
+  private BatchResult take() {
+    try {
+      final BatchResult result = completed.take();
+      taken += 1;
+      return result;
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for batch results", ex);
+    }
+  }
+}
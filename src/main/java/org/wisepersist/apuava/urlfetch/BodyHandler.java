@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+
+/**
+ * Body handler SPI which decodes the body of a response while it is read from the connection,
+ * so that large or structured bodies don't need to be buffered as bytes and strings first.
+ * Common handlers are provided by {@link BodyHandlers}. For example, a JSON body can be parsed
+ * straight into a typed object with a streaming parser:
+ *
+ * <pre>
+ * final BodyHandler&lt;Order&gt; asOrder = new BodyHandler&lt;Order&gt;() {
+ *   public Order handle(final UrlStreamResponse response) throws IOException {
+ *     return objectMapper.readValue(response.getInputStream(), Order.class);
+ *   }
+ * };
+ * final Order order = new UrlFetcher().setUrl(orderUrl).execute(asOrder);
+ * </pre>
+ *
+ * @author delight.wjk@gmail.com
+ * @param <T> The type which the body is decoded to.
+ */
+public interface BodyHandler<T> {
+
+  /**
+   * Decodes the body of a response. The response is closed by the caller afterwards, so the
+   * body needn't be read to the end. Handlers may be called from several threads at once.
+   *
+   * @param response The response whose body is decoded.
+   * @return The decoded body.
+   * @throws IOException If IO errors occur.
+   */
+  T handle(UrlStreamResponse response) throws IOException;
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Factory methods of common {@link BodyHandler} implementations.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class BodyHandlers {
+
+  private static final BodyHandler<UrlResponse> URL_RESPONSE = new BodyHandler<UrlResponse>() {
+    @Override
+    public UrlResponse handle(final UrlStreamResponse response) throws IOException {
+      final byte[] body = ByteStreams.toByteArray(response.getInputStream());
+      return new UrlResponse(response.getStatusCode(), body)
+          .setMetadata(response.getHeaders(), response.getTiming());
+    }
+  };
+
+  private static final BodyHandler<byte[]> BYTE_ARRAY = new BodyHandler<byte[]>() {
+    @Override
+    public byte[] handle(final UrlStreamResponse response) throws IOException {
+      return ByteStreams.toByteArray(response.getInputStream());
+    }
+  };
+
+  private static final BodyHandler<String> STRING = new BodyHandler<String>() {
+    @Override
+    public String handle(final UrlStreamResponse response) throws IOException {
+      return CharStreams.toString(
+          new InputStreamReader(response.getInputStream(), charsetOf(response)));
+    }
+  };
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private BodyHandlers() {
+    // Do nothing here
+  }
+
+  /**
+   * Gets the handler which buffers the body into a {@link UrlResponse}, which is what
+   * {@link UrlFetcher#execute()} returns.
+   *
+   * @return The handler.
+   */
+  public static BodyHandler<UrlResponse> ofUrlResponse() {
+    return URL_RESPONSE;
+  }
+
+  /**
+   * Gets the handler which reads the body as bytes.
+   *
+   * @return The handler.
+   */
+  public static BodyHandler<byte[]> ofByteArray() {
+    return BYTE_ARRAY;
+  }
+
+  /**
+   * Gets the handler which decodes the body as a string with the charset of the Content-Type
+   * header, or UTF-8 if none is specified or it isn't supported.
+   *
+   * @return The handler.
+   */
+  public static BodyHandler<String> ofString() {
+    return STRING;
+  }
+
+  /**
+   * Gets the handler which writes the body to a file, replacing the file if it exists. The
+   * body is written to a temporary file in the same directory, which is moved to the file
+   * atomically once complete, so the file never holds a partial body, and attempts of a
+   * retried or hedged request don't write to the file concurrently.
+   *
+   * @param file The file which the body is written to.
+   * @return The handler, whose result is the file.
+   */
+  public static BodyHandler<Path> ofFile(final Path file) {
+    Preconditions.checkNotNull(file);
+    return new BodyHandler<Path>() {
+      @Override
+      public Path handle(final UrlStreamResponse response) throws IOException {
+        writeAtomically(response.getInputStream(), file.toAbsolutePath());
+        return file;
+      }
+    };
+  }
+
+  /**
+   * Writes a stream to a temporary file next to the file specified, then moves it to the file
+   * atomically. The temporary file is deleted if writing or moving fails.
+   *
+   * @param in The stream specified.
+   * @param file The absolute path of the file specified.
+   * @throws IOException If IO errors occur.
+   */
+  private static void writeAtomically(final InputStream in, final Path file) throws IOException {
+    final Path temp = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".part");
+    boolean moved = false;
+    try {
+      Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      moved = true;
+    } finally {
+      if (!moved) {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  /**
+   * Gets the charset of a response from its Content-Type header.
+   *
+   * @param response The response specified.
+   * @return The charset of the response, or UTF-8 if none is specified or it isn't supported.
+   */
+  static Charset charsetOf(final UrlStreamResponse response) {
+    final String contentType = response.getHeaders().get(HttpHeaders.CONTENT_TYPE);
+    Charset charset = Charsets.UTF_8;
+    if (contentType != null) {
+      try {
+        charset = MediaType.parse(contentType).charset().or(Charsets.UTF_8);
+      } catch (final IllegalArgumentException | IllegalStateException ex) {
+        charset = Charsets.UTF_8;
+      }
+    }
+    return charset;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.Locale;
+
+/**
+ * Parsed directives of a Cache-Control header which are relevant to a private cache.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class CacheControl {
+
+  private static final String MAX_AGE = "max-age=";
+
+  private boolean noStore;
+  private boolean noCache;
+  private long maxAge = -1L;
+
+  /**
+   * Private constructor, use {@link #parse(String)} instead.
+   */
+  private CacheControl() {
+    // Do nothing here
+  }
+
+  /**
+   * Parses a Cache-Control header value.
+   *
+   * @param value The header value, which may be null.
+   * @return The directives parsed.
+   */
+  static CacheControl parse(final String value) {
+    final CacheControl result = new CacheControl();
+    if (value != null) {
+      for (final String directive : value.split(",")) {
+        result.apply(directive.trim().toLowerCase(Locale.ENGLISH));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Applies a single lower case directive.
+   *
+   * @param directive The directive specified.
+   */
+  private void apply(final String directive) {
+    if ("no-store".equals(directive)) {
+      noStore = true;
+    } else if (directive.startsWith("no-cache")) {
+      noCache = true;
+    } else if (directive.startsWith(MAX_AGE)) {
+      maxAge = NumberUtils.toLong(directive.substring(MAX_AGE.length()).replace("\"", ""), -1L);
+    }
+  }
+
+  boolean isNoStore() {
+    return noStore;
+  }
+
+  boolean isNoCache() {
+    return noCache;
+  }
+
+  /**
+   * Gets the max-age directive in seconds.
+   *
+   * @return The max-age in seconds, or -1 if absent.
+   */
+  long getMaxAge() {
+    return maxAge;
+  }
+}
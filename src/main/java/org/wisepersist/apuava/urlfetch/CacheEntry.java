@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response stored in {@link UrlResponseCache} with its validators, freshness lifetime and the
+ * values of the request headers named by its Vary header.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class CacheEntry {
+
+  private static final long MILLIS_PER_SECOND = 1000L;
+  private static final long HEURISTIC_FRACTION = 10L;
+  private static final String CACHE_CONTROL = "Cache-Control";
+  private static final String VARY = "Vary";
+  private static final String VARY_ANY = "*";
+  private static final Splitter VARY_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final Joiner VALUE_JOINER = Joiner.on(", ");
+
+  private final SortedMap<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+  private UrlResponse response;
+  private String etag;
+  private String lastModified;
+  private long expiresAt;
+
+  /**
+   * Private constructor, use the factory methods instead.
+   */
+  private CacheEntry() {
+    // Do nothing here
+  }
+
+  /**
+   * Creates a cache entry from a response, or returns null if the response may not be stored.
+   * Responses with {@code Vary: *} are never stored, since no later request can be known to
+   * match them.
+   *
+   * @param response The buffered response.
+   * @param requestHeaders The headers of the request which the response answers.
+   * @param now The current time in milliseconds.
+   * @return The cache entry created, or null if not storable.
+   */
+  static CacheEntry of(final UrlResponse response,
+      final List<AbstractMap.SimpleEntry<String, String>> requestHeaders, final long now) {
+    final ResponseHeaders headers = response.getHeaders();
+    final CacheControl control = CacheControl.parse(headers.get(CACHE_CONTROL));
+    final CacheEntry entry = new CacheEntry();
+    entry.response = response;
+    entry.update(headers, control, now);
+    final boolean varyAny = entry.recordVary(headers, requestHeaders);
+    final boolean storable = response.getStatusCode() == HttpURLConnection.HTTP_OK
+        && !control.isNoStore() && !varyAny;
+    CacheEntry result = null;
+    if (storable && (entry.isFresh(now) || entry.hasValidators())) {
+      result = entry;
+    }
+    return result;
+  }
+
+  /**
+   * Reads a cache entry written by {@link #writeTo(DataOutput)}.
+   *
+   * @param in The input specified.
+   * @return The cache entry read.
+   * @throws IOException If IO errors occur.
+   */
+  static CacheEntry readFrom(final DataInput in) throws IOException {
+    final CacheEntry entry = new CacheEntry();
+    final int statusCode = in.readInt();
+    entry.etag = Strings.emptyToNull(in.readUTF());
+    entry.lastModified = Strings.emptyToNull(in.readUTF());
+    entry.expiresAt = in.readLong();
+    final int varyCount = in.readInt();
+    for (int i = 0; i < varyCount; i += 1) {
+      final String name = in.readUTF();
+      entry.vary.put(name, readNullable(in));
+    }
+    final ResponseHeaders headers = ResponseHeaders.readFrom(in);
+    final ResponseTiming timing = new ResponseTiming(in.readLong(), in.readLong(), in.readLong());
+    final byte[] body = new byte[in.readInt()];
+    in.readFully(body);
+    entry.response = new UrlResponse(statusCode, body).setMetadata(headers, timing);
+    return entry;
+  }
+
+  /**
+   * Creates a new cache entry for the same body with the headers of a 304 Not Modified response
+   * merged into the stored ones (RFC 7234 section 4.3.4), the timing of the 304 response, and
+   * the validators and freshness of the merged headers.
+   *
+   * @param source The 304 response specified.
+   * @param now The current time in milliseconds.
+   * @return The refreshed cache entry.
+   */
+  CacheEntry refresh(final UrlStreamResponse source, final long now) {
+    final ResponseHeaders merged = response.getHeaders().merge(source.getHeaders());
+    final CacheEntry entry = new CacheEntry();
+    entry.response = new UrlResponse(response.getStatusCode(), response.body())
+        .setMetadata(merged, source.getTiming());
+    entry.etag = etag;
+    entry.lastModified = lastModified;
+    entry.vary.putAll(vary);
+    entry.update(merged, CacheControl.parse(merged.get(CACHE_CONTROL)), now);
+    return entry;
+  }
+
+  /**
+   * Writes this cache entry to the output specified.
+   *
+   * @param out The output specified.
+   * @throws IOException If IO errors occur.
+   */
+  void writeTo(final DataOutput out) throws IOException {
+    out.writeInt(response.getStatusCode());
+    out.writeUTF(Strings.nullToEmpty(etag));
+    out.writeUTF(Strings.nullToEmpty(lastModified));
+    out.writeLong(expiresAt);
+    out.writeInt(vary.size());
+    for (final Map.Entry<String, String> field : vary.entrySet()) {
+      out.writeUTF(field.getKey());
+      writeNullable(out, field.getValue());
+    }
+    response.getHeaders().writeTo(out);
+    final ResponseTiming timing = response.getTiming();
+    out.writeLong(timing.getStartTime());
+    out.writeLong(timing.getTimeToHeaders(TimeUnit.NANOSECONDS));
+    out.writeLong(timing.getTotalTime(TimeUnit.NANOSECONDS));
+    out.writeInt(response.getContentLength());
+    out.write(response.body());
+  }
+
+  /**
+   * Gets the conditional headers to revalidate this entry with.
+   *
+   * @return The conditional headers.
+   */
+  List<AbstractMap.SimpleEntry<String, String>> getConditionalHeaders() {
+    final List<AbstractMap.SimpleEntry<String, String>> result = Lists.newArrayListWithCapacity(2);
+    if (etag != null) {
+      result.add(new AbstractMap.SimpleEntry<>("If-None-Match", etag));
+    }
+    if (lastModified != null) {
+      result.add(new AbstractMap.SimpleEntry<>("If-Modified-Since", lastModified));
+    }
+    return result;
+  }
+
+  UrlResponse getResponse() {
+    return response;
+  }
+
+  /**
+   * Checks whether a request selects this entry, i.e. it has the same values as the request
+   * which this entry answers for every header named by the Vary header.
+   *
+   * @param requestHeaders The request headers.
+   * @return True if the request matches.
+   */
+  boolean matches(final List<AbstractMap.SimpleEntry<String, String>> requestHeaders) {
+    boolean matches = true;
+    for (final Map.Entry<String, String> field : vary.entrySet()) {
+      matches &= Objects.equal(field.getValue(), joinValues(requestHeaders, field.getKey()));
+    }
+    return matches;
+  }
+
+  /**
+   * Checks whether this entry can be served without revalidation.
+   *
+   * @param now The current time in milliseconds.
+   * @return True if this entry is fresh.
+   */
+  boolean isFresh(final long now) {
+    return now < expiresAt;
+  }
+
+  /**
+   * Checks whether this entry has a validator for conditional requests.
+   *
+   * @return True if it has an ETag or Last-Modified validator.
+   */
+  boolean hasValidators() {
+    return etag != null || lastModified != null;
+  }
+
+  /**
+   * Records the request values of the headers named by the Vary header of a response.
+   *
+   * @param headers The response headers.
+   * @param requestHeaders The request headers.
+   * @return True if the response varies on anything ({@code Vary: *}).
+   */
+  private boolean recordVary(final ResponseHeaders headers,
+      final List<AbstractMap.SimpleEntry<String, String>> requestHeaders) {
+    boolean varyAny = false;
+    for (final String value : headers.getAll(VARY)) {
+      for (final String name : VARY_SPLITTER.split(value)) {
+        varyAny |= VARY_ANY.equals(name);
+        vary.put(name, joinValues(requestHeaders, name));
+      }
+    }
+    return varyAny;
+  }
+
+  /**
+   * Updates the validators and freshness lifetime from response headers.
+   *
+   * @param headers The response headers.
+   * @param control The Cache-Control directives of the response.
+   * @param now The current time in milliseconds.
+   */
+  private void update(final ResponseHeaders headers, final CacheControl control,
+      final long now) {
+    if (headers.contains("ETag")) {
+      etag = headers.get("ETag");
+    }
+    if (headers.contains("Last-Modified")) {
+      lastModified = headers.get("Last-Modified");
+    }
+    expiresAt = now + getLifetime(headers, control, now);
+  }
+
+  /**
+   * Gets the freshness lifetime of a response as defined in RFC 7234 section 4.2.
+   *
+   * @param headers The response headers.
+   * @param control The Cache-Control directives of the response.
+   * @param now The current time in milliseconds.
+   * @return The freshness lifetime in milliseconds.
+   */
+  private static long getLifetime(final ResponseHeaders headers, final CacheControl control,
+      final long now) {
+    final long date = headers.getDate("Date", now);
+    final long expires = headers.getDate("Expires", 0L);
+    final long modified = headers.getDate("Last-Modified", 0L);
+    long lifetime = 0L;
+    if (control.isNoCache()) {
+      lifetime = 0L;
+    } else if (control.getMaxAge() >= 0) {
+      final long age = headers.getLong("Age", 0L);
+      lifetime = (control.getMaxAge() - age) * MILLIS_PER_SECOND;
+    } else if (expires > 0) {
+      lifetime = expires - date;
+    } else if (modified > 0) {
+      lifetime = (date - modified) / HEURISTIC_FRACTION;
+    }
+    return lifetime;
+  }
+
+  /**
+   * Joins all values of a request header as one field value (RFC 7230 section 3.2.2).
+   *
+   * @param requestHeaders The request headers.
+   * @param name The header name, matched case-insensitively.
+   * @return The joined values, or null if the header is absent.
+   */
+  private static String joinValues(
+      final List<AbstractMap.SimpleEntry<String, String>> requestHeaders, final String name) {
+    final List<String> values = Lists.newArrayListWithCapacity(1);
+    for (final AbstractMap.SimpleEntry<String, String> header : requestHeaders) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        values.add(header.getValue());
+      }
+    }
+    String joined = null;
+    if (!values.isEmpty()) {
+      joined = VALUE_JOINER.join(values);
+    }
+    return joined;
+  }
+
+  /**
+   * Reads a string written by {@link #writeNullable(DataOutput, String)}.
+   *
+   * @param in The input specified.
+   * @return The string read, which may be null.
+   * @throws IOException If IO errors occur.
+   */
+  private static String readNullable(final DataInput in) throws IOException {
+    String value = null;
+    if (in.readBoolean()) {
+      value = in.readUTF();
+    }
+    return value;
+  }
+
+  /**
+   * Writes a string which may be null.
+   *
+   * @param out The output specified.
+   * @param value The string specified, which may be null.
+   * @throws IOException If IO errors occur.
+   */
+  private static void writeNullable(final DataOutput out, final String value)
+      throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+}
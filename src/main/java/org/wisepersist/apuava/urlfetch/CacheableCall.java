@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.List;
+
+/**
+ * Network call made by {@link UrlResponseCache} when no fresh cached response exists.
+ *
+ * @author delight.wjk@gmail.com
+ */
+interface CacheableCall {
+
+  /**
+   * Sends the request with additional headers, e.g. conditional headers for revalidation.
+   *
+   * @param extraHeaders The additional request headers.
+   * @return The response of the request.
+   * @throws IOException If IO errors occur.
+   */
+  UrlStreamResponse call(List<AbstractMap.SimpleEntry<String, String>> extraHeaders)
+      throws IOException;
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Host resolver which caches the addresses of up to 1024 hosts for a time to live, instead of
+ * relying on the address cache of the JDK, whose time to live is global and either forever or
+ * short. Addresses used after three quarters of their time to live are refreshed in the
+ * background while the cached ones are still returned, so hosts in use are rarely resolved on
+ * the request thread. If resolving fails once the time to live is over, the expired addresses
+ * are used for up to another time to live, so name service hiccups don't fail requests.
+ *
+ * <p>Each call returns the addresses rotated by one, so that callers which connect to the
+ * addresses themselves spread connections across them round-robin, unless disabled with
+ * {@link #setRoundRobin(boolean)}. The order doesn't affect connections opened through
+ * {@link ResolvingConnectionFactory}, whose addresses the JDK picks from its own lookup.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CachingHostResolver implements HostResolver {
+
+  private static final Logger log = LoggerFactory.getLogger(CachingHostResolver.class); //NOPMD
+  private static final long DEFAULT_TTL = 60L;
+  private static final int MAX_HOSTS = 1024;
+  private static final int REFRESH_QUARTERS = 3;
+  private static final int QUARTERS = 4;
+
+  private final HostResolver delegate;
+  private final long ttlNanos;
+  private final Cache<String, Addresses> cache;
+  private volatile Executor refreshExecutor = FetchExecutors.defaultExecutor();
+  private volatile boolean roundRobin = true;
+
+  /**
+   * Constructs a new {@link CachingHostResolver} instance which caches addresses resolved by
+   * the JDK for 60 seconds.
+   */
+  public CachingHostResolver() {
+    this(new SystemHostResolver(), DEFAULT_TTL, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Constructs a new {@link CachingHostResolver} instance.
+   *
+   * @param delegate The resolver which resolves hosts missing from the cache.
+   * @param ttl The time to live of the cached addresses.
+   * @param unit The time unit of the time to live.
+   */
+  public CachingHostResolver(final HostResolver delegate, final long ttl, final TimeUnit unit) {
+    Preconditions.checkArgument(ttl > 0, "ttl must be positive");
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.ttlNanos = unit.toNanos(ttl);
+    this.cache = CacheBuilder.newBuilder().maximumSize(MAX_HOSTS)
+        .expireAfterWrite(2 * ttlNanos, TimeUnit.NANOSECONDS).build();
+  }
+
+  /**
+   * Specifies the executor which refreshes addresses in the background. If not specified,
+   * {@link FetchExecutors#defaultExecutor()} is used.
+   *
+   * @param theRefreshExecutor The executor specified.
+   * @return This resolver.
+   */
+  public final CachingHostResolver setRefreshExecutor(final Executor theRefreshExecutor) {
+    this.refreshExecutor = Preconditions.checkNotNull(theRefreshExecutor);
+    return this;
+  }
+
+  /**
+   * Specifies whether the addresses returned are rotated round-robin, which is the default.
+   *
+   * @param theRoundRobin False to always return the addresses in the order resolved.
+   * @return This resolver.
+   */
+  public final CachingHostResolver setRoundRobin(final boolean theRoundRobin) {
+    this.roundRobin = theRoundRobin;
+    return this;
+  }
+
+  @Override
+  public final InetAddress[] resolve(final String host) throws UnknownHostException {
+    final Addresses cached = cache.getIfPresent(host);
+    final long now = System.nanoTime();
+    Addresses addresses = cached;
+    if (cached == null) {
+      addresses = load(host);
+    } else if (now - cached.resolvedAt >= ttlNanos) {
+      addresses = reload(host, cached);
+    } else if (now - cached.resolvedAt >= ttlNanos / QUARTERS * REFRESH_QUARTERS) {
+      refresh(host, cached);
+    }
+    return addresses.next(roundRobin);
+  }
+
+  /**
+   * Removes the cached addresses of all hosts.
+   */
+  public final void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Resolves a host missing from the cache. Concurrent calls for the same host wait for one
+   * resolving.
+   *
+   * @param host The host name specified.
+   * @return The addresses resolved.
+   * @throws UnknownHostException If the host can't be resolved.
+   */
+  private Addresses load(final String host) throws UnknownHostException {
+    try {
+      return cache.get(host, new Callable<Addresses>() {
+        @Override
+        public Addresses call() throws UnknownHostException {
+          return new Addresses(delegate.resolve(host));
+        }
+      });
+    } catch (final ExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause(), UnknownHostException.class);
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  /**
+   * Resolves a host whose cached addresses have expired, falling back to the expired ones if
+   * resolving fails. Concurrent calls for the same host wait for one resolving.
+   *
+   * @param host The host name specified.
+   * @param expired The expired addresses.
+   * @return The addresses resolved, or the expired ones.
+   */
+  private Addresses reload(final String host, final Addresses expired) {
+    expired.reloading.lock();
+    try {
+      Addresses addresses = cache.getIfPresent(host);
+      if (addresses == null || addresses == expired) {
+        addresses = expired;
+        try {
+          addresses = new Addresses(delegate.resolve(host));
+          cache.put(host, addresses);
+        } catch (final UnknownHostException ex) {
+          log.warn("Failed to resolve {}, using expired addresses: {}", host, ex.getMessage());
+        }
+      }
+      return addresses;
+    } finally {
+      expired.reloading.unlock();
+    }
+  }
+
+  /**
+   * Resolves a host in the background, unless it is being refreshed already.
+   *
+   * @param host The host name specified.
+   * @param cached The cached addresses, which are replaced once resolved.
+   */
+  private void refresh(final String host, final Addresses cached) {
+    if (cached.refreshing.compareAndSet(false, true)) {
+      try {
+        refreshExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              cache.put(host, new Addresses(delegate.resolve(host)));
+            } catch (final UnknownHostException ex) {
+              log.warn("Failed to refresh addresses of {}: {}", host, ex.getMessage());
+              cached.refreshing.set(false);
+            }
+          }
+        });
+      } catch (final RejectedExecutionException ex) {
+        cached.refreshing.set(false);
+      }
+    }
+  }
+
+  /**
+   * Addresses of a host with the time they were resolved.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class Addresses {
+
+    private final InetAddress[] values;
+    private final long resolvedAt = System.nanoTime();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Lock reloading = new ReentrantLock();
+
+    /**
+     * Constructs a new {@link Addresses} instance.
+     *
+     * @param values The addresses resolved.
+     * @throws UnknownHostException If no address was resolved.
+     */
+    private Addresses(final InetAddress[] values) throws UnknownHostException {
+      if (values == null || values.length == 0) {
+        throw new UnknownHostException("No address resolved");
+      }
+      this.values = values.clone();
+    }
+
+    /**
+     * Gets a copy of the addresses, rotated by one more than the previous copy if
+     * round-robin is enabled.
+     *
+     * @param rotate True to rotate the addresses.
+     * @return The addresses.
+     */
+    private InetAddress[] next(final boolean rotate) {
+      final int length = values.length;
+      int first = 0;
+      if (rotate && length > 1) {
+        first = (cursor.getAndIncrement() & Integer.MAX_VALUE) % length;
+      }
+      final InetAddress[] result = new InetAddress[length];
+      System.arraycopy(values, first, result, 0, length - first);
+      System.arraycopy(values, 0, result, length - first, first);
+      return result;
+    }
+  }
+}
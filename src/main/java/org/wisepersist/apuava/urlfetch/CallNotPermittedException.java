@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+
+/**
+ * Thrown without sending the request when the circuit breaker of the route is open or its
+ * bulkhead is full, or when the rate limit of the host is exceeded, see {@link RateLimits}.
+ * Requests failing this way aren't retried.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CallNotPermittedException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a new {@link CallNotPermittedException} instance.
+   *
+   * @param message The detail message.
+   */
+  public CallNotPermittedException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker and bulkhead of one route, created by {@link CircuitBreakers}. Each change of
+ * state starts a new generation, and each permit is tagged with the generation it was acquired
+ * in, so that calls which complete after the state changed don't count in the new state, e.g.
+ * calls acquired just before the circuit opened aren't counted as probes of the half open
+ * circuit.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CircuitBreaker {
+
+  private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class); //NOPMD
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private final String route;
+  private final CircuitBreakers config;
+  private final Semaphore bulkhead;
+  private final byte[] outcomes;
+  private final Lock lock = new ReentrantLock();
+  private final AtomicLong notPermittedCalls = new AtomicLong();
+  private volatile CircuitState state = CircuitState.CLOSED;
+  private int next;
+  private int calls;
+  private int failedCalls;
+  private int slowCalls;
+  private long openedAt;
+  private int probes;
+  private int probeSuccesses;
+  private CircuitState transitionFrom;
+  private long generation;
+
+  /**
+   * Constructs a new {@link CircuitBreaker} instance.
+   *
+   * @param route The route of this circuit breaker.
+   * @param config The circuit breakers which hold the settings.
+   */
+  CircuitBreaker(final String route, final CircuitBreakers config) {
+    this.route = route;
+    this.config = config;
+    this.bulkhead = new Semaphore(config.getMaxConcurrentCalls());
+    this.outcomes = new byte[config.getWindowSize()];
+  }
+
+  public final String getRoute() {
+    return route;
+  }
+
+  public final CircuitState getState() {
+    return state;
+  }
+
+  /**
+   * Gets the number of calls rejected because the circuit was open or the bulkhead was full.
+   *
+   * @return The number of rejected calls.
+   */
+  public final long getNotPermittedCalls() {
+    return notPermittedCalls.get();
+  }
+
+  /**
+   * Gets the number of calls in flight.
+   *
+   * @return The number of calls in flight.
+   */
+  public final int getConcurrentCalls() {
+    return config.getMaxConcurrentCalls() - bulkhead.availablePermits();
+  }
+
+  /**
+   * Gets the rate of failed calls among the recent calls.
+   *
+   * @return The failure rate between 0 and 1.
+   */
+  public final double getFailureRate() {
+    lock.lock();
+    try {
+      return rate(failedCalls);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the rate of slow calls among the recent calls.
+   *
+   * @return The slow call rate between 0 and 1.
+   */
+  public final double getSlowCallRate() {
+    lock.lock();
+    try {
+      return rate(slowCalls);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public final String toString() {
+    return "[route: " + route + "; state: " + state + "]";
+  }
+
+  /**
+   * Acquires a permit for a call, which must be given back with
+   * {@link #complete(long, long, boolean)}.
+   *
+   * @return The permit, i.e. the generation of the state the call is permitted in.
+   * @throws CallNotPermittedException If the circuit is open or the bulkhead is full.
+   */
+  final long acquire() throws CallNotPermittedException {
+    if (!bulkhead.tryAcquire()) {
+      notPermittedCalls.incrementAndGet();
+      throw new CallNotPermittedException("Bulkhead full for " + route);
+    }
+    final long permit = permitCall();
+    if (permit < 0) {
+      bulkhead.release();
+      notPermittedCalls.incrementAndGet();
+      throw new CallNotPermittedException("Circuit open for " + route);
+    }
+    return permit;
+  }
+
+  /**
+   * Records the outcome of a call and gives back its permit. The outcome is ignored if the
+   * state changed since the permit was acquired.
+   *
+   * @param permit The permit returned by {@link #acquire()}.
+   * @param startNanos The value of {@link System#nanoTime()} when the call started.
+   * @param failed True if the call failed.
+   */
+  final void complete(final long permit, final long startNanos, final boolean failed) {
+    bulkhead.release();
+    final byte outcome = outcomeOf(startNanos, failed);
+    final CircuitState from;
+    final CircuitState to;
+    lock.lock();
+    try {
+      if (permit == generation && state == CircuitState.CLOSED) {
+        record(outcome);
+      } else if (permit == generation && state == CircuitState.HALF_OPEN) {
+        recordProbe(outcome);
+      }
+      from = takeTransition();
+      to = state;
+    } finally {
+      lock.unlock();
+    }
+    notifyListeners(from, to);
+  }
+
+  /**
+   * Gets the outcome flags of a call.
+   *
+   * @param startNanos The value of {@link System#nanoTime()} when the call started.
+   * @param failed True if the call failed.
+   * @return The outcome flags of the call.
+   */
+  private byte outcomeOf(final long startNanos, final boolean failed) {
+    final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    byte outcome = 0;
+    if (failed) {
+      outcome |= FAILED;
+    }
+    if (millis >= config.getSlowCallDuration()) {
+      outcome |= SLOW;
+    }
+    return outcome;
+  }
+
+  /**
+   * Decides whether a call is permitted, moving an open circuit to half open once the open
+   * duration has elapsed.
+   *
+   * @return The generation of the state the call is permitted in, or -1 if it isn't permitted.
+   */
+  private long permitCall() {
+    long permit = -1;
+    final CircuitState from;
+    lock.lock();
+    try {
+      if (state == CircuitState.OPEN
+          && System.currentTimeMillis() - openedAt >= config.getOpenDuration()) {
+        transitionTo(CircuitState.HALF_OPEN);
+      }
+      if (state == CircuitState.CLOSED || permitProbe()) {
+        permit = generation;
+      }
+      from = takeTransition();
+    } finally {
+      lock.unlock();
+    }
+    notifyListeners(from, CircuitState.HALF_OPEN);
+    return permit;
+  }
+
+  /**
+   * Permits a probe call of a half open circuit, unless all probe calls have been permitted.
+   *
+   * @return True if the probe call is permitted.
+   */
+  private boolean permitProbe() {
+    boolean permitted = false;
+    if (state == CircuitState.HALF_OPEN && probes < config.getHalfOpenCalls()) {
+      probes += 1;
+      permitted = true;
+    }
+    return permitted;
+  }
+
+  /**
+   * Records the outcome of a call in the window of a closed circuit, opening the circuit if a
+   * threshold is reached.
+   *
+   * @param outcome The outcome flags of the call.
+   */
+  private void record(final byte outcome) {
+    if (calls == outcomes.length) {
+      count(outcomes[next], -1);
+    } else {
+      calls += 1;
+    }
+    outcomes[next] = outcome;
+    count(outcome, 1);
+    next = (next + 1) % outcomes.length;
+    if (calls >= config.getMinimumCalls()
+        && (rate(failedCalls) >= config.getFailureRateThreshold()
+        || rate(slowCalls) >= config.getSlowCallRateThreshold())) {
+      transitionTo(CircuitState.OPEN);
+    }
+  }
+
+  /**
+   * Records the outcome of a probe call of a half open circuit.
+   *
+   * @param outcome The outcome flags of the call.
+   */
+  private void recordProbe(final byte outcome) {
+    if (outcome == 0) {
+      probeSuccesses += 1;
+      if (probeSuccesses >= config.getHalfOpenCalls()) {
+        transitionTo(CircuitState.CLOSED);
+      }
+    } else {
+      transitionTo(CircuitState.OPEN);
+    }
+  }
+
+  /**
+   * Adds or removes an outcome to the counts of the window.
+   *
+   * @param outcome The outcome flags of the call.
+   * @param delta The change, 1 to add the outcome or -1 to remove it.
+   */
+  private void count(final byte outcome, final int delta) {
+    if ((outcome & FAILED) != 0) {
+      failedCalls += delta;
+    }
+    if ((outcome & SLOW) != 0) {
+      slowCalls += delta;
+    }
+  }
+
+  /**
+   * Gets the rate of calls among the calls in the window.
+   *
+   * @param count The number of calls specified.
+   * @return The rate between 0 and 1.
+   */
+  private double rate(final int count) {
+    double result = 0;
+    if (calls > 0) {
+      result = (double) count / calls;
+    }
+    return result;
+  }
+
+  /**
+   * Changes the state and resets the counters of the new state. The listeners are notified
+   * once the lock is released, see {@link #takeTransition()}.
+   *
+   * @param to The new state.
+   */
+  private void transitionTo(final CircuitState to) {
+    if (transitionFrom == null) {
+      transitionFrom = state;
+    }
+    state = to;
+    generation += 1;
+    calls = 0;
+    next = 0;
+    failedCalls = 0;
+    slowCalls = 0;
+    probes = 0;
+    probeSuccesses = 0;
+    openedAt = System.currentTimeMillis();
+  }
+
+  /**
+   * Takes the state which the circuit left in the current critical section, so that listeners
+   * are notified after the lock is released rather than while holding it.
+   *
+   * @return The state left, or null if the state didn't change.
+   */
+  private CircuitState takeTransition() {
+    final CircuitState from = transitionFrom;
+    transitionFrom = null;
+    return from;
+  }
+
+  /**
+   * Notifies listeners of a state change, if any. Must not be called while holding the lock.
+   * Runtime errors of a listener are logged, so that they neither fail the call nor keep the
+   * other listeners from being notified.
+   *
+   * @param from The state left, or null if the state didn't change.
+   * @param to The new state.
+   */
+  @SuppressWarnings("IllegalCatch")
+  private void notifyListeners(final CircuitState from, final CircuitState to) {
+    if (from != null && from != to) {
+      for (final CircuitBreakerListener listener : config.getListeners()) {
+        try {
+          listener.onStateChange(this, from, to);
+        } catch (final RuntimeException ex) { //NOPMD
+          log.warn("Circuit breaker listener failed on " + from + " to " + to + " of " + route,
+              ex);
+        }
+      }
+    }
+  }
+}
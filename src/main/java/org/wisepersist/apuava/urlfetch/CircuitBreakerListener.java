@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Listener of state changes of circuit breakers, e.g. to export them to metrics. It is called
+ * after the circuit breaker is unlocked, in the thread of the call which changed the state, so
+ * it should be quick. Runtime errors it throws are logged.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface CircuitBreakerListener {
+
+  /**
+   * Called when a circuit breaker changes state.
+   *
+   * @param breaker The circuit breaker.
+   * @param from The previous state.
+   * @param to The new state.
+   */
+  void onStateChange(CircuitBreaker breaker, CircuitState from, CircuitState to);
+}
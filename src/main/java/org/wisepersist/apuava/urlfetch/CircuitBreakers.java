@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Circuit breakers and bulkheads per route (protocol, host and port), so that a degraded host
+ * fails fast instead of holding threads which calls to healthy hosts need. The settings apply
+ * to all circuit breakers and should be specified before the first request. Share one
+ * instance between the URL fetchers calling the same hosts.
+ *
+ * <p>A circuit opens when, among the last calls in the window, the rate of failed calls or
+ * the rate of slow calls reaches its threshold. Failed calls are IO errors and responses with
+ * status 500 and above. After the open duration, a few probe calls are permitted: the circuit
+ * closes if they all succeed and opens again otherwise. The bulkhead limits the calls in
+ * flight per route, and calls beyond the limit are rejected without waiting.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CircuitBreakers {
+
+  private static final double DEFAULT_FAILURE_RATE = 0.5;
+  private static final double DEFAULT_SLOW_CALL_RATE = 1.0;
+  private static final long DEFAULT_SLOW_CALL_DURATION = 10000L;
+  private static final int DEFAULT_WINDOW_SIZE = 100;
+  private static final int DEFAULT_MINIMUM_CALLS = 20;
+  private static final long DEFAULT_OPEN_DURATION = 30000L;
+  private static final int DEFAULT_HALF_OPEN_CALLS = 5;
+  private static final int DEFAULT_MAX_CONCURRENT_CALLS = 50;
+
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+  private double failureRateThreshold = DEFAULT_FAILURE_RATE;
+  private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE;
+  private long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+  private int windowSize = DEFAULT_WINDOW_SIZE;
+  private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+  private long openDuration = DEFAULT_OPEN_DURATION;
+  private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+  private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+
+  /**
+   * Specifies the rate of failed calls which opens a circuit, 0.5 by default.
+   *
+   * @param threshold The failure rate between 0 and 1.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setFailureRateThreshold(final double threshold) {
+    this.failureRateThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Specifies the rate of slow calls which opens a circuit, 1.0 by default.
+   *
+   * @param threshold The slow call rate between 0 and 1.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setSlowCallRateThreshold(final double threshold) {
+    this.slowCallRateThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Specifies how long a call takes at least to be slow, 10 seconds by default.
+   *
+   * @param millis The slow call duration in milliseconds.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setSlowCallDuration(final long millis) {
+    this.slowCallDuration = millis;
+    return this;
+  }
+
+  /**
+   * Specifies the number of recent calls whose outcomes are kept, 100 by default, and the
+   * number of calls needed before the rates are evaluated, 20 by default.
+   *
+   * @param theWindowSize The number of calls kept.
+   * @param theMinimumCalls The minimum number of calls.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setWindow(final int theWindowSize, final int theMinimumCalls) {
+    Preconditions.checkArgument(theMinimumCalls > 0 && theMinimumCalls <= theWindowSize,
+        "minimumCalls must be between 1 and windowSize");
+    this.windowSize = theWindowSize;
+    this.minimumCalls = theMinimumCalls;
+    return this;
+  }
+
+  /**
+   * Specifies how long a circuit stays open before probe calls are permitted, 30 seconds by
+   * default.
+   *
+   * @param millis The open duration in milliseconds.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setOpenDuration(final long millis) {
+    this.openDuration = millis;
+    return this;
+  }
+
+  /**
+   * Specifies the number of probe calls of half open circuits, 5 by default.
+   *
+   * @param theHalfOpenCalls The number of probe calls.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setHalfOpenCalls(final int theHalfOpenCalls) {
+    Preconditions.checkArgument(theHalfOpenCalls > 0, "halfOpenCalls must be positive");
+    this.halfOpenCalls = theHalfOpenCalls;
+    return this;
+  }
+
+  /**
+   * Specifies the bulkhead, i.e. the maximum number of calls in flight per route, 50 by
+   * default.
+   *
+   * @param theMaxConcurrentCalls The maximum number of calls in flight.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers setMaxConcurrentCalls(final int theMaxConcurrentCalls) {
+    Preconditions.checkArgument(theMaxConcurrentCalls > 0, "maxConcurrentCalls must be positive");
+    this.maxConcurrentCalls = theMaxConcurrentCalls;
+    return this;
+  }
+
+  /**
+   * Adds a listener of state changes.
+   *
+   * @param listener The listener specified.
+   * @return These circuit breakers.
+   */
+  public final CircuitBreakers addListener(final CircuitBreakerListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Gets the circuit breakers of all routes called so far.
+   *
+   * @return The circuit breakers.
+   */
+  public final Collection<CircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableCollection(breakers.values());
+  }
+
+  /**
+   * Gets the circuit breaker of the route of the URL specified, creating it if needed.
+   *
+   * @param url The URL specified.
+   * @return The circuit breaker of the route.
+   */
+  public final CircuitBreaker getCircuitBreaker(final URL url) {
+    final String route = UrlRoutes.of(url);
+    CircuitBreaker breaker = breakers.get(route);
+    if (breaker == null) {
+      final CircuitBreaker created = new CircuitBreaker(route, this);
+      breaker = breakers.putIfAbsent(route, created);
+      if (breaker == null) {
+        breaker = created;
+      }
+    }
+    return breaker;
+  }
+
+  final List<CircuitBreakerListener> getListeners() {
+    return listeners;
+  }
+
+  final double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  final double getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  final long getSlowCallDuration() {
+    return slowCallDuration;
+  }
+
+  final int getWindowSize() {
+    return windowSize;
+  }
+
+  final int getMinimumCalls() {
+    return minimumCalls;
+  }
+
+  final long getOpenDuration() {
+    return openDuration;
+  }
+
+  final int getHalfOpenCalls() {
+    return halfOpenCalls;
+  }
+
+  final int getMaxConcurrentCalls() {
+    return maxConcurrentCalls;
+  }
+}
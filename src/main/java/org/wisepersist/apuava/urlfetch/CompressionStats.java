@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of compressed and uncompressed bytes transferred by URL fetchers.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CompressionStats {
+
+  private final AtomicLong responseEncodedBytes = new AtomicLong();
+  private final AtomicLong responseDecodedBytes = new AtomicLong();
+  private final AtomicLong requestRawBytes = new AtomicLong();
+  private final AtomicLong requestEncodedBytes = new AtomicLong();
+
+  /**
+   * Gets the counters shared by URL fetchers which are not given specific ones.
+   *
+   * @return The shared counters.
+   */
+  public static CompressionStats shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * Gets the number of compressed response body bytes received on the wire.
+   *
+   * @return The number of compressed bytes.
+   */
+  public final long getResponseEncodedBytes() {
+    return responseEncodedBytes.get();
+  }
+
+  /**
+   * Gets the number of bytes the compressed response bodies were decompressed to.
+   *
+   * @return The number of decompressed bytes.
+   */
+  public final long getResponseDecodedBytes() {
+    return responseDecodedBytes.get();
+  }
+
+  /**
+   * Gets the number of request body bytes before compression.
+   *
+   * @return The number of uncompressed bytes.
+   */
+  public final long getRequestRawBytes() {
+    return requestRawBytes.get();
+  }
+
+  /**
+   * Gets the number of compressed request body bytes sent on the wire.
+   *
+   * @return The number of compressed bytes.
+   */
+  public final long getRequestEncodedBytes() {
+    return requestEncodedBytes.get();
+  }
+
+  /**
+   * Gets the counter of compressed response bytes.
+   *
+   * @return The counter.
+   */
+  final AtomicLong responseEncoded() {
+    return responseEncodedBytes;
+  }
+
+  /**
+   * Gets the counter of decompressed response bytes.
+   *
+   * @return The counter.
+   */
+  final AtomicLong responseDecoded() {
+    return responseDecodedBytes;
+  }
+
+  /**
+   * Gets the counter of uncompressed request bytes.
+   *
+   * @return The counter.
+   */
+  final AtomicLong requestRaw() {
+    return requestRawBytes;
+  }
+
+  /**
+   * Gets the counter of compressed request bytes.
+   *
+   * @return The counter.
+   */
+  final AtomicLong requestEncoded() {
+    return requestEncodedBytes;
+  }
+
+  /**
+   * Lazily initialises the shared counters on first use.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class SharedHolder {
+
+    private static final CompressionStats INSTANCE = new CompressionStats();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SharedHolder() {
+      // Do nothing here
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * SPI which opens the connections used by {@link LimitingConnectionManager}. The default
+ * implementation uses the HTTP/1.1 client of the JDK, which is the only protocol this library
+ * implements; it ships no HTTP/2 transport. Other clients which provide
+ * {@link HttpURLConnection} implementations through a {@link java.net.URLStreamHandlerFactory}
+ * can be plugged in with {@link StreamHandlerConnectionFactory}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface ConnectionFactory {
+
+  /**
+   * Opens a connection to the URL specified without connecting it.
+   *
+   * @param url The URL specified.
+   * @return The connection opened.
+   * @throws IOException If IO errors occur.
+   */
+  HttpURLConnection open(URL url) throws IOException;
+}
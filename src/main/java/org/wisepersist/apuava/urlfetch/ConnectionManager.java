@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.ImplementedBy;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Manages the HTTP connections used by {@link UrlFetcher}. Every connection opened by
+ * {@link #open(URL)} must be handed back with {@link #release(HttpURLConnection, boolean)}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@ImplementedBy(LimitingConnectionManager.class)
+public interface ConnectionManager {
+
+  /**
+   * Leases a connection to the URL specified, waiting if the limits of the manager are reached.
+   *
+   * @param url The URL specified.
+   * @return The connection leased.
+   * @throws IOException If IO errors occur or no connection becomes available in time.
+   */
+  HttpURLConnection open(URL url) throws IOException;
+
+  /**
+   * Releases a connection leased by {@link #open(URL)}.
+   *
+   * @param conn The connection specified.
+   * @param reusable True if the response was fully consumed and the connection can be kept alive.
+   */
+  void release(HttpURLConnection conn, boolean reusable);
+
+  /**
+   * Gets a snapshot of the statistics of this manager.
+   *
+   * @return The statistics of this manager.
+   */
+  PoolStats getStats();
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Utility methods for the gzip and deflate content codings of http messages.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class ContentCodings {
+
+  /**
+   * The value of Accept-Encoding header sent when compressed responses are accepted.
+   */
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  /**
+   * The content coding used to compress request bodies.
+   */
+  static final String GZIP = "gzip";
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private ContentCodings() {
+    // Do nothing here
+  }
+
+  /**
+   * Gets the response body stream of a connection, decompressing it if it is encoded with gzip
+   * or deflate.
+   *
+   * @param conn The connection specified.
+   * @param wire The response body stream of the connection.
+   * @param stats The counters to update.
+   * @return The response body stream.
+   * @throws IOException If IO errors occur.
+   */
+  static InputStream decode(final HttpURLConnection conn, final InputStream wire,
+      final CompressionStats stats) throws IOException {
+    final String encoding = conn.getContentEncoding();
+    InputStream result = wire;
+    if (encoding != null && hasBody(conn)) {
+      final InputStream encoded = new CountingInputStream(wire, stats.responseEncoded());
+      if (GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+        result = new CountingInputStream(new GZIPInputStream(encoded), stats.responseDecoded());
+      } else if ("deflate".equalsIgnoreCase(encoding)) {
+        result = new CountingInputStream(new InflaterInputStream(encoded),
+            stats.responseDecoded());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether a response may have a body to decode. Responses to HEAD requests never have
+   * one.
+   *
+   * @param conn The connection specified.
+   * @return True if the response may have a body.
+   * @throws IOException If IO errors occur.
+   */
+  private static boolean hasBody(final HttpURLConnection conn) throws IOException {
+    final int statusCode = conn.getResponseCode();
+    return conn.getContentLengthLong() != 0 && statusCode != HttpURLConnection.HTTP_NO_CONTENT
+        && statusCode != HttpURLConnection.HTTP_NOT_MODIFIED
+        && !RequestMethod.HEAD.name().equals(conn.getRequestMethod());
+  }
+
+  /**
+   * Wraps a request body stream with gzip compression. The stream returned must be closed or
+   * finished to write the gzip trailer.
+   *
+   * @param out The request body stream of the connection.
+   * @param stats The counters to update.
+   * @return The compressing stream.
+   * @throws IOException If IO errors occur.
+   */
+  static GZIPOutputStream encode(final OutputStream out, final CompressionStats stats)
+      throws IOException {
+    return new CountingGzipOutputStream(new CountingOutputStream(out, stats.requestEncoded()),
+        stats.requestRaw());
+  }
+
+  /**
+   * Input stream which adds the number of bytes read to a counter.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private final AtomicLong counter;
+
+    /**
+     * Constructs a new {@link CountingInputStream} instance.
+     *
+     * @param in The underlying input stream.
+     * @param counter The counter to update.
+     */
+    private CountingInputStream(final InputStream in, final AtomicLong counter) {
+      super(in);
+      this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int result = super.read();
+      if (result >= 0) {
+        counter.incrementAndGet();
+      }
+      return result;
+    }
+
+    @Override
+    public int read(final byte[] buf, final int off, final int len) throws IOException {
+      final int result = super.read(buf, off, len);
+      if (result > 0) {
+        counter.addAndGet(result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Output stream which adds the number of bytes written to a counter.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private final AtomicLong counter;
+
+    /**
+     * Constructs a new {@link CountingOutputStream} instance.
+     *
+     * @param out The underlying output stream.
+     * @param counter The counter to update.
+     */
+    private CountingOutputStream(final OutputStream out, final AtomicLong counter) {
+      super(out);
+      this.counter = counter;
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+      out.write(value);
+      counter.incrementAndGet();
+    }
+
+    @Override
+    public void write(final byte[] buf, final int off, final int len) throws IOException {
+      out.write(buf, off, len);
+      counter.addAndGet(len);
+    }
+  }
+
+  /**
+   * Gzip output stream which adds the number of uncompressed bytes written to a counter.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingGzipOutputStream extends GZIPOutputStream {
+
+    private final AtomicLong counter;
+
+    /**
+     * Constructs a new {@link CountingGzipOutputStream} instance.
+     *
+     * @param out The underlying output stream.
+     * @param counter The counter to update.
+     * @throws IOException If IO errors occur.
+     */
+    private CountingGzipOutputStream(final OutputStream out, final AtomicLong counter)
+        throws IOException {
+      super(out);
+      this.counter = counter;
+    }
+
+    @Override
+    public void write(final byte[] buf, final int off, final int len) throws IOException {
+      super.write(buf, off, len);
+      counter.addAndGet(len);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wisepersist.apuava.resource.ResourceHandler;
+import org.wisepersist.apuava.resource.ResourceManager;
+import org.wisepersist.apuava.resource.VoidResourceHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * On-disk tier of {@link UrlResponseCache}, which keeps entries evicted from memory in files
+ * of a directory up to a maximum total size. The index lives in memory, so files left by
+ * previous processes are deleted when the store is created.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@SuppressWarnings("ClassDataAbstractionCoupling")
+public class DiskCacheStore {
+
+  private static final Logger log = LoggerFactory.getLogger(DiskCacheStore.class); //NOPMD
+  private static final String SUFFIX = ".entry";
+
+  private final Path directory;
+  private final Cache<String, Path> index;
+  private final ResourceManager resourceManager = new ResourceManager();
+
+  /**
+   * Constructs a new {@link DiskCacheStore} instance.
+   *
+   * @param directory The directory which stores the entry files.
+   * @param maxBytes The maximum total size of the entry files.
+   * @throws IOException If the directory cannot be created or cleaned.
+   */
+  public DiskCacheStore(final Path directory, final long maxBytes) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.index = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher(new FileWeigher()).removalListener(new FileRemover()).build();
+    deleteEntryFiles();
+  }
+
+  /**
+   * Gets the entry stored with the key specified.
+   *
+   * @param key The cache key specified.
+   * @return The entry stored, or null if absent or unreadable.
+   */
+  final CacheEntry get(final String key) {
+    final Path file = index.getIfPresent(key);
+    CacheEntry entry = null;
+    if (file != null) {
+      try {
+        entry = read(file);
+      } catch (final IOException ex) {
+        log.warn("Failed to read cache entry {}: {}", file, ex.getMessage());
+        index.invalidate(key);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Stores an entry with the key specified.
+   *
+   * @param key The cache key specified.
+   * @param entry The entry specified.
+   */
+  final void put(final String key, final CacheEntry entry) {
+    final String hash = Hashing.sha256().hashString(key, Charsets.UTF_8).toString();
+    final Path file = directory.resolve(hash + "-" + UUID.randomUUID() + SUFFIX);
+    try {
+      write(file, entry);
+      index.put(key, file);
+    } catch (final IOException ex) {
+      log.warn("Failed to write cache entry {}: {}", file, ex.getMessage());
+    }
+  }
+
+  /**
+   * Removes the entry stored with the key specified.
+   *
+   * @param key The cache key specified.
+   */
+  final void remove(final String key) {
+    index.invalidate(key);
+  }
+
+  /**
+   * Removes all entries.
+   */
+  final void clear() {
+    index.invalidateAll();
+  }
+
+  /**
+   * Reads an entry file.
+   *
+   * @param file The entry file specified.
+   * @return The entry read.
+   * @throws IOException If IO errors occur.
+   */
+  private CacheEntry read(final Path file) throws IOException {
+    final DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+    return resourceManager.with(in).run(new ResourceHandler<CacheEntry>() {
+      @Override
+      public CacheEntry handle(final Closeable closeable) throws IOException {
+        return CacheEntry.readFrom(in);
+      }
+    });
+  }
+
+  /**
+   * Writes an entry file.
+   *
+   * @param file The entry file specified.
+   * @param entry The entry specified.
+   * @throws IOException If IO errors occur.
+   */
+  private void write(final Path file, final CacheEntry entry) throws IOException {
+    final DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    resourceManager.with(out).run(new VoidResourceHandler() {
+      @Override
+      public void handle(final Closeable closeable) throws IOException {
+        entry.writeTo(out);
+        out.flush();
+      }
+    });
+  }
+
+  /**
+   * Deletes the entry files in the directory.
+   *
+   * @throws IOException If IO errors occur.
+   */
+  private void deleteEntryFiles() throws IOException {
+    final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX);
+    resourceManager.with(files).run(new VoidResourceHandler() {
+      @Override
+      public void handle(final Closeable closeable) throws IOException {
+        for (final Path file : files) {
+          Files.deleteIfExists(file);
+        }
+      }
+    });
+  }
+
+  /**
+   * Weighs entries by the size of their files.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileWeigher implements Weigher<String, Path> {
+
+    @Override
+    public int weigh(final String key, final Path file) {
+      int weight = Integer.MAX_VALUE;
+      try {
+        weight = Ints.saturatedCast(Files.size(file));
+      } catch (final IOException ex) {
+        log.warn("Failed to get size of cache entry {}: {}", file, ex.getMessage());
+      }
+      return weight;
+    }
+  }
+
+  /**
+   * Deletes the files of entries removed from the index.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileRemover implements RemovalListener<String, Path> {
+
+    @Override
+    public void onRemoval(final RemovalNotification<String, Path> notification) {
+      try {
+        Files.deleteIfExists(notification.getValue());
+      } catch (final IOException ex) {
+        log.warn("Failed to delete cache entry {}: {}", notification.getValue(), ex.getMessage());
+      }
+    }
+  }
+}
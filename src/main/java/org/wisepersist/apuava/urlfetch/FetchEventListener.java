@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Listener SPI which is notified of each {@link FetchPhase} of the HTTP exchanges of URL
+ * fetchers, e.g. to record metrics with {@link FetchMetrics} or to create tracing spans. Each
+ * attempt of a retried or hedged request is a separate exchange with its own trace.
+ *
+ * <p>Listeners are called on the threads which execute the exchanges, so they must be
+ * thread-safe and return quickly.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface FetchEventListener {
+
+  /**
+   * Called when an exchange reaches a phase.
+   *
+   * @param phase The phase reached.
+   * @param trace The trace of the exchange, which holds the timestamps of the phases reached
+   *     so far.
+   */
+  void onEvent(FetchPhase phase, FetchTrace trace);
+}
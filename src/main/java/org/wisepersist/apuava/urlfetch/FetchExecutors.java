@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides executors used by {@link UrlFetcher} to run asynchronous fetches. Fetches block a
+ * thread while they wait for IO, so asynchronous fetches only move the blocking fetch to another
+ * thread rather than multiplexing many fetches on a few threads. The shared executors are
+ * therefore bounded, in threads and in queued tasks, so that a burst of fetches queues or is
+ * rejected with a {@link java.util.concurrent.RejectedExecutionException} instead of creating a
+ * thread per fetch.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class FetchExecutors {
+
+  /**
+   * The maximum number of threads of each shared executor.
+   */
+  static final int MAX_THREADS = 64;
+
+  /**
+   * The maximum number of tasks queued by each shared executor when all its threads are busy.
+   */
+  static final int MAX_QUEUED_TASKS = 1024;
+
+  private static final Logger log = LoggerFactory.getLogger(FetchExecutors.class); //NOPMD
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private FetchExecutors() {
+    // Do nothing here
+  }
+
+  /**
+   * Gets the shared executor which is used when no executor is specified to a
+   * {@link UrlFetcher}. It runs up to {@value #MAX_THREADS} fetches at once and queues up to
+   * {@value #MAX_QUEUED_TASKS} more, rejecting further fetches. Idle threads are stopped after a
+   * minute, and threads are daemon threads, so the executor doesn't need to be shut down.
+   *
+   * @return The shared executor.
+   */
+  public static ListeningExecutorService defaultExecutor() {
+    return DefaultExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Gets the shared executor which runs each task in a new virtual thread, so that blocking
+   * fetches, e.g. {@link UrlFetcher#executeAsync()} or the requests of a {@link BatchFetcher},
+   * don't hold platform threads while waiting for IO. Virtual threads need Java 21 or later.
+   * The library isn't built as a multi-release jar, so there is no Java 21 code path: the
+   * executor is created reflectively with {@code Executors.newVirtualThreadPerTaskExecutor()},
+   * which keeps the library running on Java 7, and on older runtimes the
+   * {@link #defaultExecutor()} is returned instead.
+   *
+   * <p>The locks of this library which may be held while blocking are
+   * {@link java.util.concurrent.locks.ReentrantLock}s rather than monitors, so they don't pin
+   * virtual threads to their carrier threads.
+   *
+   * @return The shared virtual thread executor, or the default executor if virtual threads
+   *     aren't available.
+   */
+  public static ListeningExecutorService virtualThreadExecutor() {
+    return VirtualThreadExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Checks whether the runtime supports virtual threads.
+   *
+   * @return True if {@link #virtualThreadExecutor()} runs tasks in virtual threads.
+   */
+  public static boolean isVirtualThreadAvailable() {
+    return VirtualThreadExecutorHolder.EXECUTOR != DefaultExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Gets the shared executor which runs hedged attempts of requests when the executor of the
+   * URL fetcher rejects them.
+   *
+   * @return The shared executor of hedged attempts.
+   */
+  static ListeningExecutorService attemptExecutor() {
+    return AttemptExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Creates a bounded executor of daemon threads.
+   *
+   * @param nameFormat The name format of the threads.
+   * @return The executor created.
+   */
+  private static ListeningExecutorService newBoundedExecutor(final String nameFormat) {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_TASKS),
+        new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return MoreExecutors.listeningDecorator(executor);
+  }
+
+  /**
+   * Creates an executor which runs each task in a new virtual thread.
+   *
+   * @return The executor created, or the default executor if virtual threads aren't available.
+   */
+  private static ListeningExecutorService newVirtualThreadExecutor() {
+    ListeningExecutorService executor = DefaultExecutorHolder.EXECUTOR;
+    try {
+      executor = MoreExecutors.listeningDecorator((ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+    } catch (final ReflectiveOperationException ex) {
+      log.debug("Virtual threads aren't available, using the default executor");
+    }
+    return executor;
+  }
+
+  /**
+   * Lazily initialises the shared executor on first use.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class DefaultExecutorHolder {
+
+    private static final ListeningExecutorService EXECUTOR =
+        newBoundedExecutor("apuava-urlfetch-%d");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DefaultExecutorHolder() {
+      // Do nothing here
+    }
+  }
+
+  /**
+   * Lazily initialises the shared executor of hedged attempts on first use.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class AttemptExecutorHolder {
+
+    private static final ListeningExecutorService EXECUTOR =
+        newBoundedExecutor("apuava-urlfetch-attempt-%d");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AttemptExecutorHolder() {
+      // Do nothing here
+    }
+  }
+
+  /**
+   * Lazily initialises the shared virtual thread executor on first use.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class VirtualThreadExecutorHolder {
+
+    private static final ListeningExecutorService EXECUTOR = newVirtualThreadExecutor();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private VirtualThreadExecutorHolder() {
+      // Do nothing here
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Built-in {@link FetchEventListener} which records per-route latency histograms and byte
+ * counters of the HTTP exchanges of URL fetchers, to be exported to monitoring systems.
+ *
+ * <pre>
+ * final FetchMetrics metrics = new FetchMetrics();
+ * fetcher.setEventListener(metrics);
+ * for (final HostMetrics host : metrics.getHostMetrics()) {
+ *   report(host.getRoute(), host.getTimeToFirstByte().getValueAtPercentile(99.0));
+ * }
+ * </pre>
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class FetchMetrics implements FetchEventListener {
+
+  private final ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+
+  @Override
+  public final void onEvent(final FetchPhase phase, final FetchTrace trace) {
+    if (phase == FetchPhase.CALL_END || phase == FetchPhase.CALL_FAILED) {
+      getHostMetrics(UrlRoutes.of(trace.getUrl())).record(trace, phase);
+    }
+  }
+
+  /**
+   * Gets the metrics of all routes called so far.
+   *
+   * @return The metrics of the routes.
+   */
+  public final Collection<HostMetrics> getHostMetrics() {
+    return ImmutableList.copyOf(hosts.values());
+  }
+
+  /**
+   * Gets the metrics of a route, creating them if the route hasn't been called yet.
+   *
+   * @param route The route key, e.g. {@code https://example.com:443}.
+   * @return The metrics of the route.
+   */
+  public final HostMetrics getHostMetrics(final String route) {
+    HostMetrics metrics = hosts.get(route);
+    if (metrics == null) {
+      final HostMetrics created = new HostMetrics(route);
+      metrics = hosts.putIfAbsent(route, created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+    return metrics;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Phases of one HTTP exchange of {@link UrlFetcher}, reported to {@link FetchEventListener} in
+ * this order. Phases which don't apply to an exchange, e.g. the request body of GET requests,
+ * are skipped.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public enum FetchPhase {
+  /**
+   * The exchange started.
+   */
+  CALL_START,
+  /**
+   * Resolving the host name started. Only reported when hosts are resolved by a
+   * {@link HostResolver} of this library, see {@link ResolvingConnectionFactory}; otherwise
+   * the JDK resolves the host while connecting, which is part of the connect phase.
+   */
+  DNS_START,
+  /**
+   * Resolving the host name ended.
+   */
+  DNS_END,
+  /**
+   * Connecting started. {@link java.net.HttpURLConnection} doesn't report TLS handshakes
+   * separately, so connecting includes the TLS handshake of HTTPS connections, and takes
+   * almost no time when a kept-alive connection is reused.
+   */
+  CONNECT_START,
+  /**
+   * Connecting ended.
+   */
+  CONNECT_END,
+  /**
+   * Writing the request body started.
+   */
+  REQUEST_BODY_START,
+  /**
+   * Writing the request body ended.
+   */
+  REQUEST_BODY_END,
+  /**
+   * The status line and headers of the response were received, i.e. time to first byte.
+   */
+  RESPONSE_HEADERS_END,
+  /**
+   * The response body was read and the response closed.
+   */
+  RESPONSE_BODY_END,
+  /**
+   * The exchange ended successfully.
+   */
+  CALL_END,
+  /**
+   * The exchange failed, see {@link FetchTrace#getError()}.
+   */
+  CALL_FAILED
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace of one HTTP exchange, which records the {@link System#nanoTime()} timestamp of each
+ * {@link FetchPhase} reached and the bytes transferred, and reports each phase to a
+ * {@link FetchEventListener}. A trace is updated by one thread at a time, but the response
+ * body may be read on another thread than the one which sent the request. Errors thrown by the
+ * listener are logged and don't affect the exchange.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class FetchTrace {
+
+  private static final Logger log = LoggerFactory.getLogger(FetchTrace.class); //NOPMD
+  private static final FetchTrace DISABLED = new FetchTrace(null, null, null);
+  private static final ThreadLocal<FetchTrace> CURRENT = new ThreadLocal<>();
+
+  private final URL url;
+  private final RequestMethod method;
+  private final FetchEventListener listener;
+  private final long[] timestamps = new long[FetchPhase.values().length];
+  private final boolean[] reached = new boolean[FetchPhase.values().length];
+  private int statusCode = -1;
+  private long requestBytes;
+  private long responseBytes;
+  private IOException error;
+
+  /**
+   * Constructs a new {@link FetchTrace} instance.
+   *
+   * @param url The request URL.
+   * @param method The request method.
+   * @param listener The listener notified of each phase.
+   */
+  private FetchTrace(final URL url, final RequestMethod method,
+      final FetchEventListener listener) {
+    this.url = url;
+    this.method = method;
+    this.listener = listener;
+  }
+
+  /**
+   * Starts the trace of an exchange. If no listener is specified, a disabled trace which
+   * records nothing is returned.
+   *
+   * @param url The request URL.
+   * @param method The request method.
+   * @param listener The listener notified of each phase, or null for none.
+   * @return The trace started.
+   */
+  static FetchTrace start(final URL url, final RequestMethod method,
+      final FetchEventListener listener) {
+    FetchTrace trace = DISABLED;
+    if (listener != null) {
+      trace = new FetchTrace(url, method, listener);
+      trace.fire(FetchPhase.CALL_START);
+    }
+    return trace;
+  }
+
+  /**
+   * Checks whether this trace records and reports phases.
+   *
+   * @return True unless this trace is disabled.
+   */
+  boolean isEnabled() {
+    return listener != null;
+  }
+
+  /**
+   * Gets the trace of the exchange which the calling thread is opening or connecting, so that
+   * the layer which resolves the host, e.g. {@link ResolvingConnectionFactory}, can report the
+   * {@link FetchPhase#DNS_START} and {@link FetchPhase#DNS_END} phases.
+   *
+   * @return The current trace, or a disabled trace if none.
+   */
+  static FetchTrace current() {
+    FetchTrace trace = CURRENT.get();
+    if (trace == null) {
+      trace = DISABLED;
+    }
+    return trace;
+  }
+
+  /**
+   * Makes this trace the current trace of the calling thread if it is enabled.
+   */
+  void attach() {
+    if (listener != null) {
+      CURRENT.set(this);
+    }
+  }
+
+  /**
+   * Clears the current trace of the calling thread.
+   */
+  void detach() {
+    if (listener != null) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * Records that a phase was reached now and notifies the listener. Runtime errors of the
+   * listener are logged rather than thrown.
+   *
+   * @param phase The phase reached.
+   */
+  @SuppressWarnings("IllegalCatch")
+  void fire(final FetchPhase phase) {
+    if (listener != null) {
+      timestamps[phase.ordinal()] = System.nanoTime();
+      reached[phase.ordinal()] = true;
+      try {
+        listener.onEvent(phase, this);
+      } catch (final RuntimeException ex) { //NOPMD
+        log.warn("Fetch event listener failed on " + phase + " of " + url, ex);
+      }
+    }
+  }
+
+  /**
+   * Records that the exchange failed and notifies the listener.
+   *
+   * @param theError The error of the exchange.
+   */
+  void fail(final IOException theError) {
+    if (listener != null) {
+      error = theError;
+      fire(FetchPhase.CALL_FAILED);
+    }
+  }
+
+  /**
+   * Records that the request body was written.
+   *
+   * @param bytes The number of request body bytes written to the connection.
+   */
+  void sent(final long bytes) {
+    if (listener != null) {
+      requestBytes = bytes;
+      fire(FetchPhase.REQUEST_BODY_END);
+    }
+  }
+
+  /**
+   * Records that the status line and headers of the response were received.
+   *
+   * @param theStatusCode The status code of the response.
+   */
+  void received(final int theStatusCode) {
+    if (listener != null) {
+      statusCode = theStatusCode;
+      fire(FetchPhase.RESPONSE_HEADERS_END);
+    }
+  }
+
+  /**
+   * Records that the response body was read and the response closed, which completes the
+   * exchange.
+   *
+   * @param bytes The number of response body bytes received on the wire.
+   * @param theError The error which occurred reading the body, or null if none.
+   */
+  void complete(final long bytes, final IOException theError) {
+    if (listener != null) {
+      responseBytes = bytes;
+      fire(FetchPhase.RESPONSE_BODY_END);
+      if (theError == null) {
+        fire(FetchPhase.CALL_END);
+      } else {
+        fail(theError);
+      }
+    }
+  }
+
+  public URL getUrl() {
+    return url;
+  }
+
+  public RequestMethod getMethod() {
+    return method;
+  }
+
+  /**
+   * Gets the status code of the response.
+   *
+   * @return The status code, or -1 if no response was received.
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Gets the number of request body bytes written to the connection.
+   *
+   * @return The number of request body bytes.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Gets the number of response body bytes received on the wire, before decompression.
+   *
+   * @return The number of response body bytes.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Gets the error of a failed exchange.
+   *
+   * @return The error, or null if the exchange hasn't failed.
+   */
+  public IOException getError() {
+    return error;
+  }
+
+  /**
+   * Checks whether the exchange reached a phase.
+   *
+   * @param phase The phase specified.
+   * @return True if the phase was reached.
+   */
+  public boolean hasReached(final FetchPhase phase) {
+    return reached[phase.ordinal()];
+  }
+
+  /**
+   * Gets the {@link System#nanoTime()} timestamp of a phase.
+   *
+   * @param phase The phase specified.
+   * @return The timestamp, which is meaningless if the phase wasn't reached.
+   */
+  public long getTimestamp(final FetchPhase phase) {
+    return timestamps[phase.ordinal()];
+  }
+
+  /**
+   * Gets the time between two phases.
+   *
+   * @param from The earlier phase.
+   * @param to The later phase.
+   * @param unit The time unit of the result.
+   * @return The time between the phases, or -1 if either wasn't reached.
+   */
+  public long getDuration(final FetchPhase from, final FetchPhase to, final TimeUnit unit) {
+    long duration = -1L;
+    if (hasReached(from) && hasReached(to)) {
+      duration = unit.convert(getTimestamp(to) - getTimestamp(from), TimeUnit.NANOSECONDS);
+    }
+    return duration;
+  }
+}
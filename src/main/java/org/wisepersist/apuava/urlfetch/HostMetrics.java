@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the HTTP exchanges with one route (protocol, host and port), recorded by
+ * {@link FetchMetrics}. Latencies are in nanoseconds.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class HostMetrics {
+
+  private static final TimeUnit NANOS = TimeUnit.NANOSECONDS;
+
+  private final String route;
+  private final LatencyHistogram dnsTime = new LatencyHistogram();
+  private final LatencyHistogram connectTime = new LatencyHistogram();
+  private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+  private final LatencyHistogram totalTime = new LatencyHistogram();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong requestBytes = new AtomicLong();
+  private final AtomicLong responseBytes = new AtomicLong();
+
+  /**
+   * Constructs a new {@link HostMetrics} instance.
+   *
+   * @param route The route key, e.g. {@code https://example.com:443}.
+   */
+  HostMetrics(final String route) {
+    this.route = route;
+  }
+
+  /**
+   * Records a completed exchange.
+   *
+   * @param trace The trace of the exchange.
+   * @param end The phase which completed the exchange, {@link FetchPhase#CALL_END} or
+   *     {@link FetchPhase#CALL_FAILED}.
+   */
+  void record(final FetchTrace trace, final FetchPhase end) {
+    calls.incrementAndGet();
+    if (end == FetchPhase.CALL_FAILED) {
+      failures.incrementAndGet();
+    }
+    requestBytes.addAndGet(trace.getRequestBytes());
+    responseBytes.addAndGet(trace.getResponseBytes());
+    record(dnsTime, trace.getDuration(FetchPhase.DNS_START, FetchPhase.DNS_END, NANOS));
+    record(connectTime,
+        trace.getDuration(FetchPhase.CONNECT_START, FetchPhase.CONNECT_END, NANOS));
+    record(timeToFirstByte,
+        trace.getDuration(FetchPhase.CALL_START, FetchPhase.RESPONSE_HEADERS_END, NANOS));
+    record(totalTime, trace.getDuration(FetchPhase.CALL_START, end, NANOS));
+  }
+
+  /**
+   * Records a duration if it was measured.
+   *
+   * @param histogram The histogram to record to.
+   * @param nanos The duration in nanoseconds, or -1 if not measured.
+   */
+  private static void record(final LatencyHistogram histogram, final long nanos) {
+    if (nanos >= 0) {
+      histogram.record(nanos);
+    }
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public LatencyHistogram getDnsTime() {
+    return dnsTime;
+  }
+
+  public LatencyHistogram getConnectTime() {
+    return connectTime;
+  }
+
+  public LatencyHistogram getTimeToFirstByte() {
+    return timeToFirstByte;
+  }
+
+  public LatencyHistogram getTotalTime() {
+    return totalTime;
+  }
+
+  public long getCalls() {
+    return calls.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getRequestBytes() {
+    return requestBytes.get();
+  }
+
+  public long getResponseBytes() {
+    return responseBytes.get();
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names to addresses for {@link ResolvingConnectionFactory}, so that resolving
+ * can be cached and refreshed ahead of connecting, see {@link CachingHostResolver}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface HostResolver {
+
+  /**
+   * Resolves the addresses of a host.
+   *
+   * @param host The host name specified.
+   * @return The addresses of the host, not empty, in the order they should be tried.
+   * @throws UnknownHostException If the host can't be resolved.
+   */
+  InetAddress[] resolve(String host) throws UnknownHostException;
+}
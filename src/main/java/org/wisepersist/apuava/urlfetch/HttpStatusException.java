@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown when the server answers with an error status code (400 and above), so that callers
+ * and retry policies can tell the status code of failed requests.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class HttpStatusException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int statusCode;
+
+  /**
+   * Constructs a new {@link HttpStatusException} instance.
+   *
+   * @param statusCode The status code of the response.
+   * @param url The URL of the request.
+   */
+  public HttpStatusException(final int statusCode, final URL url) {
+    super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+    this.statusCode = statusCode;
+  }
+
+  public final int getStatusCode() {
+    return statusCode;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Connection factory which uses the HTTP/1.1 client of the JDK, whose sockets are kept alive by
+ * the JDK keep-alive cache.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class JdkConnectionFactory implements ConnectionFactory {
+
+  @Override
+  public final HttpURLConnection open(final URL url) throws IOException {
+    return (HttpURLConnection) url.openConnection();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values, e.g. latencies in nanoseconds, with log-linear buckets in
+ * the style of HdrHistogram: each power of two is split into 32 linear sub-buckets, so values
+ * are kept with a relative error of about 3% over the whole range of longs in 1,888 counters.
+ * Recording is lock-free and never allocates; reading is weakly consistent with concurrent
+ * recording.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+  private static final double PERCENT = 100.0;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value.
+   *
+   * @param value The value, which must not be negative.
+   */
+  public void record(final long value) {
+    Preconditions.checkArgument(value >= 0, "Negative value: %s", value);
+    counts.incrementAndGet(indexOf(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the mean of the values recorded.
+   *
+   * @return The mean, or 0 if no values were recorded.
+   */
+  public double getMean() {
+    final long total = count.get();
+    double mean = 0.0;
+    if (total > 0) {
+      mean = (double) sum.get() / total;
+    }
+    return mean;
+  }
+
+  /**
+   * Gets the value at a percentile, which is the highest value of the bucket holding it, so
+   * it is never less than the exact percentile.
+   *
+   * @param percentile The percentile, from 0 to 100.
+   * @return The value at the percentile, or 0 if no values were recorded.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= PERCENT,
+        "Percentile out of range: %s", percentile);
+    final long rank = Math.max(1L, (long) Math.ceil(percentile / PERCENT * count.get()));
+    long seen = 0L;
+    int index = 0;
+    while (index < BUCKETS - 1 && seen + counts.get(index) < rank) {
+      seen += counts.get(index);
+      index += 1;
+    }
+    long value = 0L;
+    if (count.get() > 0) {
+      value = Math.min(highestValueOf(index), max.get());
+    }
+    return value;
+  }
+
+  /**
+   * Gets the index of the bucket of a value. Values below 32 have a bucket each; larger values
+   * are bucketed by their highest six bits.
+   *
+   * @param value The value, which is not negative.
+   * @return The index of the bucket.
+   */
+  static int indexOf(final long value) {
+    int index = (int) value;
+    if (value >= SUB_BUCKETS) {
+      final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      index = SUB_BUCKETS * (shift + 1) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    return index;
+  }
+
+  /**
+   * Gets the highest value of a bucket.
+   *
+   * @param index The index of the bucket.
+   * @return The highest value which is counted in the bucket.
+   */
+  static long highestValueOf(final int index) {
+    long value = index;
+    if (index >= SUB_BUCKETS) {
+      final int shift = index / SUB_BUCKETS - 1;
+      final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+      value = lowest + (1L << shift) - 1;
+    }
+    return value;
+  }
+}
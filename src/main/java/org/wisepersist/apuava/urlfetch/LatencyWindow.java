@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size window of the most recent latencies, from which percentiles are estimated.
+ * Recording is lock free; computing a percentile copies and sorts the window.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class LatencyWindow {
+
+  private static final int SIZE = 128;
+  private static final int MIN_SAMPLES = 20;
+
+  private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * Records a latency, replacing the oldest one once the window is full.
+   *
+   * @param millis The latency in milliseconds.
+   */
+  void record(final long millis) {
+    samples.set((count.getAndIncrement() & Integer.MAX_VALUE) % SIZE, millis);
+  }
+
+  /**
+   * Estimates a percentile of the recorded latencies.
+   *
+   * @param percentile The percentile between 0 and 1.
+   * @return The latency in milliseconds, or -1 if too few latencies were recorded.
+   */
+  long percentile(final double percentile) {
+    final int size = Math.min(count.get() & Integer.MAX_VALUE, SIZE);
+    long result = -1;
+    if (size >= MIN_SAMPLES) {
+      final long[] sorted = new long[size];
+      for (int i = 0; i < size; i += 1) {
+        sorted[i] = samples.get(i);
+      }
+      Arrays.sort(sorted);
+      result = sorted[(int) Math.ceil(percentile * size) - 1];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection manager which only limits the number of connections leased in total and per route
+ * (protocol, host and port) with semaphores. It doesn't pool connections itself: they are
+ * opened by a {@link ConnectionFactory} and, with the default one, sockets of released
+ * connections are kept alive by the JDK keep-alive cache, whose idle timeout follows the
+ * server's Keep-Alive header and whose number of idle sockets per route is limited by the
+ * {@code http.maxConnections} system property. When a per route limit is set, that property
+ * should be at least the limit.
+ *
+ * <p>The connection manager created by Guice or by {@link #LimitingConnectionManager()} has no
+ * limits and never waits; limits are opted in with
+ * {@link #LimitingConnectionManager(int, int)}. The permits of a route are dropped once no
+ * connection of the route is leased or waited for, so the routes tracked stay bounded by the
+ * routes in use.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+@SuppressWarnings("ClassDataAbstractionCoupling")
+public class LimitingConnectionManager implements ConnectionManager {
+
+  private static final int UNLIMITED = Integer.MAX_VALUE;
+  private static final long DEFAULT_LEASE_TIMEOUT = 15000L;
+
+  private final Semaphore totalPermits;
+  private final LoadingCache<String, Semaphore> routePermits;
+  private final ConcurrentMap<HttpURLConnection, Semaphore> leases = new ConcurrentHashMap<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile long leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+  private volatile ConnectionFactory connectionFactory = new JdkConnectionFactory();
+
+  /**
+   * Constructs a new {@link LimitingConnectionManager} instance without limits.
+   */
+  @Inject
+  public LimitingConnectionManager() {
+    this(UNLIMITED, UNLIMITED);
+  }
+
+  /**
+   * Constructs a new {@link LimitingConnectionManager} instance.
+   *
+   * @param maxTotal The maximum number of connections leased in total.
+   * @param maxPerRoute The maximum number of connections leased per route.
+   */
+  public LimitingConnectionManager(final int maxTotal, final int maxPerRoute) {
+    Preconditions.checkArgument(maxTotal > 0, "maxTotal must be positive");
+    Preconditions.checkArgument(maxPerRoute > 0, "maxPerRoute must be positive");
+    this.totalPermits = new Semaphore(maxTotal, true);
+    this.routePermits = CacheBuilder.newBuilder().weakValues().build(
+        new CacheLoader<String, Semaphore>() {
+          @Override
+          public Semaphore load(final String route) {
+            return new Semaphore(maxPerRoute, true);
+          }
+        });
+  }
+
+  /**
+   * Gets the connection manager shared by URL fetchers which are not given a specific one.
+   *
+   * @return The shared connection manager.
+   */
+  public static LimitingConnectionManager shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * Specifies how long {@link #open(URL)} waits for a connection to become available once a
+   * limit is reached.
+   *
+   * @param theLeaseTimeout The lease timeout in milliseconds.
+   * @return This connection manager.
+   */
+  public final LimitingConnectionManager setLeaseTimeout(final long theLeaseTimeout) {
+    this.leaseTimeout = theLeaseTimeout;
+    return this;
+  }
+
+  /**
+   * Specifies the factory which opens connections. If not specified, the HTTP/1.1 client of
+   * the JDK is used.
+   *
+   * @param theConnectionFactory The connection factory specified.
+   * @return This connection manager.
+   */
+  public final LimitingConnectionManager setConnectionFactory(
+      final ConnectionFactory theConnectionFactory) {
+    this.connectionFactory = Preconditions.checkNotNull(theConnectionFactory);
+    return this;
+  }
+
+  @Override
+  public final HttpURLConnection open(final URL url) throws IOException {
+    final Semaphore route = getRoutePermits(url);
+    acquire(route);
+    boolean totalHeld = false;
+    boolean leased = false;
+    HttpURLConnection conn = null;
+    try {
+      acquire(totalPermits);
+      totalHeld = true;
+      conn = connectionFactory.open(url);
+      leases.put(conn, route);
+      leased = true;
+    } finally {
+      if (!leased) {
+        releasePermits(route, totalHeld);
+      }
+    }
+    return conn;
+  }
+
+  @Override
+  public final void release(final HttpURLConnection conn, final boolean reusable) {
+    final Semaphore route = leases.remove(conn);
+    if (route != null) {
+      if (!reusable) {
+        conn.disconnect();
+      }
+      releasePermits(route, true);
+    }
+  }
+
+  @Override
+  public final PoolStats getStats() {
+    return new PoolStats(leases.size(), totalPermits.availablePermits(), pending.get());
+  }
+
+  /**
+   * Acquires a permit, waiting up to the lease timeout.
+   *
+   * @param permits The permits to acquire from.
+   * @throws IOException If no permit becomes available in time or the thread is interrupted.
+   */
+  private void acquire(final Semaphore permits) throws IOException {
+    if (!permits.tryAcquire()) {
+      pending.incrementAndGet();
+      try {
+        if (!permits.tryAcquire(leaseTimeout, TimeUnit.MILLISECONDS)) {
+          throw new IOException("Timeout waiting for connection from pool");
+        }
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for connection from pool");
+      } finally {
+        pending.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Releases the permits held by a lease.
+   *
+   * @param route The route permits specified.
+   * @param total True if a permit from the total permits is held as well.
+   */
+  private void releasePermits(final Semaphore route, final boolean total) {
+    if (total) {
+      totalPermits.release();
+    }
+    route.release();
+  }
+
+  /**
+   * Gets the permits of the route of the URL specified, creating them if needed. The permits
+   * are weakly referenced by the cache and strongly by the leases and waiting threads, so they
+   * are only collected once all of them are available again.
+   *
+   * @param url The URL specified.
+   * @return The permits of the route.
+   */
+  private Semaphore getRoutePermits(final URL url) {
+    return routePermits.getUnchecked(UrlRoutes.of(url));
+  }
+
+  /**
+   * Lazily initialises the shared connection manager on first use.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class SharedHolder {
+
+    private static final LimitingConnectionManager INSTANCE = new LimitingConnectionManager();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SharedHolder() {
+      // Do nothing here
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Encoder of the application/x-www-form-urlencoded format with UTF-8, which produces the same
+ * output as {@link java.net.URLEncoder} but writes directly into the builder specified. Runs of
+ * characters which don't need encoding are copied as they are.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class PercentEncoder {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final int ASCII_LIMIT = 0x80;
+  private static final int TWO_BYTE_LIMIT = 0x800;
+  private static final int TWO_BYTE_LEAD = 0xC0;
+  private static final int THREE_BYTE_LEAD = 0xE0;
+  private static final int FOUR_BYTE_LEAD = 0xF0;
+  private static final int CONTINUATION = 0x80;
+  private static final int SIX_BITS = 0x3F;
+  private static final int BITS_PER_BYTE = 6;
+  private static final int TWO_BYTES_SHIFT = 2 * BITS_PER_BYTE;
+  private static final int THREE_BYTES_SHIFT = TWO_BYTES_SHIFT + BITS_PER_BYTE;
+  private static final int HALF_BYTE = 4;
+  private static final int LOW_NIBBLE = 0x0F;
+  private static final char REPLACEMENT = '?';
+  private static final boolean[] SAFE = new boolean[ASCII_LIMIT];
+
+  static {
+    for (char ch = 'a'; ch <= 'z'; ch += 1) {
+      SAFE[ch] = true;
+      SAFE[Character.toUpperCase(ch)] = true;
+    }
+    for (char ch = '0'; ch <= '9'; ch += 1) {
+      SAFE[ch] = true;
+    }
+    for (final char ch : ".-*_".toCharArray()) {
+      SAFE[ch] = true;
+    }
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private PercentEncoder() {
+    // Do nothing here
+  }
+
+  /**
+   * Appends an encoded value to a builder.
+   *
+   * @param value The value to encode.
+   * @param out The builder which the encoded value is appended to.
+   * @return The builder specified.
+   */
+  static StringBuilder encode(final CharSequence value, final StringBuilder out) {
+    final int length = value.length();
+    int start = 0;
+    int index = 0;
+    while (index < length) {
+      if (isSafe(value.charAt(index))) {
+        index += 1;
+      } else {
+        out.append(value, start, index);
+        index = encodeChar(value, index, out);
+        start = index;
+      }
+    }
+    return out.append(value, start, length);
+  }
+
+  /**
+   * Checks whether a character is copied without encoding.
+   *
+   * @param ch The character specified.
+   * @return True if the character doesn't need encoding.
+   */
+  static boolean isSafe(final char ch) {
+    return ch < ASCII_LIMIT && SAFE[ch];
+  }
+
+  /**
+   * Appends the encoding of the character at an index, which is either a plus sign for space
+   * or the percent encoded UTF-8 bytes of the character.
+   *
+   * @param value The value being encoded.
+   * @param index The index of the character.
+   * @param out The builder which the encoding is appended to.
+   * @return The index of the next character to encode.
+   */
+  private static int encodeChar(final CharSequence value, final int index,
+      final StringBuilder out) {
+    final char ch = value.charAt(index);
+    int next = index + 1;
+    if (ch == ' ') {
+      out.append('+');
+    } else if (ch < ASCII_LIMIT) {
+      appendByte(ch, out);
+    } else if (ch < TWO_BYTE_LIMIT) {
+      appendByte(TWO_BYTE_LEAD | ch >> BITS_PER_BYTE, out);
+      appendContinuation(ch, 0, out);
+    } else if (Character.isSurrogate(ch)) {
+      next = encodeSurrogate(value, index, out);
+    } else {
+      appendByte(THREE_BYTE_LEAD | ch >> TWO_BYTES_SHIFT, out);
+      appendContinuation(ch, BITS_PER_BYTE, out);
+      appendContinuation(ch, 0, out);
+    }
+    return next;
+  }
+
+  /**
+   * Appends the encoding of a surrogate pair starting at an index. Unpaired surrogates are
+   * encoded as a question mark, like {@link String#getBytes(java.nio.charset.Charset)} does.
+   *
+   * @param value The value being encoded.
+   * @param index The index of the surrogate.
+   * @param out The builder which the encoding is appended to.
+   * @return The index of the next character to encode.
+   */
+  private static int encodeSurrogate(final CharSequence value, final int index,
+      final StringBuilder out) {
+    final char high = value.charAt(index);
+    int next = index + 1;
+    if (Character.isHighSurrogate(high) && next < value.length()
+        && Character.isLowSurrogate(value.charAt(next))) {
+      final int codePoint = Character.toCodePoint(high, value.charAt(next));
+      appendByte(FOUR_BYTE_LEAD | codePoint >> THREE_BYTES_SHIFT, out);
+      appendContinuation(codePoint, TWO_BYTES_SHIFT, out);
+      appendContinuation(codePoint, BITS_PER_BYTE, out);
+      appendContinuation(codePoint, 0, out);
+      next += 1;
+    } else {
+      appendByte(REPLACEMENT, out);
+    }
+    return next;
+  }
+
+  /**
+   * Appends a UTF-8 continuation byte holding six bits of a code point.
+   *
+   * @param codePoint The code point being encoded.
+   * @param shift The position of the six bits in the code point.
+   * @param out The builder which the byte is appended to.
+   */
+  private static void appendContinuation(final int codePoint, final int shift,
+      final StringBuilder out) {
+    appendByte(CONTINUATION | codePoint >> shift & SIX_BITS, out);
+  }
+
+  /**
+   * Appends a percent encoded byte.
+   *
+   * @param value The byte value.
+   * @param out The builder which the byte is appended to.
+   */
+  private static void appendByte(final int value, final StringBuilder out) {
+    out.append('%').append(HEX[value >> HALF_BYTE & LOW_NIBBLE]).append(HEX[value & LOW_NIBBLE]);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+/**
+ * Statistics of a {@link ConnectionManager}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class PoolStats {
+
+  private final int leased;
+  private final int available;
+  private final int pending;
+
+  /**
+   * Constructs a new {@link PoolStats} instance.
+   *
+   * @param leased The number of connections currently leased.
+   * @param available The number of connections which can still be leased without waiting.
+   * @param pending The number of callers waiting for a connection.
+   */
+  public PoolStats(final int leased, final int available, final int pending) {
+    this.leased = leased;
+    this.available = available;
+    this.pending = pending;
+  }
+
+  public final int getLeased() {
+    return leased;
+  }
+
+  public final int getAvailable() {
+    return available;
+  }
+
+  public final int getPending() {
+    return pending;
+  }
+
+  @Override
+  public final String toString() {
+    return "[leased: " + leased + "; available: " + available + "; pending: " + pending + "]";
+  }
+}
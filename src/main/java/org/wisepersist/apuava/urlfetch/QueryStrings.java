@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Utility methods for encoding query strings and form bodies. Parameters are encoded with
+ * {@link PercentEncoder} into a buffer reused by each thread, and the encodings of parameter
+ * names are cached since the same names are sent again and again.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class QueryStrings {
+
+  private static final int MAX_CACHED_NAMES = 1024;
+  private static final int MAX_NAME_LENGTH = 64;
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+  private static final ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<>();
+  private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(INITIAL_CAPACITY);
+    }
+  };
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private QueryStrings() {
+    // Do nothing here
+  }
+
+  /**
+   * Encodes parameters and appends them to a query string which is already encoded.
+   *
+   * @param prefix The encoded query string, which may be empty.
+   * @param params The parameters to encode and append.
+   * @return The query string.
+   */
+  static String join(final CharSequence prefix,
+      final Iterable<? extends Map.Entry<String, String>> params) {
+    StringBuilder query = BUFFER.get();
+    if (query.capacity() > MAX_RETAINED_CAPACITY) {
+      query = new StringBuilder(INITIAL_CAPACITY);
+      BUFFER.set(query);
+    }
+    query.setLength(0);
+    return append(query.append(prefix), params).toString();
+  }
+
+  /**
+   * Appends encoded parameters to a query string.
+   *
+   * @param query The query string, which may already hold encoded parameters.
+   * @param params The parameters to encode and append.
+   * @return The query string builder.
+   */
+  private static StringBuilder append(final StringBuilder query,
+      final Iterable<? extends Map.Entry<String, String>> params) {
+    for (final Map.Entry<String, String> pair : params) {
+      if (query.length() > 0) {
+        query.append('&');
+      }
+      query.append(encodeName(pair.getKey())).append('=');
+      PercentEncoder.encode(pair.getValue(), query);
+    }
+    return query;
+  }
+
+  /**
+   * Encodes a parameter name, using the cached encoding if any. Only short names are cached,
+   * up to a bounded number of them.
+   *
+   * @param name The parameter name specified.
+   * @return The encoded name.
+   */
+  static String encodeName(final String name) {
+    String encoded = NAMES.get(name);
+    if (encoded == null) {
+      encoded = PercentEncoder.encode(name, new StringBuilder(name.length())).toString();
+      if (name.length() <= MAX_NAME_LENGTH && NAMES.size() < MAX_CACHED_NAMES) {
+        NAMES.putIfAbsent(name, encoded);
+      }
+    }
+    return encoded;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import org.wisepersist.apuava.settings.Settings;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits per host, e.g. for upstream quotas, enforced with a {@link TokenBucket} per host.
+ * Requests wait for a permit up to the maximum wait, and fail with
+ * {@link CallNotPermittedException} if none is available in time. The limits should be
+ * specified before the first request to a host. Share one instance between the URL fetchers
+ * calling the same hosts.
+ *
+ * <p>Limits can be read from {@link Settings}, e.g. for a quota of 10 requests per second with
+ * bursts of 20 requests, and unlimited requests to other hosts:
+ *
+ * <pre>
+ * urlfetch.ratelimit.api.example.com.rate=10
+ * urlfetch.ratelimit.api.example.com.burst=20
+ * urlfetch.ratelimit.maxwait=500
+ * </pre>
+ *
+ * <p>The settings {@code urlfetch.ratelimit.rate} and {@code urlfetch.ratelimit.burst} are the
+ * defaults of the hosts without their own settings. A rate of 0 means unlimited.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RateLimits {
+
+  /**
+   * Prefix of the settings of rate limits.
+   */
+  public static final String PREFIX = "urlfetch.ratelimit.";
+
+  private static final String RATE = "rate";
+  private static final String BURST = "burst";
+  private static final int DEFAULT_BURST = 1;
+
+  private static final TokenBucket UNLIMITED =
+      new TokenBucket("*", Double.MAX_VALUE, Integer.MAX_VALUE);
+
+  private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final Settings settings;
+  private volatile double rate;
+  private volatile int burst = DEFAULT_BURST;
+  private volatile long maxWaitNanos;
+
+  /**
+   * Constructs a new {@link RateLimits} instance without limits until some are specified.
+   */
+  public RateLimits() {
+    this.settings = null;
+  }
+
+  /**
+   * Constructs a new {@link RateLimits} instance with the limits of the settings specified.
+   *
+   * @param settings The settings specified.
+   */
+  public RateLimits(final Settings settings) {
+    this.settings = Preconditions.checkNotNull(settings);
+    this.rate = settings.getDouble(PREFIX + RATE, 0.0);
+    this.burst = settings.getInt(PREFIX + BURST, DEFAULT_BURST);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(settings.getInt(PREFIX + "maxwait", 0));
+  }
+
+  /**
+   * Specifies the limit of the hosts without their own limit, unlimited by default.
+   *
+   * @param permitsPerSecond The number of requests per second, or 0 for unlimited.
+   * @param theBurst The number of requests which can be sent at once after a quiet period.
+   * @return These rate limits.
+   */
+  public final RateLimits setDefaultLimit(final double permitsPerSecond, final int theBurst) {
+    Preconditions.checkArgument(theBurst > 0, "burst must be positive");
+    this.rate = permitsPerSecond;
+    this.burst = theBurst;
+    return this;
+  }
+
+  /**
+   * Specifies the limit of a host, which takes precedence over the settings.
+   *
+   * @param host The host specified.
+   * @param permitsPerSecond The number of requests per second, or 0 for unlimited.
+   * @param theBurst The number of requests which can be sent at once after a quiet period.
+   * @return These rate limits.
+   */
+  public final RateLimits setHostLimit(final String host, final double permitsPerSecond,
+      final int theBurst) {
+    buckets.put(host, newBucket(host, permitsPerSecond, theBurst));
+    return this;
+  }
+
+  /**
+   * Specifies how long requests wait for a permit before they fail, no wait by default.
+   *
+   * @param millis The maximum wait in milliseconds.
+   * @return These rate limits.
+   */
+  public final RateLimits setMaxWait(final long millis) {
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    return this;
+  }
+
+  /**
+   * Gets the token buckets of the limited hosts requested so far.
+   *
+   * @return The token buckets.
+   */
+  public final Collection<TokenBucket> getTokenBuckets() {
+    final Collection<TokenBucket> limited = new ArrayList<>(buckets.values());
+    limited.removeAll(Collections.singleton(UNLIMITED));
+    return Collections.unmodifiableCollection(limited);
+  }
+
+  /**
+   * Takes a permit for a request to the host of the URL specified, waiting up to the maximum
+   * wait.
+   *
+   * @param url The URL specified.
+   * @throws CallNotPermittedException If no permit is available in time.
+   * @throws InterruptedIOException If the thread is interrupted while waiting.
+   */
+  final void acquire(final URL url) throws CallNotPermittedException, InterruptedIOException {
+    final TokenBucket bucket = getTokenBucket(url.getHost());
+    if (bucket != UNLIMITED) {
+      bucket.acquire(maxWaitNanos);
+    }
+  }
+
+  /**
+   * Gets the token bucket of a host, creating it from the settings if needed.
+   *
+   * @param host The host specified.
+   * @return The token bucket of the host.
+   */
+  private TokenBucket getTokenBucket(final String host) {
+    TokenBucket bucket = buckets.get(host);
+    if (bucket == null) {
+      double hostRate = rate;
+      int hostBurst = burst;
+      if (settings != null) {
+        hostRate = settings.getDouble(PREFIX + host + "." + RATE, hostRate);
+        hostBurst = settings.getInt(PREFIX + host + "." + BURST, hostBurst);
+      }
+      final TokenBucket created = newBucket(host, hostRate, hostBurst);
+      bucket = buckets.putIfAbsent(host, created);
+      if (bucket == null) {
+        bucket = created;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Creates the token bucket of a host.
+   *
+   * @param host The host specified.
+   * @param permitsPerSecond The number of requests per second, or 0 for unlimited.
+   * @param theBurst The number of requests which can be sent at once.
+   * @return The token bucket created.
+   */
+  private static TokenBucket newBucket(final String host, final double permitsPerSecond,
+      final int theBurst) {
+    TokenBucket bucket = UNLIMITED;
+    if (permitsPerSecond > 0) {
+      bucket = new TokenBucket(host, permitsPerSecond, theBurst);
+    }
+    return bucket;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.io.CountingOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.wisepersist.apuava.resource.ResourceManager;
+import org.wisepersist.apuava.resource.VoidResourceHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Factory methods of {@link RequestBody} for common body sources.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class RequestBodies {
+
+  private static final ResourceManager RESOURCE_MANAGER = new ResourceManager();
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private RequestBodies() {
+    // Do nothing here
+  }
+
+  /**
+   * Creates a request body from bytes, which are not copied.
+   *
+   * @param bytes The bytes specified.
+   * @return The request body created.
+   */
+  public static RequestBody of(final byte[] bytes) {
+    return of(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Creates a request body from the remaining bytes of a buffer, which are not copied. The
+   * position of the buffer is not changed.
+   *
+   * @param buffer The buffer specified.
+   * @return The request body created.
+   */
+  public static RequestBody of(final ByteBuffer buffer) {
+    return new ByteBufferBody(buffer.duplicate());
+  }
+
+  /**
+   * Creates a request body of unknown length from an input stream, which is sent with chunked
+   * transfer encoding and closed after being written.
+   *
+   * @param inputStream The input stream specified.
+   * @return The request body created.
+   */
+  public static RequestBody of(final InputStream inputStream) {
+    return of(inputStream, -1L);
+  }
+
+  /**
+   * Creates a request body from an input stream, which is closed after being written.
+   *
+   * @param inputStream The input stream specified.
+   * @param length The number of bytes in the stream, or -1 if unknown.
+   * @return The request body created.
+   */
+  public static RequestBody of(final InputStream inputStream, final long length) {
+    return new InputStreamBody(inputStream, length);
+  }
+
+  /**
+   * Creates a request body from a file, which is streamed from a {@link FileChannel} without
+   * being loaded into memory. The body stream of the connection isn't a channel, so the file is
+   * still copied through a buffer rather than sent with zero copy.
+   *
+   * @param path The path of the file specified.
+   * @return The request body created.
+   * @throws IOException If the size of the file cannot be read.
+   */
+  public static RequestBody of(final Path path) throws IOException {
+    return new FileBody(path, Files.size(path));
+  }
+
+  /**
+   * Writes a request body to the body stream of a connection and closes the stream.
+   *
+   * @param body The request body specified.
+   * @param wire The body stream of the connection.
+   * @param stats The counters updated when the body is compressed with gzip, or null to write
+   *     the body uncompressed.
+   * @return The number of bytes written to the connection.
+   * @throws IOException If IO errors occur.
+   */
+  static long write(final RequestBody body, final OutputStream wire, final CompressionStats stats)
+      throws IOException {
+    final CountingOutputStream counter = new CountingOutputStream(wire);
+    OutputStream out = counter;
+    if (stats != null) {
+      out = ContentCodings.encode(counter, stats);
+    }
+    final OutputStream outputStream = out;
+    RESOURCE_MANAGER.with(outputStream).run(new VoidResourceHandler() {
+      @Override
+      public void handle(final Closeable closeable) throws IOException {
+        body.writeTo(outputStream);
+        outputStream.flush();
+      }
+    });
+    return counter.getCount();
+  }
+
+  /**
+   * Request body backed by a byte buffer.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class ByteBufferBody implements RequestBody {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a new {@link ByteBufferBody} instance.
+     *
+     * @param buffer The buffer specified.
+     */
+    private ByteBufferBody(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public long getContentLength() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+      final ByteBuffer source = buffer.duplicate();
+      if (source.hasArray()) {
+        out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+      } else {
+        final WritableByteChannel channel = Channels.newChannel(out);
+        while (source.hasRemaining()) {
+          channel.write(source);
+        }
+      }
+    }
+  }
+
+  /**
+   * Request body backed by an input stream.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class InputStreamBody implements RequestBody {
+
+    private final InputStream inputStream;
+    private final long length;
+
+    /**
+     * Constructs a new {@link InputStreamBody} instance.
+     *
+     * @param inputStream The input stream specified.
+     * @param length The number of bytes in the stream, or -1 if unknown.
+     */
+    private InputStreamBody(final InputStream inputStream, final long length) {
+      this.inputStream = inputStream;
+      this.length = length;
+    }
+
+    @Override
+    public long getContentLength() {
+      return length;
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+      RESOURCE_MANAGER.with(inputStream).run(new VoidResourceHandler() {
+        @Override
+        public void handle(final Closeable closeable) throws IOException {
+          IOUtils.copyLarge(inputStream, out);
+        }
+      });
+    }
+  }
+
+  /**
+   * Request body backed by a file.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileBody implements RequestBody {
+
+    private final Path path;
+    private final long size;
+
+    /**
+     * Constructs a new {@link FileBody} instance.
+     *
+     * @param path The path of the file specified.
+     * @param size The size of the file.
+     */
+    private FileBody(final Path path, final long size) {
+      this.path = path;
+      this.size = size;
+    }
+
+    @Override
+    public long getContentLength() {
+      return size;
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+      final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      RESOURCE_MANAGER.with(channel).run(new VoidResourceHandler() {
+        @Override
+        public void handle(final Closeable closeable) throws IOException {
+          final WritableByteChannel target = Channels.newChannel(out);
+          long position = 0;
+          while (position < size) {
+            final long transferred = channel.transferTo(position, size - position, target);
+            if (transferred == 0) {
+              throw new IOException("File " + path + " ended after " + position + " of " + size
+                  + " bytes");
+            }
+            position += transferred;
+          }
+        }
+      });
+    }
+  }
+}
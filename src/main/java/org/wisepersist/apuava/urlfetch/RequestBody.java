@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body of http requests which is written to the connection as a stream. Instances are
+ * created with {@link RequestBodies}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface RequestBody {
+
+  /**
+   * Gets the length of the body in bytes. When the length is known, the body is sent in fixed
+   * length streaming mode, otherwise in chunked transfer encoding.
+   *
+   * @return The length of the body, or -1 if unknown.
+   */
+  long getContentLength();
+
+  /**
+   * Writes the body to the output stream specified.
+   *
+   * @param out The output stream of the connection.
+   * @throws IOException If IO errors occur.
+   */
+  void writeTo(OutputStream out) throws IOException;
+}
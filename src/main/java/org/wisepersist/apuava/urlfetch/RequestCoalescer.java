@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical requests in flight, so that when many threads send the same GET or HEAD
+ * request at the same moment only one is sent and all of them get its response or error.
+ * Requests are identical if they have the same method, URL and headers. Only
+ * {@link UrlRequest#execute()} and its variants returning a {@link UrlResponse} are coalesced,
+ * as the response is shared by the callers and must not be modified. Share one instance
+ * between the URL fetchers which may send identical requests.
+ *
+ * <p>Joining a request in flight takes one lookup in a concurrent map, and starting one takes
+ * one insertion, so the fast path doesn't lock.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RequestCoalescer {
+
+  private final ConcurrentMap<String, SettableFuture<UrlResponse>> inFlight =
+      new ConcurrentHashMap<>();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Gets the number of requests which got the response of an identical request in flight
+   * instead of being sent.
+   *
+   * @return The number of requests coalesced.
+   */
+  public final long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /**
+   * Sends a request unless an identical one is in flight, whose response is returned then.
+   *
+   * @param key The method, URL and headers of the request.
+   * @param request The request specified.
+   * @param queryStr The query string of the request.
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  final UrlResponse execute(final String key, final UrlRequest request, final String queryStr)
+      throws IOException {
+    final SettableFuture<UrlResponse> created = SettableFuture.create();
+    final SettableFuture<UrlResponse> leader = inFlight.putIfAbsent(key, created);
+    final UrlResponse response;
+    if (leader == null) {
+      try {
+        response = send(created, request, queryStr);
+      } finally {
+        inFlight.remove(key, created);
+      }
+    } else {
+      coalesced.incrementAndGet();
+      response = await(leader);
+    }
+    return response;
+  }
+
+  /**
+   * Sends a request and completes its future with the response or error, so that identical
+   * requests waiting for it complete as well.
+   *
+   * @param future The future of the request.
+   * @param request The request specified.
+   * @param queryStr The query string of the request.
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  private static UrlResponse send(final SettableFuture<UrlResponse> future,
+      final UrlRequest request, final String queryStr) throws IOException {
+    UrlResponse response = null;
+    try {
+      response = request.fetch(queryStr);
+      future.set(response);
+    } catch (final IOException ex) {
+      future.setException(ex);
+      throw ex;
+    } finally {
+      if (!future.isDone()) {
+        future.setException(new IOException("Coalesced request failed"));
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Waits for the response of an identical request in flight.
+   *
+   * @param leader The future of the request in flight.
+   * @return The response of the HTTP request.
+   * @throws IOException The error of the request in flight.
+   */
+  private static UrlResponse await(final SettableFuture<UrlResponse> leader)
+      throws IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(leader);
+    } catch (final ExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause(), IOException.class);
+      throw new IOException(ex.getCause());
+    }
+  }
+}
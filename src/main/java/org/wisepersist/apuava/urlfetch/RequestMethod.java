@@ -25,9 +25,65 @@ public enum RequestMethod {
   /**
    * Http GET method.
    */
-  GET,
+  GET(true, false),
   /**
    * Http POST method.
    */
-  POST
+  POST(false, true),
+  /**
+   * Http HEAD method, which gets the response headers only.
+   */
+  HEAD(true, false),
+  /**
+   * Http PUT method.
+   */
+  PUT(true, true),
+  /**
+   * Http PATCH method. The {@link java.net.HttpURLConnection} of the JDK doesn't support PATCH,
+   * see {@link UrlFetcher#setMethodOverride(boolean)}.
+   */
+  PATCH(false, true),
+  /**
+   * Http DELETE method.
+   */
+  DELETE(true, false),
+  /**
+   * Http OPTIONS method.
+   */
+  OPTIONS(true, false);
+
+  private final boolean idempotent;
+  private final boolean requestBody;
+
+  /**
+   * Constructs a new {@link RequestMethod} instance.
+   *
+   * @param idempotent True if repeating the request has the same effect as sending it once.
+   * @param requestBody True if requests carry a body, which holds the form encoded parameters
+   *     unless a body is specified.
+   */
+  RequestMethod(final boolean idempotent, final boolean requestBody) {
+    this.idempotent = idempotent;
+    this.requestBody = requestBody;
+  }
+
+  /**
+   * Checks whether repeating a request of this method has the same effect as sending it once,
+   * so that it can be retried safely.
+   *
+   * @return True if this method is idempotent.
+   */
+  public boolean isIdempotent() {
+    return idempotent;
+  }
+
+  /**
+   * Checks whether requests of this method carry a body. Parameters of other methods are sent
+   * in the query string.
+   *
+   * @return True if requests of this method carry a body.
+   */
+  public boolean hasRequestBody() {
+    return requestBody;
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Connection factory which resolves the host of each URL with a {@link HostResolver}, e.g. a
+ * {@link CachingHostResolver}, before the JDK opens the connection, and reports resolving as
+ * the {@link FetchPhase#DNS_START} and {@link FetchPhase#DNS_END} phases.
+ *
+ * <p>The HTTP client of the JDK has no supported hook for the addresses it connects to, so it
+ * still looks the host up with its own name service when connecting, and the resolver doesn't
+ * choose the address: hosts which only the resolver knows can't be connected to. With a
+ * resolver backed by the JDK name service, e.g. a {@link CachingHostResolver} delegating to
+ * {@link SystemHostResolver}, resolving ahead and refreshing in the background keeps the JDK
+ * address cache warm, so the lookup when connecting is a cache hit as long as the
+ * {@code networkaddress.cache.ttl} security property is no shorter than the resolver's time to
+ * live. Connections are otherwise plain JDK connections, kept alive and following redirects as
+ * usual. URLs which a proxy is configured for with the default {@link ProxySelector} aren't
+ * resolved, since the proxy resolves them.
+ *
+ * <p>Plug it into a connection manager with
+ * {@link LimitingConnectionManager#setConnectionFactory(ConnectionFactory)}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class ResolvingConnectionFactory implements ConnectionFactory {
+
+  private final HostResolver resolver;
+  private final ConnectionFactory delegate = new JdkConnectionFactory();
+
+  /**
+   * Constructs a new {@link ResolvingConnectionFactory} instance.
+   *
+   * @param resolver The resolver of the hosts connected to.
+   */
+  public ResolvingConnectionFactory(final HostResolver resolver) {
+    this.resolver = Preconditions.checkNotNull(resolver);
+  }
+
+  @Override
+  public final HttpURLConnection open(final URL url) throws IOException {
+    if (isDirect(url)) {
+      final FetchTrace trace = FetchTrace.current();
+      trace.fire(FetchPhase.DNS_START);
+      resolver.resolve(url.getHost());
+      trace.fire(FetchPhase.DNS_END);
+    }
+    return delegate.open(url);
+  }
+
+  /**
+   * Checks whether the URL is connected to directly rather than through a proxy configured
+   * with the default {@link ProxySelector}.
+   *
+   * @param url The URL specified.
+   * @return True if no proxy is configured for the URL.
+   */
+  private static boolean isDirect(final URL url) {
+    final ProxySelector selector = ProxySelector.getDefault();
+    boolean direct = selector == null;
+    if (!direct) {
+      try {
+        final List<Proxy> proxies = selector.select(url.toURI());
+        direct = proxies.isEmpty() || proxies.get(0).type() == Proxy.Type.DIRECT;
+      } catch (final URISyntaxException expected) {
+        // Left to the JDK, which fails the same way
+      }
+    }
+    return direct;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of {@link UrlResponseCache} lookups.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class ResponseCacheStats {
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+  private final AtomicLong notModified = new AtomicLong();
+
+  /**
+   * Gets the number of requests served from the cache without a network call.
+   *
+   * @return The number of hits.
+   */
+  public final long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of requests for which no usable cached response existed.
+   *
+   * @return The number of misses.
+   */
+  public final long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the number of conditional requests sent to revalidate stale cached responses.
+   *
+   * @return The number of revalidations.
+   */
+  public final long getRevalidations() {
+    return revalidations.get();
+  }
+
+  /**
+   * Gets the number of revalidations answered with 304 Not Modified.
+   *
+   * @return The number of successful revalidations.
+   */
+  public final long getNotModified() {
+    return notModified.get();
+  }
+
+  /**
+   * Gets the ratio of requests served from the cache without a network call.
+   *
+   * @return The hit rate between 0 and 1.
+   */
+  public final double getHitRate() {
+    final long total = hits.get() + misses.get() + revalidations.get();
+    double result = 0D;
+    if (total > 0) {
+      result = (double) hits.get() / total;
+    }
+    return result;
+  }
+
+  /**
+   * Gets the ratio of revalidations answered with 304 Not Modified.
+   *
+   * @return The revalidation success rate between 0 and 1.
+   */
+  public final double getRevalidationRate() {
+    final long total = revalidations.get();
+    double result = 0D;
+    if (total > 0) {
+      result = (double) notModified.get() / total;
+    }
+    return result;
+  }
+
+  @Override
+  public final String toString() {
+    return "[hits: " + hits + "; misses: " + misses + "; revalidations: " + revalidations
+        + "; notModified: " + notModified + "]";
+  }
+
+  /**
+   * Records a cache hit.
+   */
+  final void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  /**
+   * Records a cache miss.
+   */
+  final void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  /**
+   * Records a revalidation and whether it was answered with 304 Not Modified.
+   *
+   * @param wasNotModified True if the response was 304 Not Modified.
+   */
+  final void recordRevalidation(final boolean wasNotModified) {
+    revalidations.incrementAndGet();
+    if (wasNotModified) {
+      notModified.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Immutable multimap of response headers with case-insensitive names. The header fields are
+ * kept in the order received in one flat array of names and values, and looked up with a
+ * linear scan, which allocates nothing and is faster than hashing for the few dozen headers of
+ * typical responses.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class ResponseHeaders {
+
+  /**
+   * Headers of responses which don't have any.
+   */
+  public static final ResponseHeaders EMPTY = new ResponseHeaders(new String[0], 0);
+
+  private static final int INITIAL_FIELDS = 16;
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final FastDateFormat HTTP_DATE = FastDateFormat.getInstance(
+      "EEE, dd MMM yyyy HH:mm:ss zzz", TimeZone.getTimeZone("GMT"), Locale.US);
+
+  private final String[] fields;
+  private final int size;
+
+  /**
+   * Constructs a new {@link ResponseHeaders} instance.
+   *
+   * @param fields The names and values of the header fields, alternately.
+   * @param size The number of header fields.
+   */
+  private ResponseHeaders(final String[] fields, final int size) {
+    this.fields = fields;
+    this.size = size;
+  }
+
+  /**
+   * Reads the header fields of a connection, skipping the status line.
+   *
+   * @param conn The connection whose response has been received.
+   * @return The response headers.
+   */
+  static ResponseHeaders of(final HttpURLConnection conn) {
+    String[] fields = new String[2 * INITIAL_FIELDS];
+    int count = 0;
+    int index = 0;
+    for (String value = conn.getHeaderField(0); value != null;
+        value = conn.getHeaderField(index)) {
+      final String name = conn.getHeaderFieldKey(index);
+      if (name != null) {
+        if (2 * count == fields.length) {
+          fields = Arrays.copyOf(fields, 2 * fields.length);
+        }
+        fields[2 * count] = name;
+        fields[2 * count + 1] = value;
+        count += 1;
+      }
+      index += 1;
+    }
+    return new ResponseHeaders(fields, count);
+  }
+
+  /**
+   * Reads headers written by {@link #writeTo(DataOutput)}.
+   *
+   * @param in The input specified.
+   * @return The headers read.
+   * @throws IOException If IO errors occur.
+   */
+  static ResponseHeaders readFrom(final DataInput in) throws IOException {
+    final int count = in.readInt();
+    final String[] fields = new String[2 * count];
+    for (int i = 0; i < fields.length; i += 1) {
+      fields[i] = in.readUTF();
+    }
+    return new ResponseHeaders(fields, count);
+  }
+
+  /**
+   * Writes these headers to the output specified.
+   *
+   * @param out The output specified.
+   * @throws IOException If IO errors occur.
+   */
+  void writeTo(final DataOutput out) throws IOException {
+    out.writeInt(size);
+    for (int i = 0; i < 2 * size; i += 1) {
+      out.writeUTF(fields[i]);
+    }
+  }
+
+  /**
+   * Gets the number of header fields, counting each value of a repeated header.
+   *
+   * @return The number of header fields.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the name of the header field at an index, as received.
+   *
+   * @param index The index of the field, from 0 to {@link #size()} exclusive.
+   * @return The header name.
+   */
+  public String getName(final int index) {
+    return fields[2 * checkIndex(index)];
+  }
+
+  /**
+   * Gets the value of the header field at an index.
+   *
+   * @param index The index of the field, from 0 to {@link #size()} exclusive.
+   * @return The header value.
+   */
+  public String getValue(final int index) {
+    return fields[2 * checkIndex(index) + 1];
+  }
+
+  /**
+   * Gets the first value of a header.
+   *
+   * @param name The header name, matched case-insensitively.
+   * @return The first value, or null if the header is absent.
+   */
+  public String get(final String name) {
+    final int index = indexOf(name, 0);
+    String value = null;
+    if (index >= 0) {
+      value = fields[2 * index + 1];
+    }
+    return value;
+  }
+
+  /**
+   * Gets all values of a header in the order received.
+   *
+   * @param name The header name, matched case-insensitively.
+   * @return The values, which are empty if the header is absent.
+   */
+  public List<String> getAll(final String name) {
+    final ImmutableList.Builder<String> values = ImmutableList.builder();
+    for (int index = indexOf(name, 0); index >= 0; index = indexOf(name, index + 1)) {
+      values.add(fields[2 * index + 1]);
+    }
+    return values.build();
+  }
+
+  /**
+   * Checks whether a header is present.
+   *
+   * @param name The header name, matched case-insensitively.
+   * @return True if the header is present.
+   */
+  public boolean contains(final String name) {
+    return indexOf(name, 0) >= 0;
+  }
+
+  /**
+   * Gets the first value of a header parsed as a number.
+   *
+   * @param name The header name, matched case-insensitively.
+   * @param defaultValue The value returned if the header is absent or not a number.
+   * @return The header value.
+   */
+  public long getLong(final String name, final long defaultValue) {
+    return NumberUtils.toLong(get(name), defaultValue);
+  }
+
+  /**
+   * Gets the first value of a header parsed as an HTTP date (RFC 7231 section 7.1.1.1).
+   *
+   * @param name The header name, matched case-insensitively.
+   * @param defaultValue The value returned if the header is absent or not a date.
+   * @return The date in milliseconds since the epoch.
+   */
+  public long getDate(final String name, final long defaultValue) {
+    final String value = get(name);
+    long date = defaultValue;
+    if (value != null) {
+      try {
+        date = HTTP_DATE.parse(value).getTime();
+      } catch (final ParseException expected) {
+        date = defaultValue;
+      }
+    }
+    return date;
+  }
+
+  /**
+   * Gets the value of the Content-Length header.
+   *
+   * @return The content length, or -1 if unknown.
+   */
+  public long getContentLength() {
+    return getLong(CONTENT_LENGTH, -1L);
+  }
+
+  /**
+   * Merges the headers of a 304 Not Modified response into these stored headers as described
+   * in RFC 7234 section 4.3.4. Each header present in the update replaces all stored fields of
+   * the same name, except Content-Length which still describes the stored body.
+   *
+   * @param updates The headers of the 304 response.
+   * @return The merged headers.
+   */
+  ResponseHeaders merge(final ResponseHeaders updates) {
+    final List<String> merged = Lists.newArrayListWithCapacity(2 * (size + updates.size));
+    for (int i = 0; i < size; i += 1) {
+      if (!updates.contains(fields[2 * i]) || CONTENT_LENGTH.equalsIgnoreCase(fields[2 * i])) {
+        merged.add(fields[2 * i]);
+        merged.add(fields[2 * i + 1]);
+      }
+    }
+    for (int i = 0; i < updates.size; i += 1) {
+      if (!CONTENT_LENGTH.equalsIgnoreCase(updates.fields[2 * i])) {
+        merged.add(updates.fields[2 * i]);
+        merged.add(updates.fields[2 * i + 1]);
+      }
+    }
+    return new ResponseHeaders(merged.toArray(new String[merged.size()]), merged.size() / 2);
+  }
+
+  /**
+   * Finds the next header field with a name.
+   *
+   * @param name The header name, matched case-insensitively.
+   * @param from The index to search from.
+   * @return The index of the field found, or -1 if none.
+   */
+  private int indexOf(final String name, final int from) {
+    int found = -1;
+    for (int i = from; i < size && found < 0; i += 1) {
+      if (fields[2 * i].equalsIgnoreCase(name)) {
+        found = i;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Checks that an index is within the header fields.
+   *
+   * @param index The index specified.
+   * @return The index specified.
+   */
+  private int checkIndex(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+    return index;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < size; i += 1) {
+      result.append(fields[2 * i]).append(": ").append(fields[2 * i + 1]).append('\n');
+    }
+    return result.toString();
+  }
+}
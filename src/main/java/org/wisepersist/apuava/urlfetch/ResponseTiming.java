@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of a response: when the request started, how long it took until the response headers
+ * were received, and how long until the body was read completely.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class ResponseTiming {
+
+  /**
+   * Timing of responses which weren't fetched, e.g. responses created directly.
+   */
+  public static final ResponseTiming NONE = new ResponseTiming(0L, 0L, 0L);
+
+  private final long startTime;
+  private final long headersNanos;
+  private final long totalNanos;
+
+  /**
+   * Constructs a new {@link ResponseTiming} instance.
+   *
+   * @param startTime The time when the request started in milliseconds since the epoch.
+   * @param headersNanos The nanoseconds until the response headers were received.
+   * @param totalNanos The nanoseconds until the body was read completely.
+   */
+  ResponseTiming(final long startTime, final long headersNanos, final long totalNanos) {
+    this.startTime = startTime;
+    this.headersNanos = headersNanos;
+    this.totalNanos = totalNanos;
+  }
+
+  /**
+   * Gets the time when the request started.
+   *
+   * @return The start time in milliseconds since the epoch.
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the time from the start of the request until the response headers were received,
+   * which includes connecting and sending the request body.
+   *
+   * @param unit The time unit of the result.
+   * @return The time to the response headers.
+   */
+  public long getTimeToHeaders(final TimeUnit unit) {
+    return unit.convert(headersNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gets the time from the start of the request until the body was read completely.
+   *
+   * @param unit The time unit of the result.
+   * @return The total time of the response.
+   */
+  public long getTotalTime(final TimeUnit unit) {
+    return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return "ResponseTiming{startTime=" + startTime + ", headersNanos=" + headersNanos
+        + ", totalNanos=" + totalNanos + "}";
+  }
+}
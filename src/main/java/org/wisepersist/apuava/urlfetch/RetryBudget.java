@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget which caps retries when an upstream is failing, so that retries don't multiply the
+ * load during incidents. It follows the token bucket used by gRPC retry throttling: the
+ * bucket starts full with the maximum tokens, every failed attempt takes one token, every
+ * successful attempt gives back the token ratio, and retries are only allowed while more than
+ * half of the tokens are left. A hedged attempt takes one token as well, since it adds load
+ * just like a retry.
+ *
+ * <p>A budget is meant to be shared by all requests to the same upstream.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RetryBudget {
+
+  private static final long SCALE = 1000L;
+
+  private final long maxTokens;
+  private final long tokenRatio;
+  private final AtomicLong tokens;
+
+  /**
+   * Constructs a new {@link RetryBudget} instance.
+   *
+   * @param theMaxTokens The maximum number of tokens.
+   * @param theTokenRatio The tokens given back by each successful attempt.
+   */
+  public RetryBudget(final int theMaxTokens, final double theTokenRatio) {
+    Preconditions.checkArgument(theMaxTokens > 0, "maxTokens must be positive");
+    Preconditions.checkArgument(theTokenRatio > 0, "tokenRatio must be positive");
+    this.maxTokens = theMaxTokens * SCALE;
+    this.tokenRatio = Math.round(theTokenRatio * SCALE);
+    this.tokens = new AtomicLong(maxTokens);
+  }
+
+  /**
+   * Gets the number of tokens left.
+   *
+   * @return The number of tokens left.
+   */
+  public final double getTokens() {
+    return (double) tokens.get() / SCALE;
+  }
+
+  /**
+   * Checks whether a retry is allowed.
+   *
+   * @return True if more than half of the tokens are left.
+   */
+  final boolean canRetry() {
+    return tokens.get() * 2 > maxTokens;
+  }
+
+  /**
+   * Records a successful attempt, giving back the token ratio.
+   */
+  final void recordSuccess() {
+    long current = tokens.get();
+    while (current < maxTokens
+        && !tokens.compareAndSet(current, Math.min(maxTokens, current + tokenRatio))) {
+      current = tokens.get();
+    }
+  }
+
+  /**
+   * Records a failed attempt, taking one token.
+   */
+  final void recordFailure() {
+    takeToken();
+  }
+
+  /**
+   * Records a hedged attempt, taking one token.
+   */
+  final void recordHedge() {
+    takeToken();
+  }
+
+  /**
+   * Takes one token if any is left.
+   */
+  private void takeToken() {
+    long current = tokens.get();
+    while (current > 0 && !tokens.compareAndSet(current, Math.max(0, current - SCALE))) {
+      current = tokens.get();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+import java.net.HttpURLConnection;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy which retries and hedges requests of idempotent methods. Failed attempts, i.e.
+ * transient connection failures (refused or reset connections, connect and read timeouts) and
+ * responses with a retryable status code, are retried after an exponential backoff
+ * with full jitter, as long as the {@link RetryBudget} allows. Other IO errors, e.g. unknown
+ * hosts or TLS handshake failures, aren't retried. Requests of methods which aren't
+ * idempotent are never retried.
+ *
+ * <p>When hedging is enabled, a second attempt is sent if the first one hasn't completed after
+ * the hedge delay, which adapts to the 95th percentile of recent latencies, and whichever
+ * attempt succeeds first wins. The hedged attempt takes a token from the retry budget. The
+ * other attempt is cancelled: it is interrupted, and if it completes anyway its response is
+ * discarded and closed.
+ *
+ * <p>A policy holds the retry budget and the recent latencies, so it is meant to be shared by
+ * all requests to the same upstream.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RetryPolicy {
+
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_INITIAL_BACKOFF = 100L;
+  private static final long DEFAULT_MAX_BACKOFF = 5000L;
+  private static final int DEFAULT_BUDGET_TOKENS = 10;
+  private static final double DEFAULT_BUDGET_RATIO = 0.1;
+  private static final double HEDGE_PERCENTILE = 0.95;
+  private static final int MAX_SHIFT = 30;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+  private volatile long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+  private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+  private volatile Set<Integer> retryStatusCodes = ImmutableSet.of(
+      HTTP_TOO_MANY_REQUESTS, HttpURLConnection.HTTP_BAD_GATEWAY,
+      HttpURLConnection.HTTP_UNAVAILABLE, HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+  private volatile RetryBudget retryBudget =
+      new RetryBudget(DEFAULT_BUDGET_TOKENS, DEFAULT_BUDGET_RATIO);
+  private volatile long minHedgeDelay = -1;
+  private final LatencyWindow latencies = new LatencyWindow();
+
+  /**
+   * Specifies the maximum number of attempts of a request, including the first one.
+   *
+   * @param theMaxAttempts The maximum number of attempts.
+   * @return This retry policy.
+   */
+  public final RetryPolicy setMaxAttempts(final int theMaxAttempts) {
+    Preconditions.checkArgument(theMaxAttempts > 0, "maxAttempts must be positive");
+    this.maxAttempts = theMaxAttempts;
+    return this;
+  }
+
+  /**
+   * Specifies the backoff between attempts, which doubles after each attempt up to the maximum.
+   * The actual delay is chosen randomly between zero and the backoff.
+   *
+   * @param theInitialBackoff The backoff before the first retry in milliseconds.
+   * @param theMaxBackoff The maximum backoff in milliseconds.
+   * @return This retry policy.
+   */
+  public final RetryPolicy setBackoff(final long theInitialBackoff, final long theMaxBackoff) {
+    Preconditions.checkArgument(theInitialBackoff >= 0 && theMaxBackoff >= theInitialBackoff,
+        "backoff must be between 0 and maxBackoff");
+    this.initialBackoff = theInitialBackoff;
+    this.maxBackoff = theMaxBackoff;
+    return this;
+  }
+
+  /**
+   * Specifies the error status codes of responses which are retried, by default 429, 502, 503
+   * and 504. The {@link HttpStatusException} of the last attempt is thrown if it fails too.
+   *
+   * @param statusCodes The status codes specified.
+   * @return This retry policy.
+   */
+  public final RetryPolicy setRetryStatusCodes(final Integer... statusCodes) {
+    this.retryStatusCodes = ImmutableSet.copyOf(statusCodes);
+    return this;
+  }
+
+  /**
+   * Specifies the budget which caps retries and hedged attempts.
+   *
+   * @param theRetryBudget The retry budget specified.
+   * @return This retry policy.
+   */
+  public final RetryPolicy setRetryBudget(final RetryBudget theRetryBudget) {
+    this.retryBudget = Preconditions.checkNotNull(theRetryBudget);
+    return this;
+  }
+
+  /**
+   * Enables hedged attempts. The hedge delay is the 95th percentile of recent latencies, but
+   * no less than the minimum delay specified.
+   *
+   * @param theMinHedgeDelay The minimum hedge delay in milliseconds, or -1 to disable hedging.
+   * @return This retry policy.
+   */
+  public final RetryPolicy setHedgeDelay(final long theMinHedgeDelay) {
+    this.minHedgeDelay = theMinHedgeDelay;
+    return this;
+  }
+
+  public final RetryBudget getRetryBudget() {
+    return retryBudget;
+  }
+
+  final int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Checks whether responses with the status code specified are retried.
+   *
+   * @param statusCode The status code specified.
+   * @return True if the status code is retryable.
+   */
+  final boolean isRetryable(final int statusCode) {
+    return retryStatusCodes.contains(statusCode);
+  }
+
+  /**
+   * Gets a random backoff before the retry following the attempt specified.
+   *
+   * @param attempt The number of the failed attempt, starting from 1.
+   * @return The backoff in milliseconds.
+   */
+  final long getBackoff(final int attempt) {
+    final long backoff = initialBackoff << Math.min(attempt - 1, MAX_SHIFT);
+    return ThreadLocalRandom.current().nextLong(Math.min(maxBackoff, backoff) + 1);
+  }
+
+  /**
+   * Gets the delay after which a hedged attempt is sent.
+   *
+   * @return The hedge delay in milliseconds, or -1 if hedging is disabled.
+   */
+  final long getHedgeDelay() {
+    long delay = minHedgeDelay;
+    if (delay >= 0) {
+      delay = Math.max(delay, latencies.percentile(HEDGE_PERCENTILE));
+    }
+    return delay;
+  }
+
+  /**
+   * Records the latency of a completed attempt.
+   *
+   * @param millis The latency in milliseconds.
+   */
+  final void recordLatency(final long millis) {
+    latencies.record(millis);
+  }
+}
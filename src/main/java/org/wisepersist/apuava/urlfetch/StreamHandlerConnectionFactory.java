@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Connection factory which opens connections with the stream handlers of a
+ * {@link URLStreamHandlerFactory}, without installing the factory for the whole JVM. This is
+ * how third-party HTTP clients which provide {@link HttpURLConnection} implementations are
+ * plugged into {@link LimitingConnectionManager}. Protocols the factory has no handler for are
+ * opened by the JDK.
+ *
+ * <p>The connection manager still leases one connection object per request, whatever the
+ * plugged-in client does on the wire, and any protocol settings are configured on that client.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class StreamHandlerConnectionFactory implements ConnectionFactory {
+
+  private final URLStreamHandlerFactory handlerFactory;
+  private final ConcurrentMap<String, URLStreamHandler> handlers = new ConcurrentHashMap<>();
+  private final ConnectionFactory fallback = new JdkConnectionFactory();
+
+  /**
+   * Constructs a new {@link StreamHandlerConnectionFactory} instance.
+   *
+   * @param handlerFactory The factory of the stream handlers per protocol.
+   */
+  public StreamHandlerConnectionFactory(final URLStreamHandlerFactory handlerFactory) {
+    this.handlerFactory = handlerFactory;
+  }
+
+  @Override
+  public final HttpURLConnection open(final URL url) throws IOException {
+    final URLStreamHandler handler = getHandler(url.getProtocol());
+    final HttpURLConnection conn;
+    if (handler == null) {
+      conn = fallback.open(url);
+    } else {
+      conn = (HttpURLConnection) new URL(null, url.toString(), handler).openConnection();
+    }
+    return conn;
+  }
+
+  /**
+   * Gets the stream handler of the protocol specified, creating it on first use.
+   *
+   * @param protocol The protocol specified.
+   * @return The stream handler, or null if the factory has none for the protocol.
+   */
+  private URLStreamHandler getHandler(final String protocol) {
+    URLStreamHandler handler = handlers.get(protocol);
+    if (handler == null) {
+      handler = handlerFactory.createURLStreamHandler(protocol);
+      if (handler != null) {
+        handlers.putIfAbsent(protocol, handler);
+      }
+    }
+    return handler;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Preconditions;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the rate of requests to a host, created by {@link RateLimits}. It is
+ * implemented as the equivalent generic cell rate algorithm: the only state is the time when
+ * the bucket is full again, which is updated with one compare-and-set per permit, so acquiring
+ * permits is lock-free.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class TokenBucket {
+
+  private final String host;
+  private final double permitsPerSecond;
+  private final int burst;
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+  /**
+   * Constructs a new {@link TokenBucket} instance, which is full.
+   *
+   * @param host The host whose requests are limited.
+   * @param permitsPerSecond The rate at which permits are added to the bucket.
+   * @param burst The maximum number of permits in the bucket.
+   */
+  TokenBucket(final String host, final double permitsPerSecond, final int burst) {
+    Preconditions.checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive");
+    Preconditions.checkArgument(burst > 0, "burst must be positive");
+    this.host = host;
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    this.toleranceNanos = intervalNanos * (burst - 1);
+  }
+
+  public final String getHost() {
+    return host;
+  }
+
+  public final double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public final int getBurst() {
+    return burst;
+  }
+
+  /**
+   * Takes a permit if one is available now.
+   *
+   * @return True if a permit was taken.
+   */
+  public final boolean tryAcquire() {
+    return reserve(0L) >= 0L;
+  }
+
+  /**
+   * Takes a permit, waiting until it is available if that takes at most the wait specified.
+   *
+   * @param maxWaitNanos The maximum wait in nanoseconds.
+   * @throws CallNotPermittedException If no permit is available in time.
+   * @throws InterruptedIOException If the thread is interrupted while waiting.
+   */
+  final void acquire(final long maxWaitNanos) throws CallNotPermittedException,
+      InterruptedIOException {
+    final long wait = reserve(maxWaitNanos);
+    if (wait < 0L) {
+      throw new CallNotPermittedException("Rate limit exceeded for " + host);
+    }
+    if (wait > 0L) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for rate limit of " + host);
+      }
+    }
+  }
+
+  /**
+   * Reserves the next permit unless it is available later than the wait specified.
+   *
+   * @param maxWaitNanos The maximum wait in nanoseconds.
+   * @return The time until the permit reserved is available in nanoseconds, or -1 if no
+   *     permit was reserved.
+   */
+  private long reserve(final long maxWaitNanos) {
+    long wait = -1L;
+    boolean contended = true;
+    while (contended) {
+      final long now = System.nanoTime();
+      final long current = fullAt.get();
+      long from = now;
+      if (current - now > 0L) {
+        from = current;
+      }
+      wait = Math.max(0L, from - toleranceNanos - now);
+      if (wait > maxWaitNanos) {
+        wait = -1L;
+        contended = false;
+      } else {
+        contended = !fullAt.compareAndSet(current, from + intervalNanos);
+      }
+    }
+    return wait;
+  }
+}
@@ -16,31 +16,24 @@
 
 package org.wisepersist.apuava.urlfetch;
 
-import com.google.common.base.Charsets;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Inject;
 
-import org.apache.commons.io.IOUtils;
-import org.wisepersist.apuava.resource.ResourceHandler;
-import org.wisepersist.apuava.resource.ResourceManager;
-import org.wisepersist.apuava.resource.VoidResourceHandler;
-
-import java.io.BufferedWriter;
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
 import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
- * URL Fetcher which can send GET and POST requests using core JDK API. It can be used
- * in Google AppEngine.
+ * URL Fetcher which can send requests of any {@link RequestMethod} using core JDK API. It can
+ * be used in Google AppEngine.
  *
  * @author delight.wjk@gmail.com
  */
@@ -49,6 +42,7 @@ public class UrlFetcher {
 
   private static final int READ_TIMEOUT = 10000;
   private static final int CONNECT_TIMEOUT = 15000;
+  private static final Map<String, String> NO_PARAMS = Collections.emptyMap();
 
   private String url;
   private int readTimeout = UrlFetcher.READ_TIMEOUT;
@@ -56,7 +50,19 @@ public class UrlFetcher {
   private RequestMethod requestMethod = RequestMethod.GET;
   private List<AbstractMap.SimpleEntry<String, String>> headers = Lists.newArrayList();
   private List<AbstractMap.SimpleEntry<String, String>> params = Lists.newArrayList();
-  private ResourceManager resourceManager = new ResourceManager();
+  private ListeningExecutorService executor = FetchExecutors.defaultExecutor();
+  private ConnectionManager connectionManager = LimitingConnectionManager.shared();
+  private RequestBody body;
+  private boolean acceptCompressed;
+  private boolean compressRequest;
+  private boolean methodOverride;
+  private CompressionStats compressionStats = CompressionStats.shared();
+  private UrlResponseCache responseCache;
+  private RetryPolicy retryPolicy;
+  private CircuitBreakers circuitBreakers;
+  private RateLimits rateLimits;
+  private RequestCoalescer requestCoalescer;
+  private FetchEventListener eventListener;
 
   /**
    * Specifies URL to this URL fetcher.
@@ -127,141 +133,333 @@ public class UrlFetcher {
   }
 
   /**
-   * Executes the fetching logic.
+   * Specifies the body of POST requests of this URL fetcher. When a body is specified, the
+   * parameters are sent in the query string instead of as a form encoded body.
    *
-   * @return The response of the HTTP request.
-   * @throws IOException If IO errors occur.
+   * @param theBody The request body specified.
+   * @return This URL fetcher.
    */
-  public final UrlResponse execute() throws IOException {
-    Preconditions.checkNotNull(url);
-    final HttpURLConnection conn = prepareConnection();
-    conn.connect();
-    return readResponse(conn);
+  public final UrlFetcher setBody(final RequestBody theBody) {
+    this.body = theBody;
+    return this;
   }
 
   /**
-   * Prepares a {@link HttpURLConnection} instance with variables specified in this URL fetcher.
+   * Specifies whether compressed responses are accepted. If true, gzip and deflate encodings
+   * are requested with the Accept-Encoding header. Compressed responses are always decompressed
+   * while being read.
    *
-   * @return The {@link HttpURLConnection} instance created.
-   * @throws IOException If IO errors occur.
+   * @param theAcceptCompressed True to accept compressed responses.
+   * @return This URL fetcher.
    */
-  private HttpURLConnection prepareConnection() throws IOException {
-    final String queryStr = getQuery(params);
-    if (requestMethod == RequestMethod.GET) {
-      url = url + "?" + queryStr;
-    }
-    final URL urlObj = new URL(url);
-    final HttpURLConnection conn = (HttpURLConnection) urlObj.openConnection();
-    conn.setReadTimeout(readTimeout);
-    conn.setConnectTimeout(connectTimeout);
-    conn.setRequestMethod(requestMethod.name());
-    conn.setDoInput(true);
-    conn.setDoOutput(true);
-    setHeaders(conn);
-    if (requestMethod == RequestMethod.POST) {
-      writeToConnection(conn, queryStr);
-    }
-    return conn;
+  public final UrlFetcher setAcceptCompressed(final boolean theAcceptCompressed) {
+    this.acceptCompressed = theAcceptCompressed;
+    return this;
   }
 
   /**
-   * Sets headers in HTTP connection.
+   * Specifies whether the body of POST requests is compressed with gzip. The server must
+   * support requests with Content-Encoding header.
    *
-   * @param conn The HTTP connection specified.
+   * @param theCompressRequest True to compress request bodies.
+   * @return This URL fetcher.
    */
-  private void setHeaders(final HttpURLConnection conn) {
-    for (final AbstractMap.SimpleEntry<String, String> header : headers) {
-      conn.setRequestProperty(header.getKey(), header.getValue());
-    }
+  public final UrlFetcher setCompressRequest(final boolean theCompressRequest) {
+    this.compressRequest = theCompressRequest;
+    return this;
   }
 
   /**
-   * Reads response from the HTTP connection.
+   * Specifies whether PATCH requests are sent as POST with the X-HTTP-Method-Override header,
+   * which the server must honour. The {@link java.net.HttpURLConnection} of the JDK rejects
+   * PATCH, so PATCH requests fail unless this is enabled or the connections are opened by a
+   * {@link ConnectionFactory} whose connections support PATCH.
    *
-   * @param conn The HTTP connection specified.
-   * @return Response object.
-   * @throws IOException If IO errors occur.
+   * @param theMethodOverride True to send PATCH requests as POST with the override header.
+   * @return This URL fetcher.
    */
-  private UrlResponse readResponse(final HttpURLConnection conn) throws IOException {
-    final int responseCode = conn.getResponseCode();
-    final String content = readContent(conn);
-    return new UrlResponse(responseCode, content);
+  public final UrlFetcher setMethodOverride(final boolean theMethodOverride) {
+    this.methodOverride = theMethodOverride;
+    return this;
   }
 
   /**
-   * Gets query string of parameters.
+   * Specifies the counters of compressed and uncompressed bytes of this URL fetcher. If not
+   * specified, {@link CompressionStats#shared()} is used.
    *
-   * @return The query string of parameters.
-   * @throws UnsupportedEncodingException If encoding errors occur.
+   * @param theCompressionStats The counters specified.
+   * @return This URL fetcher.
    */
-  public final String getQueryString() throws UnsupportedEncodingException {
-    return getQuery(params);
+  public final UrlFetcher setCompressionStats(final CompressionStats theCompressionStats) {
+    this.compressionStats = theCompressionStats;
+    return this;
+  }
+
+  /**
+   * Specifies the cache of GET responses of this URL fetcher. Only {@link #execute()} and
+   * {@link #executeAsync()} use the cache.
+   *
+   * @param theResponseCache The response cache specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setResponseCache(final UrlResponseCache theResponseCache) {
+    this.responseCache = theResponseCache;
+    return this;
+  }
+
+  /**
+   * Specifies the policy which retries and hedges requests of idempotent methods. Requests
+   * aren't retried if no policy is specified.
+   *
+   * @param theRetryPolicy The retry policy specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setRetryPolicy(final RetryPolicy theRetryPolicy) {
+    this.retryPolicy = theRetryPolicy;
+    return this;
+  }
+
+  /**
+   * Specifies the circuit breakers and bulkheads which guard the routes called by this URL
+   * fetcher. Requests aren't guarded if none are specified.
+   *
+   * @param theCircuitBreakers The circuit breakers specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setCircuitBreakers(final CircuitBreakers theCircuitBreakers) {
+    this.circuitBreakers = theCircuitBreakers;
+    return this;
   }
 
   /**
-   * Reads string content from the {@link HttpURLConnection} object.
+   * Specifies the rate limits of the hosts called by this URL fetcher, e.g. read from
+   * {@link org.wisepersist.apuava.settings.Settings}. Requests aren't limited if none are
+   * specified.
    *
-   * @param conn The {@link HttpURLConnection} object specified.
-   * @return The string content.
+   * @param theRateLimits The rate limits specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setRateLimits(final RateLimits theRateLimits) {
+    this.rateLimits = theRateLimits;
+    return this;
+  }
+
+  /**
+   * Specifies the coalescer which shares one response between identical GET and HEAD requests
+   * in flight. Requests aren't coalesced if none is specified.
+   *
+   * @param theRequestCoalescer The request coalescer specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setRequestCoalescer(final RequestCoalescer theRequestCoalescer) {
+    this.requestCoalescer = theRequestCoalescer;
+    return this;
+  }
+
+  /**
+   * Specifies the listener which is notified of each phase of the HTTP exchanges of this URL
+   * fetcher, e.g. a {@link FetchMetrics} recorder. Exchanges aren't traced if none is specified.
+   *
+   * @param theEventListener The event listener specified, or null for none.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setEventListener(final FetchEventListener theEventListener) {
+    this.eventListener = theEventListener;
+    return this;
+  }
+
+  /**
+   * Specifies the executor which runs asynchronous fetches of this URL fetcher. If not specified,
+   * {@link FetchExecutors#defaultExecutor()} is used. Specify
+   * {@link FetchExecutors#virtualThreadExecutor()} to run each fetch in a virtual thread.
+   *
+   * @param theExecutor The executor specified.
+   * @return This URL fetcher.
+   */
+  public final UrlFetcher setExecutor(final ExecutorService theExecutor) {
+    this.executor = MoreExecutors.listeningDecorator(theExecutor);
+    return this;
+  }
+
+  /**
+   * Specifies the connection manager of this URL fetcher. If not specified,
+   * {@link LimitingConnectionManager#shared()} is used. When the URL fetcher is created by Guice,
+   * the bound {@link ConnectionManager} is injected so it can be shared across URL fetchers.
+   *
+   * @param theConnectionManager The connection manager specified.
+   * @return This URL fetcher.
+   */
+  @Inject(optional = true)
+  public final UrlFetcher setConnectionManager(final ConnectionManager theConnectionManager) {
+    this.connectionManager = theConnectionManager;
+    return this;
+  }
+
+  /**
+   * Creates an immutable request from the current settings of this URL fetcher, which can be
+   * executed many times and concurrently. Later changes to this URL fetcher don't affect the
+   * request.
+   *
+   * @return The request created.
+   * @throws IOException If the parameters can't be encoded.
+   */
+  public final UrlRequest toRequest() throws IOException {
+    return new UrlRequest(this);
+  }
+
+  /**
+   * Executes the fetching logic.
+   *
+   * @return The response of the HTTP request.
    * @throws IOException If IO errors occur.
    */
-  private String readContent(final HttpURLConnection conn) throws IOException {
-    final InputStream inputStream = conn.getInputStream();
-    return resourceManager.with(inputStream).run(new ResourceHandler<String>() {
-      @Override
-      public String handle(final Closeable closeable) throws IOException {
-        return IOUtils.toString(inputStream, Charsets.UTF_8);
-      }
-    });
+  public final UrlResponse execute() throws IOException {
+    return toRequest().execute();
   }
 
   /**
-   * Writes body data string to the {@link HttpURLConnection} object.
+   * Executes the fetching logic and decodes the response body with a body handler while it is
+   * read from the connection, e.g. straight into a typed object with a streaming parser. The
+   * response cache isn't used.
    *
-   * @param conn The {@link HttpURLConnection} object specified.
-   * @param bodyData The body data string specified.
+   * @param handler The body handler specified, see {@link BodyHandlers}.
+   * @param <T> The type which the body is decoded to.
+   * @return The decoded body.
    * @throws IOException If IO errors occur.
    */
-  private void writeToConnection(final HttpURLConnection conn, final String bodyData)
-      throws IOException {
-    final OutputStream outputStream = conn.getOutputStream();
-    resourceManager.with(outputStream).run(new VoidResourceHandler() {
-      @Override
-      public void handle(final Closeable closeable) throws IOException {
-        final BufferedWriter writer =
-            new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
-        resourceManager.with(writer).run(new VoidResourceHandler() {
-          @Override
-          public void handle(final Closeable closeable) throws IOException {
-            writer.write(bodyData);
-            writer.flush();
-          }
-        });
-      }
-    });
+  public final <T> T execute(final BodyHandler<T> handler) throws IOException {
+    return toRequest().execute(handler);
   }
 
   /**
-   * Gets query string from parameters specified.
+   * Executes the fetching logic without reading the response body. The response returned must
+   * be closed to release the connection.
    *
-   * @param theParams The parameters specified.
-   * @return The query string created.
-   * @throws UnsupportedEncodingException If encoding related errors occur.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
    */
-  private String getQuery(final List<AbstractMap.SimpleEntry<String, String>> theParams)
-      throws UnsupportedEncodingException {
-    final StringBuilder result = new StringBuilder();
-    boolean first = true;
-    for (final AbstractMap.SimpleEntry<String, String> pair : theParams) {
-      if (first) {
-        first = false;
-      } else {
-        result.append("&");
-      }
-      result.append(URLEncoder.encode(pair.getKey(), "UTF-8"));
-      result.append("=");
-      result.append(URLEncoder.encode(pair.getValue(), "UTF-8"));
+  public final UrlStreamResponse executeStreaming() throws IOException {
+    return toRequest().executeStreaming();
+  }
+
+  /**
+   * Executes the fetching logic asynchronously on the executor of this URL fetcher. The
+   * settings are captured when this method is called, so this URL fetcher can be modified
+   * afterwards.
+   *
+   * @return The future of the response of the HTTP request.
+   */
+  public final ListenableFuture<UrlResponse> executeAsync() {
+    ListenableFuture<UrlResponse> future;
+    try {
+      future = toRequest().executeAsync();
+    } catch (final IOException ex) {
+      future = Futures.immediateFailedFuture(ex);
     }
-    return result.toString();
+    return future;
+  }
+
+  /**
+   * Executes the fetching logic asynchronously on the executor of this URL fetcher, and
+   * decodes the response body with a body handler.
+   *
+   * @param handler The body handler specified, see {@link BodyHandlers}.
+   * @param <T> The type which the body is decoded to.
+   * @return The future of the decoded body.
+   */
+  public final <T> ListenableFuture<T> executeAsync(final BodyHandler<T> handler) {
+    ListenableFuture<T> future;
+    try {
+      future = toRequest().executeAsync(NO_PARAMS, handler);
+    } catch (final IOException ex) {
+      future = Futures.immediateFailedFuture(ex);
+    }
+    return future;
+  }
+
+  /**
+   * Gets query string of parameters.
+   *
+   * @return The query string of parameters.
+   * @throws UnsupportedEncodingException If encoding errors occur.
+   */
+  public final String getQueryString() throws UnsupportedEncodingException {
+    return QueryStrings.join("", params);
+  }
+
+  final String getUrl() {
+    return url;
+  }
+
+  final List<AbstractMap.SimpleEntry<String, String>> getParams() {
+    return params;
+  }
+
+  final List<AbstractMap.SimpleEntry<String, String>> getHeaders() {
+    return headers;
+  }
+
+  final RequestMethod getRequestMethod() {
+    return requestMethod;
+  }
+
+  final int getReadTimeout() {
+    return readTimeout;
+  }
+
+  final int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  final RequestBody getBody() {
+    return body;
+  }
+
+  final boolean isAcceptCompressed() {
+    return acceptCompressed;
+  }
+
+  final boolean isCompressRequest() {
+    return compressRequest;
+  }
+
+  final boolean isMethodOverride() {
+    return methodOverride;
+  }
+
+  final CompressionStats getCompressionStats() {
+    return compressionStats;
+  }
+
+  final ConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  final UrlResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  final ListeningExecutorService getExecutor() {
+    return executor;
+  }
+
+  final RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  final CircuitBreakers getCircuitBreakers() {
+    return circuitBreakers;
+  }
+
+  final RateLimits getRateLimits() {
+    return rateLimits;
+  }
+
+  final RequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
+  final FetchEventListener getEventListener() {
+    return eventListener;
   }
 }
@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable HTTP request created by {@link UrlFetcher#toRequest()}. The parameters and headers
+ * of the URL fetcher are encoded once when the request is created, so the request can be
+ * executed any number of times, from any number of threads, and only the dynamic parameters
+ * given to each execution are encoded again.
+ *
+ * <pre>
+ * final UrlRequest search = new UrlFetcher().setUrl("http://example.com/search")
+ *     .addParam("key", apiKey).toRequest();
+ * final UrlResponse response = search.execute(ImmutableMap.of("q", query));
+ * </pre>
+ *
+ * <p>A request with a body can be executed more than once only if the body can be written
+ * more than once, e.g. a body of bytes or of a file.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@SuppressWarnings("ClassDataAbstractionCoupling")
+public class UrlRequest {
+
+  private static final List<AbstractMap.SimpleEntry<String, String>> NO_HEADERS =
+      Collections.emptyList();
+  private static final Map<String, String> NO_PARAMS = Collections.emptyMap();
+  private static final String METHOD_OVERRIDE = "X-HTTP-Method-Override";
+
+  private final String url;
+  private final String query;
+  private final RequestMethod requestMethod;
+  private final int readTimeout;
+  private final int connectTimeout;
+  private final List<AbstractMap.SimpleEntry<String, String>> headers;
+  private final RequestBody body;
+  private final boolean acceptCompressed;
+  private final boolean compressRequest;
+  private final boolean methodOverride;
+  private final CompressionStats compressionStats;
+  private final ConnectionManager connectionManager;
+  private final UrlResponseCache responseCache;
+  private final ListeningExecutorService executor;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreakers circuitBreakers;
+  private final RateLimits rateLimits;
+  private final RequestCoalescer requestCoalescer;
+  private final FetchEventListener eventListener;
+
+  /**
+   * Constructs a new {@link UrlRequest} instance from the settings of a URL fetcher.
+   *
+   * @param fetcher The URL fetcher specified.
+   * @throws IOException If the parameters can't be encoded.
+   */
+  UrlRequest(final UrlFetcher fetcher) throws IOException {
+    this.url = Preconditions.checkNotNull(fetcher.getUrl());
+    this.query = QueryStrings.join("", fetcher.getParams());
+    this.requestMethod = fetcher.getRequestMethod();
+    this.readTimeout = fetcher.getReadTimeout();
+    this.connectTimeout = fetcher.getConnectTimeout();
+    this.headers = ImmutableList.copyOf(fetcher.getHeaders());
+    this.body = fetcher.getBody();
+    this.acceptCompressed = fetcher.isAcceptCompressed();
+    this.compressRequest = fetcher.isCompressRequest();
+    this.methodOverride = fetcher.isMethodOverride();
+    this.compressionStats = fetcher.getCompressionStats();
+    this.connectionManager = fetcher.getConnectionManager();
+    this.responseCache = fetcher.getResponseCache();
+    this.executor = fetcher.getExecutor();
+    this.retryPolicy = fetcher.getRetryPolicy();
+    this.circuitBreakers = fetcher.getCircuitBreakers();
+    this.rateLimits = fetcher.getRateLimits();
+    this.requestCoalescer = fetcher.getRequestCoalescer();
+    this.eventListener = fetcher.getEventListener();
+  }
+
+  /**
+   * Executes this request.
+   *
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  public final UrlResponse execute() throws IOException {
+    return execute(NO_PARAMS);
+  }
+
+  /**
+   * Executes this request with parameters added to the parameters of this request.
+   *
+   * @param dynamicParams The parameters added to this execution only.
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  public final UrlResponse execute(final Map<String, String> dynamicParams) throws IOException {
+    final String queryStr = getQuery(dynamicParams);
+    final UrlResponse response;
+    if (requestCoalescer != null && !requestMethod.hasRequestBody()
+        && requestMethod.isIdempotent()) {
+      final String key = requestMethod + " " + getRequestUrl(queryStr) + " " + headers;
+      response = requestCoalescer.execute(key, this, queryStr);
+    } else {
+      response = fetch(queryStr);
+    }
+    return response;
+  }
+
+  /**
+   * Executes this request and decodes the response body with a body handler while it is read
+   * from the connection. The response cache isn't used.
+   *
+   * @param handler The body handler specified.
+   * @param <T> The type which the body is decoded to.
+   * @return The decoded body.
+   * @throws IOException If IO errors occur.
+   */
+  public final <T> T execute(final BodyHandler<T> handler) throws IOException {
+    return execute(NO_PARAMS, handler);
+  }
+
+  /**
+   * Executes this request with parameters added to the parameters of this request, and
+   * decodes the response body with a body handler while it is read from the connection. The
+   * response cache isn't used.
+   *
+   * @param dynamicParams The parameters added to this execution only.
+   * @param handler The body handler specified.
+   * @param <T> The type which the body is decoded to.
+   * @return The decoded body.
+   * @throws IOException If IO errors occur.
+   */
+  public final <T> T execute(final Map<String, String> dynamicParams,
+      final BodyHandler<T> handler) throws IOException {
+    final String queryStr = getQuery(dynamicParams);
+    final String requestUrl = getRequestUrl(queryStr);
+    return send(new AbstractRetryingCall<T>(retryPolicy, executor) {
+      @Override
+      protected T attempt() throws IOException {
+        return open(requestUrl, queryStr, NO_HEADERS).handle(handler);
+      }
+    });
+  }
+
+  /**
+   * Sends this request with a query string, retrying it if a retry policy is set.
+   *
+   * @param queryStr The query string of parameters.
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  final UrlResponse fetch(final String queryStr) throws IOException {
+    final String requestUrl = getRequestUrl(queryStr);
+    return send(new AbstractRetryingCall<UrlResponse>(retryPolicy, executor) {
+      @Override
+      protected UrlResponse attempt() throws IOException {
+        return executeOnce(requestUrl, queryStr);
+      }
+    });
+  }
+
+  /**
+   * Sends a call, retrying it if a retry policy is set and the request method is idempotent.
+   *
+   * @param call The call specified.
+   * @param <T> The type of the result of the call.
+   * @return The result of the call.
+   * @throws IOException If IO errors occur.
+   */
+  private <T> T send(final AbstractRetryingCall<T> call) throws IOException {
+    final T result;
+    if (retryPolicy != null && requestMethod.isIdempotent()) {
+      result = call.call();
+    } else {
+      result = call.attempt();
+    }
+    return result;
+  }
+
+  /**
+   * Sends one attempt of this request, through the response cache if any.
+   *
+   * @param requestUrl The final request URL.
+   * @param queryStr The query string of parameters.
+   * @return The response of the HTTP request.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlResponse executeOnce(final String requestUrl, final String queryStr)
+      throws IOException {
+    final UrlResponse response;
+    if (responseCache != null && requestMethod == RequestMethod.GET) {
+      response = responseCache.execute(requestUrl, headers, new CacheableCall() {
+        @Override
+        public UrlStreamResponse call(
+            final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) throws IOException {
+          return open(requestUrl, queryStr, extraHeaders);
+        }
+      });
+    } else {
+      response = open(requestUrl, queryStr, NO_HEADERS).handle(BodyHandlers.ofUrlResponse());
+    }
+    return response;
+  }
+
+  /**
+   * Executes this request without reading the response body. The response returned must be
+   * closed to release the connection.
+   *
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
+   */
+  public final UrlStreamResponse executeStreaming() throws IOException {
+    return executeStreaming(NO_PARAMS);
+  }
+
+  /**
+   * Executes this request without reading the response body. The response returned must be
+   * closed to release the connection.
+   *
+   * @param dynamicParams The parameters added to this execution only.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
+   */
+  public final UrlStreamResponse executeStreaming(final Map<String, String> dynamicParams)
+      throws IOException {
+    final String queryStr = getQuery(dynamicParams);
+    return open(getRequestUrl(queryStr), queryStr, NO_HEADERS);
+  }
+
+  /**
+   * Executes this request asynchronously on the executor of the URL fetcher it was created
+   * from.
+   *
+   * @return The future of the response of the HTTP request.
+   */
+  public final ListenableFuture<UrlResponse> executeAsync() {
+    return executeAsync(NO_PARAMS);
+  }
+
+  /**
+   * Executes this request asynchronously on the executor of the URL fetcher it was created
+   * from.
+   *
+   * @param dynamicParams The parameters added to this execution only.
+   * @return The future of the response of the HTTP request.
+   */
+  public final ListenableFuture<UrlResponse> executeAsync(
+      final Map<String, String> dynamicParams) {
+    return executor.submit(new Callable<UrlResponse>() {
+      @Override
+      public UrlResponse call() throws IOException {
+        return execute(dynamicParams);
+      }
+    });
+  }
+
+  /**
+   * Executes this request asynchronously on the executor of the URL fetcher it was created
+   * from, and decodes the response body with a body handler.
+   *
+   * @param dynamicParams The parameters added to this execution only.
+   * @param handler The body handler specified.
+   * @param <T> The type which the body is decoded to.
+   * @return The future of the decoded body.
+   */
+  public final <T> ListenableFuture<T> executeAsync(final Map<String, String> dynamicParams,
+      final BodyHandler<T> handler) {
+    return executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws IOException {
+        return execute(dynamicParams, handler);
+      }
+    });
+  }
+
+  /**
+   * Gets the query string of this request with dynamic parameters appended.
+   *
+   * @param dynamicParams The dynamic parameters specified.
+   * @return The query string.
+   */
+  private String getQuery(final Map<String, String> dynamicParams) {
+    String queryStr = query;
+    if (!dynamicParams.isEmpty()) {
+      queryStr = QueryStrings.join(query, dynamicParams.entrySet());
+    }
+    return queryStr;
+  }
+
+  /**
+   * Sends the request, once a permit of the rate limit of its host is taken if rate limits
+   * are set, and through the circuit breaker of its route if circuit breakers are set.
+   *
+   * @param requestUrl The final request URL.
+   * @param queryStr The query string of parameters.
+   * @param extraHeaders The headers sent in addition to the headers of this request.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlStreamResponse open(final String requestUrl, final String queryStr,
+      final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) throws IOException {
+    final URL target = new URL(requestUrl);
+    if (rateLimits != null) {
+      rateLimits.acquire(target);
+    }
+    final UrlStreamResponse response;
+    if (circuitBreakers == null) {
+      response = connect(target, queryStr, extraHeaders);
+    } else {
+      response = guardedConnect(target, queryStr, extraHeaders);
+    }
+    return response;
+  }
+
+  /**
+   * Sends the request through the circuit breaker of its route. The permit of the circuit
+   * breaker is held until the response is closed.
+   *
+   * @param target The final request URL.
+   * @param queryStr The query string of parameters.
+   * @param extraHeaders The headers sent in addition to the headers of this request.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur, or {@link CallNotPermittedException} if the
+   *     circuit breaker rejects the request.
+   */
+  private UrlStreamResponse guardedConnect(final URL target, final String queryStr,
+      final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) throws IOException {
+    final CircuitBreaker breaker = circuitBreakers.getCircuitBreaker(target);
+    final long permit = breaker.acquire();
+    final long start = System.nanoTime();
+    boolean failed = true;
+    UrlStreamResponse response = null;
+    try {
+      response = connect(target, queryStr, extraHeaders);
+      response.setCircuitBreaker(breaker, permit, start);
+    } catch (final HttpStatusException ex) {
+      failed = ex.getStatusCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+      throw ex;
+    } finally {
+      if (response == null) {
+        breaker.complete(permit, start, failed);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Opens a connection to the request URL, sends the request and reads the response status.
+   *
+   * @param target The final request URL.
+   * @param queryStr The query string of parameters.
+   * @param extraHeaders The headers sent in addition to the headers of this request.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlStreamResponse connect(final URL target, final String queryStr,
+      final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    final long startNanos = System.nanoTime();
+    final FetchTrace trace = FetchTrace.start(target, requestMethod, eventListener);
+    final UrlStreamResponse response;
+    trace.attach();
+    try {
+      final HttpURLConnection conn = openConnection(target, extraHeaders);
+      response = exchange(conn, queryStr, trace);
+    } catch (final IOException ex) {
+      trace.fail(ex);
+      throw ex;
+    } finally {
+      trace.detach();
+    }
+    response.setStartTime(startTime, startNanos);
+    return response;
+  }
+
+  /**
+   * Opens a connection to the request URL and sets the request headers. The connection is
+   * released if a header is rejected, e.g. for a line break in its value.
+   *
+   * @param target The final request URL.
+   * @param extraHeaders The headers sent in addition to the headers of this request.
+   * @return The connection opened.
+   * @throws IOException If IO errors occur.
+   */
+  private HttpURLConnection openConnection(final URL target,
+      final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) throws IOException {
+    final HttpURLConnection conn = connectionManager.open(target);
+    boolean prepared = false;
+    try {
+      setHeaders(conn, extraHeaders);
+      prepared = true;
+    } finally {
+      if (!prepared) {
+        connectionManager.release(conn, false);
+      }
+    }
+    return conn;
+  }
+
+  /**
+   * Connects a prepared connection, writes the request body if any and reads the response
+   * status. The connection is released if no response is returned.
+   *
+   * @param conn The connection specified.
+   * @param queryStr The query string of parameters.
+   * @param trace The trace of the exchange.
+   * @return The response of the HTTP request whose body can be read as a stream.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlStreamResponse exchange(final HttpURLConnection conn, final String queryStr,
+      final FetchTrace trace) throws IOException {
+    UrlStreamResponse response = null;
+    try {
+      final RequestBody requestBody = prepareConnection(conn, queryStr);
+      trace.fire(FetchPhase.CONNECT_START);
+      conn.connect();
+      trace.fire(FetchPhase.CONNECT_END);
+      if (requestBody != null) {
+        writeToConnection(conn, requestBody, trace);
+      }
+      trace.received(conn.getResponseCode());
+      response = new UrlStreamResponse(conn, connectionManager, compressionStats);
+      response.setTrace(trace);
+    } finally {
+      if (response == null) {
+        connectionManager.release(conn, false);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Gets the final request URL, which carries the query string for requests of methods without
+   * a body, and for requests with a body specified.
+   *
+   * @param queryStr The query string of parameters.
+   * @return The final request URL.
+   */
+  private String getRequestUrl(final String queryStr) {
+    String requestUrl = url;
+    if (!requestMethod.hasRequestBody() || body != null && !queryStr.isEmpty()) {
+      requestUrl = url + "?" + queryStr;
+    }
+    return requestUrl;
+  }
+
+  /**
+   * Prepares a {@link HttpURLConnection} instance with variables specified in this request.
+   *
+   * @param conn The {@link HttpURLConnection} instance specified.
+   * @param queryStr The query string of parameters.
+   * @return The request body to write once connected, or null if the method has no body.
+   * @throws IOException If IO errors occur.
+   */
+  private RequestBody prepareConnection(final HttpURLConnection conn, final String queryStr)
+      throws IOException {
+    conn.setReadTimeout(readTimeout);
+    conn.setConnectTimeout(connectTimeout);
+    setRequestMethod(conn);
+    conn.setDoInput(true);
+    conn.setDoOutput(requestMethod.hasRequestBody());
+    RequestBody requestBody = null;
+    if (requestMethod.hasRequestBody()) {
+      requestBody = getRequestBody(queryStr);
+      setStreamingMode(conn, requestBody);
+    }
+    return requestBody;
+  }
+
+  /**
+   * Sets the request method of a connection. PATCH is sent as POST with the
+   * X-HTTP-Method-Override header if method override is enabled, otherwise as PATCH, which
+   * fails with the {@link HttpURLConnection} of the JDK.
+   *
+   * @param conn The HTTP connection specified.
+   * @throws ProtocolException If the connection doesn't support the method.
+   */
+  private void setRequestMethod(final HttpURLConnection conn) throws ProtocolException {
+    if (requestMethod == RequestMethod.PATCH && methodOverride) {
+      conn.setRequestMethod(RequestMethod.POST.name());
+      conn.setRequestProperty(METHOD_OVERRIDE, requestMethod.name());
+    } else {
+      try {
+        conn.setRequestMethod(requestMethod.name());
+      } catch (final ProtocolException ex) {
+        throw new ProtocolException(requestMethod + " isn't supported by " + conn.getClass()
+            .getName() + ", enable UrlFetcher#setMethodOverride or use a ConnectionFactory "
+            + "which supports it");
+      }
+    }
+  }
+
+  /**
+   * Sets headers in HTTP connection.
+   *
+   * @param conn The HTTP connection specified.
+   * @param extraHeaders The headers sent in addition to the headers of this request.
+   */
+  private void setHeaders(final HttpURLConnection conn,
+      final List<AbstractMap.SimpleEntry<String, String>> extraHeaders) {
+    if (acceptCompressed) {
+      conn.setRequestProperty("Accept-Encoding", ContentCodings.ACCEPT_ENCODING);
+    }
+    for (final AbstractMap.SimpleEntry<String, String> header : headers) {
+      conn.setRequestProperty(header.getKey(), header.getValue());
+    }
+    for (final AbstractMap.SimpleEntry<String, String> header : extraHeaders) {
+      conn.setRequestProperty(header.getKey(), header.getValue());
+    }
+  }
+
+  /**
+   * Gets the body of requests, which is the form encoded parameters unless a body is
+   * specified.
+   *
+   * @param queryStr The query string of parameters.
+   * @return The request body.
+   */
+  private RequestBody getRequestBody(final String queryStr) {
+    RequestBody requestBody = body;
+    if (requestBody == null) {
+      requestBody = RequestBodies.of(queryStr.getBytes(Charsets.UTF_8));
+    }
+    return requestBody;
+  }
+
+  /**
+   * Sets the streaming mode of a connection, so that the request body isn't buffered by the
+   * connection.
+   *
+   * @param conn The {@link HttpURLConnection} object specified.
+   * @param requestBody The request body specified.
+   */
+  private void setStreamingMode(final HttpURLConnection conn, final RequestBody requestBody) {
+    final long length = requestBody.getContentLength();
+    if (compressRequest) {
+      conn.setRequestProperty("Content-Encoding", ContentCodings.GZIP);
+      conn.setChunkedStreamingMode(0);
+    } else if (length < 0) {
+      conn.setChunkedStreamingMode(0);
+    } else {
+      conn.setFixedLengthStreamingMode(length);
+    }
+  }
+
+  /**
+   * Writes the request body to the {@link HttpURLConnection} object, compressing it if
+   * required.
+   *
+   * @param conn The {@link HttpURLConnection} object specified.
+   * @param requestBody The request body specified.
+   * @param trace The trace of the exchange.
+   * @throws IOException If IO errors occur.
+   */
+  private void writeToConnection(final HttpURLConnection conn, final RequestBody requestBody,
+      final FetchTrace trace) throws IOException {
+    trace.fire(FetchPhase.REQUEST_BODY_START);
+    CompressionStats stats = null;
+    if (compressRequest) {
+      stats = compressionStats;
+    }
+    trace.sent(RequestBodies.write(requestBody, conn.getOutputStream(), stats));
+  }
+}
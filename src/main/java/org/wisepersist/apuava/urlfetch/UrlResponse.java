@@ -16,15 +16,24 @@
 
 package org.wisepersist.apuava.urlfetch;
 
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * Response of http requests.
+ * Response of http requests. The body is kept as bytes and only decoded to a string when
+ * {@link #getContent()} is called.
  *
  * @author delight.wjk@gmail.com
  */
 public class UrlResponse {
 
   private int statusCode;
+  private byte[] body;
   private String content;
+  private ResponseHeaders headers = ResponseHeaders.EMPTY;
+  private ResponseTiming timing = ResponseTiming.NONE;
 
   /**
    * Constructs a new {@link UrlResponse} instance.
@@ -33,15 +42,102 @@ public class UrlResponse {
    * @param content The content string specified.
    */
   public UrlResponse(final int statusCode, final String content) {
-    this.statusCode = statusCode;
+    this(statusCode, content.getBytes(Charsets.UTF_8));
     this.content = content;
   }
 
+  /**
+   * Constructs a new {@link UrlResponse} instance.
+   *
+   * @param statusCode The status code specified.
+   * @param body The body bytes specified, which are owned by the response afterwards.
+   */
+  public UrlResponse(final int statusCode, final byte[] body) {
+    this.statusCode = statusCode;
+    this.body = body;
+  }
+
   public final int getStatusCode() {
     return statusCode;
   }
 
+  /**
+   * Gets the response headers, which are empty for responses created directly.
+   *
+   * @return The response headers.
+   */
+  public final ResponseHeaders getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Gets the timing of the request which fetched this response. Responses served from
+   * {@link UrlResponseCache} have the timing of the request which stored them.
+   *
+   * @return The response timing, or {@link ResponseTiming#NONE} for responses created directly.
+   */
+  public final ResponseTiming getTiming() {
+    return timing;
+  }
+
+  /**
+   * Specifies the headers and timing of this response.
+   *
+   * @param theHeaders The response headers specified.
+   * @param theTiming The response timing specified.
+   * @return This response.
+   */
+  final UrlResponse setMetadata(final ResponseHeaders theHeaders, final ResponseTiming theTiming) {
+    this.headers = theHeaders;
+    this.timing = theTiming;
+    return this;
+  }
+
+  /**
+   * Gets the body decoded as an UTF-8 string.
+   *
+   * @return The content string.
+   */
   public final String getContent() {
+    if (content == null) {
+      content = new String(body, Charsets.UTF_8);
+    }
     return content;
   }
+
+  /**
+   * Gets a copy of the body bytes.
+   *
+   * @return The body bytes.
+   */
+  public final byte[] getBytes() {
+    return Arrays.copyOf(body, body.length);
+  }
+
+  /**
+   * Gets a read-only view of the body bytes without copying them.
+   *
+   * @return The body bytes buffer.
+   */
+  public final ByteBuffer getByteBuffer() {
+    return ByteBuffer.wrap(body).asReadOnlyBuffer();
+  }
+
+  /**
+   * Gets the body bytes without copying them, for use within this package only.
+   *
+   * @return The body bytes.
+   */
+  final byte[] body() {
+    return body;
+  }
+
+  /**
+   * Gets the length of the body in bytes.
+   *
+   * @return The length of the body.
+   */
+  public final int getContentLength() {
+    return body.length;
+  }
 }
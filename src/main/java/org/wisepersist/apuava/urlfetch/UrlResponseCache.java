@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Cache of GET responses of {@link UrlFetcher} which honours the Cache-Control, Expires, ETag
+ * and Last-Modified headers as a private cache (RFC 7234). Entries are kept in memory up to a
+ * maximum total body size, and entries evicted from memory can be kept in an optional
+ * {@link DiskCacheStore}. Evicted entries are written to disk by the thread whose store caused
+ * the eviction rather than by a shared fetch pool, so demotions neither queue behind fetches nor
+ * take threads from them. Stale entries are revalidated with conditional requests, and the
+ * headers of 304 responses are merged into the stored ones.
+ *
+ * <p>Entries are keyed on the final request URL and the values of the key headers, which are
+ * Authorization only by default. An entry keeps the request values of the headers named by the
+ * Vary header of its response, and is only served to requests with the same values. Responses
+ * with {@code Vary: *} aren't stored.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlResponseCache {
+
+  private static final String CACHE_CONTROL = "Cache-Control";
+  private static final List<AbstractMap.SimpleEntry<String, String>> NO_HEADERS =
+      Collections.emptyList();
+
+  private final Cache<String, CacheEntry> memory;
+  private final DiskCacheStore disk;
+  private final ResponseCacheStats stats = new ResponseCacheStats();
+  private volatile SortedSet<String> keyHeaders = ImmutableSortedSet
+      .orderedBy(String.CASE_INSENSITIVE_ORDER).add("Authorization").build();
+
+  /**
+   * Constructs a new {@link UrlResponseCache} instance which keeps entries in memory only.
+   *
+   * @param maxMemoryBytes The maximum total body size of entries kept in memory.
+   */
+  public UrlResponseCache(final long maxMemoryBytes) {
+    this(maxMemoryBytes, null);
+  }
+
+  /**
+   * Constructs a new {@link UrlResponseCache} instance.
+   *
+   * @param maxMemoryBytes The maximum total body size of entries kept in memory.
+   * @param disk The on-disk tier for entries evicted from memory, or null for none.
+   */
+  public UrlResponseCache(final long maxMemoryBytes, final DiskCacheStore disk) {
+    this.disk = disk;
+    this.memory = CacheBuilder.newBuilder().maximumWeight(maxMemoryBytes)
+        .weigher(new EntryWeigher())
+        .removalListener(new DiskDemoter())
+        .build();
+  }
+
+  /**
+   * Specifies the request headers whose values are part of the cache key.
+   *
+   * @param names The header names specified.
+   * @return This response cache.
+   */
+  public final UrlResponseCache setKeyHeaders(final String... names) {
+    this.keyHeaders = ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER)
+        .add(names).build();
+    return this;
+  }
+
+  public final ResponseCacheStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public final void clear() {
+    memory.invalidateAll();
+    if (disk != null) {
+      disk.clear();
+    }
+  }
+
+  /**
+   * Gets the response of a GET request from the cache, or from the network call if no fresh
+   * entry exists.
+   *
+   * @param requestUrl The final request URL.
+   * @param headers The request headers.
+   * @param call The network call.
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  final UrlResponse execute(final String requestUrl,
+      final List<AbstractMap.SimpleEntry<String, String>> headers, final CacheableCall call)
+      throws IOException {
+    final CacheControl requestControl = CacheControl.parse(findHeader(headers, CACHE_CONTROL));
+    final UrlResponse response;
+    if (requestControl.isNoStore()) {
+      stats.recordMiss();
+      response = call.call(NO_HEADERS).buffer();
+    } else {
+      final Exchange exchange = new Exchange(buildKey(requestUrl, headers), headers, call);
+      response = lookupOrFetch(exchange, requestControl.isNoCache());
+    }
+    return response;
+  }
+
+  /**
+   * Serves a fresh entry, revalidates a stale one or fetches a new response. An entry whose
+   * Vary headers don't match the request is treated as absent, and replaced by the response.
+   *
+   * @param exchange The request to serve.
+   * @param noCache True if the request doesn't allow serving without revalidation.
+   * @return The response.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlResponse lookupOrFetch(final Exchange exchange, final boolean noCache)
+      throws IOException {
+    CacheEntry cached = lookup(exchange.key);
+    if (cached != null && !cached.matches(exchange.headers)) {
+      cached = null;
+    }
+    final UrlResponse response;
+    if (cached != null && !noCache && cached.isFresh(System.currentTimeMillis())) {
+      stats.recordHit();
+      response = cached.getResponse();
+    } else if (cached != null && cached.hasValidators()) {
+      response = revalidate(exchange, cached);
+    } else {
+      stats.recordMiss();
+      response = storeResponse(exchange, exchange.call.call(NO_HEADERS));
+    }
+    return response;
+  }
+
+  /**
+   * Revalidates a stale entry with a conditional request.
+   *
+   * @param exchange The request to serve.
+   * @param cached The stale entry.
+   * @return The refreshed cached response if not modified, otherwise the new response.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlResponse revalidate(final Exchange exchange, final CacheEntry cached)
+      throws IOException {
+    final UrlStreamResponse source = exchange.call.call(cached.getConditionalHeaders());
+    final boolean notModified = source.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    stats.recordRevalidation(notModified);
+    final UrlResponse response;
+    if (notModified) {
+      source.buffer();
+      final CacheEntry refreshed = cached.refresh(source, System.currentTimeMillis());
+      store(exchange.key, refreshed);
+      response = refreshed.getResponse();
+    } else {
+      response = storeResponse(exchange, source);
+    }
+    return response;
+  }
+
+  /**
+   * Reads a response and stores it if allowed, otherwise removes any stale entry.
+   *
+   * @param exchange The request which the response answers.
+   * @param source The response to read.
+   * @return The response read.
+   * @throws IOException If IO errors occur.
+   */
+  private UrlResponse storeResponse(final Exchange exchange, final UrlStreamResponse source)
+      throws IOException {
+    final UrlResponse response = source.buffer();
+    final CacheEntry entry =
+        CacheEntry.of(response, exchange.headers, System.currentTimeMillis());
+    if (entry == null) {
+      memory.invalidate(exchange.key);
+      removeFromDisk(exchange.key);
+    } else {
+      store(exchange.key, entry);
+    }
+    return response;
+  }
+
+  /**
+   * Looks up an entry in memory, then on disk.
+   *
+   * @param key The cache key.
+   * @return The entry found, or null.
+   */
+  private CacheEntry lookup(final String key) {
+    CacheEntry entry = memory.getIfPresent(key);
+    if (entry == null && disk != null) {
+      entry = disk.get(key);
+      if (entry != null) {
+        store(key, entry);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Stores an entry in memory. Any older copy on disk is removed first, so that it can't
+   * overwrite the entry when demoted later.
+   *
+   * @param key The cache key.
+   * @param entry The entry specified.
+   */
+  private void store(final String key, final CacheEntry entry) {
+    removeFromDisk(key);
+    memory.put(key, entry);
+  }
+
+  /**
+   * Removes an entry from the disk tier if any.
+   *
+   * @param key The cache key.
+   */
+  private void removeFromDisk(final String key) {
+    if (disk != null) {
+      disk.remove(key);
+    }
+  }
+
+  /**
+   * Builds the cache key from the request URL and the key headers.
+   *
+   * @param requestUrl The final request URL.
+   * @param headers The request headers.
+   * @return The cache key.
+   */
+  private String buildKey(final String requestUrl,
+      final List<AbstractMap.SimpleEntry<String, String>> headers) {
+    final StringBuilder key = new StringBuilder(requestUrl);
+    final SortedSet<String> names = keyHeaders;
+    for (final AbstractMap.SimpleEntry<String, String> header : headers) {
+      if (names.contains(header.getKey())) {
+        key.append('\n').append(header.getKey()).append(": ").append(header.getValue());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Finds the value of a request header.
+   *
+   * @param headers The request headers.
+   * @param name The header name.
+   * @return The last value of the header, or null if absent.
+   */
+  private static String findHeader(final List<AbstractMap.SimpleEntry<String, String>> headers,
+      final String name) {
+    String value = null;
+    for (final AbstractMap.SimpleEntry<String, String> header : headers) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        value = header.getValue();
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Request served through the cache.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class Exchange {
+
+    private final String key;
+    private final List<AbstractMap.SimpleEntry<String, String>> headers;
+    private final CacheableCall call;
+
+    /**
+     * Constructs a new {@link Exchange} instance.
+     *
+     * @param key The cache key.
+     * @param headers The request headers.
+     * @param call The network call.
+     */
+    private Exchange(final String key,
+        final List<AbstractMap.SimpleEntry<String, String>> headers, final CacheableCall call) {
+      this.key = key;
+      this.headers = headers;
+      this.call = call;
+    }
+  }
+
+  /**
+   * Weighs entries by their body size.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class EntryWeigher implements Weigher<String, CacheEntry> {
+
+    @Override
+    public int weigh(final String key, final CacheEntry entry) {
+      return key.length() + entry.getResponse().getContentLength();
+    }
+  }
+
+  /**
+   * Moves entries evicted from memory to the disk tier, in the thread which evicted them.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private final class DiskDemoter implements RemovalListener<String, CacheEntry> {
+
+    @Override
+    public void onRemoval(final RemovalNotification<String, CacheEntry> notification) {
+      if (disk != null && notification.wasEvicted() && notification.getValue() != null) {
+        disk.put(notification.getKey(), notification.getValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.net.URL;
+
+/**
+ * Utility methods for identifying the route (protocol, host and port) of URLs.
+ *
+ * @author delight.wjk@gmail.com
+ */
+final class UrlRoutes {
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private UrlRoutes() {
+    // Do nothing here
+  }
+
+  /**
+   * Gets the route key of the URL specified, e.g. {@code http://example.com:80}.
+   *
+   * @param url The URL specified.
+   * @return The route key of the URL.
+   */
+  static String of(final URL url) {
+    int port = url.getPort();
+    if (port < 0) {
+      port = url.getDefaultPort();
+    }
+    return url.getProtocol() + "://" + url.getHost() + ":" + port;
+  }
+}
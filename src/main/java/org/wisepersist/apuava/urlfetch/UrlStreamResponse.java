@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.io.CountingInputStream;
+
+import org.wisepersist.apuava.resource.ResourceHandler;
+import org.wisepersist.apuava.resource.ResourceManager;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Response of http requests whose body is read as a stream. It must be closed, e.g. with
+ * {@link org.wisepersist.apuava.resource.ResourceManager}, to release the connection.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlStreamResponse implements Closeable {
+
+  private final HttpURLConnection conn;
+  private final ConnectionManager connectionManager;
+  private final int statusCode;
+  private final CountingInputStream wire;
+  private final TrackingInputStream inputStream;
+  private final ResourceManager resourceManager = new ResourceManager();
+  private final long headersNanos;
+  private boolean closed;
+  private CircuitBreaker circuitBreaker;
+  private long breakerPermit;
+  private long breakerStartNanos;
+  private long startTime;
+  private long startNanos;
+  private ResponseHeaders headers;
+  private FetchTrace trace;
+
+  /**
+   * Constructs a new {@link UrlStreamResponse} instance from a connected connection.
+   *
+   * @param conn The connection specified.
+   * @param connectionManager The connection manager which leased the connection.
+   * @param stats The counters updated when a compressed body is read.
+   * @throws IOException If IO errors occur, or {@link HttpStatusException} if the status code
+   *     is an error.
+   */
+  UrlStreamResponse(final HttpURLConnection conn, final ConnectionManager connectionManager,
+      final CompressionStats stats) throws IOException {
+    this.conn = conn;
+    this.connectionManager = connectionManager;
+    this.startTime = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+    this.statusCode = conn.getResponseCode();
+    this.headersNanos = System.nanoTime();
+    if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+      throw new HttpStatusException(statusCode, conn.getURL());
+    }
+    this.wire = new CountingInputStream(conn.getInputStream());
+    this.inputStream = new TrackingInputStream(ContentCodings.decode(conn, wire, stats));
+  }
+
+  public final int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Gets the response headers.
+   *
+   * @return The response headers.
+   */
+  public final ResponseHeaders getHeaders() {
+    if (headers == null) {
+      headers = ResponseHeaders.of(conn);
+    }
+    return headers;
+  }
+
+  /**
+   * Gets the timing of this response so far. The total time is the time until this method is
+   * called, so it should be called once the body has been read.
+   *
+   * @return The timing of this response.
+   */
+  public final ResponseTiming getTiming() {
+    return new ResponseTiming(startTime, headersNanos - startNanos,
+        System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Gets the body stream, which may be read only once. Bodies encoded with gzip or deflate are
+   * decompressed while being read.
+   *
+   * @return The body stream.
+   */
+  public final InputStream getInputStream() {
+    return inputStream;
+  }
+
+  /**
+   * Gets the body as a channel, which may be read only once.
+   *
+   * @return The body channel.
+   */
+  public final ReadableByteChannel getChannel() {
+    return Channels.newChannel(inputStream);
+  }
+
+  /**
+   * Reads the whole body into a {@link UrlResponse} and closes this response.
+   *
+   * @return The buffered response.
+   * @throws IOException If IO errors occur.
+   */
+  final UrlResponse buffer() throws IOException {
+    return handle(BodyHandlers.ofUrlResponse());
+  }
+
+  /**
+   * Decodes the body with a body handler and closes this response.
+   *
+   * @param handler The body handler specified.
+   * @param <T> The type which the body is decoded to.
+   * @return The decoded body.
+   * @throws IOException If IO errors occur.
+   */
+  final <T> T handle(final BodyHandler<T> handler) throws IOException {
+    final UrlStreamResponse response = this;
+    return resourceManager.with(this).run(new ResourceHandler<T>() {
+      @Override
+      public T handle(final Closeable closeable) throws IOException {
+        return handler.handle(response);
+      }
+    });
+  }
+
+  /**
+   * Specifies when the request of this response started, which is the start of its timing.
+   *
+   * @param theStartTime The start time in milliseconds since the epoch.
+   * @param theStartNanos The value of {@link System#nanoTime()} when the request started.
+   */
+  final void setStartTime(final long theStartTime, final long theStartNanos) {
+    this.startTime = theStartTime;
+    this.startNanos = theStartNanos;
+  }
+
+  /**
+   * Specifies the trace of the exchange of this response, which is completed when this
+   * response is closed.
+   *
+   * @param theTrace The trace specified.
+   */
+  final void setTrace(final FetchTrace theTrace) {
+    this.trace = theTrace;
+  }
+
+  /**
+   * Specifies the circuit breaker which the outcome of this response is reported to when it
+   * is closed.
+   *
+   * @param breaker The circuit breaker whose permit this response holds.
+   * @param permit The permit of the circuit breaker.
+   * @param theStartNanos The value of {@link System#nanoTime()} when the call started.
+   */
+  final void setCircuitBreaker(final CircuitBreaker breaker, final long permit,
+      final long theStartNanos) {
+    this.circuitBreaker = breaker;
+    this.breakerPermit = permit;
+    this.breakerStartNanos = theStartNanos;
+  }
+
+  /**
+   * Closes the body stream and releases the connection. The connection is kept alive unless
+   * reading or closing the body failed.
+   *
+   * @throws IOException If IO errors occur when closing the body stream.
+   */
+  @Override
+  public final void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        inputStream.close();
+      } finally {
+        final boolean failed = inputStream.error != null;
+        connectionManager.release(conn, !failed);
+        if (circuitBreaker != null) {
+          circuitBreaker.complete(breakerPermit, breakerStartNanos, failed);
+        }
+        if (trace != null) {
+          trace.complete(wire.getCount(), inputStream.error);
+        }
+      }
+    }
+  }
+
+  /**
+   * Input stream which remembers the first IO error which occurred.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class TrackingInputStream extends FilterInputStream {
+
+    private IOException error;
+
+    /**
+     * Constructs a new {@link TrackingInputStream} instance.
+     *
+     * @param in The underlying input stream.
+     */
+    private TrackingInputStream(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (final IOException ex) {
+        fail(ex);
+        throw ex;
+      }
+    }
+
+    @Override
+    public int read(final byte[] buf, final int off, final int len) throws IOException {
+      try {
+        return super.read(buf, off, len);
+      } catch (final IOException ex) {
+        fail(ex);
+        throw ex;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } catch (final IOException ex) {
+        fail(ex);
+        throw ex;
+      }
+    }
+
+    /**
+     * Remembers an IO error unless one occurred before.
+     *
+     * @param ex The IO error specified.
+     */
+    private void fail(final IOException ex) {
+      if (error == null) {
+        error = ex;
+      }
+    }
+  }
+}
@@ -16,11 +16,20 @@
 
 package org.wisepersist.apuava.settings;
 
+import com.google.common.collect.ImmutableMap;
+
 import org.testng.annotations.Test;
 import org.wisepersist.apuava.settings.env.EnvType;
 import org.wisepersist.apuava.settings.env.EnvTypeImpl;
 
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Unit tests for {@link AbstractSettings} class.
@@ -30,8 +39,16 @@ import static org.testng.Assert.assertNotNull;
 @SuppressWarnings("AbstractClassName")
 public class AbstractSettingsTest {
 
+  private static final String PROPERTIES = "/test/test-settings.properties";
+  private static final int APP_INT = 123;
+  private static final double APP_DOUBLE = 10.1;
+  private static final int DEFAULT_INT = 7;
+  private static final double DEFAULT_DOUBLE = 0.5;
+  private static final int ENVIRONMENT_INT = 456;
+  private static final int SYSTEM_PROPERTY_INT = 789;
+
   /**
-   * Tests {@link AbstractSettings#initialize(String[])}.
+   * Tests {@link AbstractSettings#initialize()}.
    */
   @Test
   public final void testInitialize() {
@@ -52,7 +69,7 @@ public class AbstractSettingsTest {
   }
 
   /**
-   * Tests {@link AbstractSettings#initialize(String[])}.
+   * Tests {@link AbstractSettings#initialize()}.
    */
   @Test(expectedExceptions = IllegalStateException.class)
   public final void testInitialize_invalidXmlFormat() {
@@ -60,13 +77,230 @@ public class AbstractSettingsTest {
   }
 
   /**
-   * Tests {@link AbstractSettings#initialize(String[])}.
+   * Tests {@link AbstractSettings#initialize()}.
    */
   @Test(expectedExceptions = IllegalStateException.class)
   public final void testInitialize_invalidFile() {
     new FileBasedAppConfig("/test/unknownFile.txt");
   }
 
+  /**
+   * Tests that settings of later files override those of earlier files when the files are read
+   * in parallel.
+   */
+  @Test
+  public final void testInitialize_laterFilesOverrideEarlierFiles() {
+    // Given and When
+    final AbstractSettings settings = new FileBasedAppConfig("/test/layer-1.properties",
+        "/test/layer-2.properties", "/test/layer-3.properties", PROPERTIES);
+    final AbstractSettings reversed = new FileBasedAppConfig("/test/layer-3.properties",
+        "/test/layer-2.properties", "/test/layer-1.properties");
+
+    // Then
+    assertEquals(settings.getString("layer.first"), "1");
+    assertEquals(settings.getString("layer.second"), "2");
+    assertEquals(settings.getString("layer.third"), "3");
+    assertEquals(settings.getString("app.name"), "testapp");
+    assertEquals(reversed.getString("layer.second"), "1");
+    assertEquals(reversed.getString("layer.third"), "1");
+  }
+
+  /**
+   * Tests that lazy files are only read when one of their settings is first looked up.
+   */
+  @Test
+  public final void testAddLazyFile() {
+    // Given
+    final AbstractSettings settings = new LazyAppConfig("/test/lazy-settings.properties");
+
+    // When and Then
+    assertEquals(settings.getString("app.name"), "testapp");
+    assertEquals(settings.getString("lazy.name"), "lazy");
+    assertEquals(settings.getString("app.name"), "lazyapp");
+    assertEquals(settings.getInt("app.int"), Integer.valueOf(APP_INT));
+  }
+
+  /**
+   * Tests that lazy files which don't exist are reported when they are added.
+   */
+  @Test(expectedExceptions = IllegalStateException.class)
+  public final void testAddLazyFile_invalidFile() {
+    new LazyAppConfig("/test/unknownFile.properties");
+  }
+
+  /**
+   * Tests that lazy files which cannot be parsed are ignored when they are first looked up, and
+   * the getters return their defaults.
+   */
+  @Test
+  public final void testAddLazyFile_invalidFormat() {
+    // Given
+    final AbstractSettings settings = new LazyAppConfig("/test/test-settings-invalid.xml");
+
+    // When
+    final String lazyName = settings.getString("lazy.name", "default");
+
+    // Then
+    assertEquals(lazyName, "default");
+    assertEquals(settings.getString("app.name"), "testapp");
+  }
+
+  /**
+   * Tests that the typed getters return the parsed values, or the defaults if absent.
+   */
+  @Test
+  public final void testGetters() {
+    // Given
+    final AbstractSettings settings = new FileBasedAppConfig(PROPERTIES);
+
+    // When and Then
+    assertEquals(settings.getString("app.name"), "testapp");
+    assertEquals(settings.getInt("app.int"), Integer.valueOf(APP_INT));
+    assertEquals(settings.getDouble("app.double"), APP_DOUBLE);
+    assertTrue(settings.getBoolean("app.boolean"));
+    assertEquals(settings.getString("app.missing"), "");
+    assertEquals(settings.getString("app.missing", "default"), "default");
+    assertEquals(settings.getInt("app.name", DEFAULT_INT), Integer.valueOf(DEFAULT_INT));
+    assertEquals(settings.getDouble("app.missing", DEFAULT_DOUBLE), DEFAULT_DOUBLE);
+    assertFalse(settings.getBoolean("app.missing"));
+  }
+
+  /**
+   * Tests that system properties set when the settings are created override the settings.
+   */
+  @Test
+  public final void testGet_systemPropertyOverridesSettings() {
+    // Given
+    System.setProperty("app.name", " overridden ");
+    final AbstractSettings settings;
+    try {
+      settings = new FileBasedAppConfig(PROPERTIES);
+    } finally {
+      System.clearProperty("app.name");
+    }
+
+    // When and Then
+    assertEquals(settings.getString("app.name"), "overridden");
+    assertEquals(settings.getString("app.name", "default"), " overridden ");
+  }
+
+  /**
+   * Tests that environment variables with the prefix override the settings of the files, and
+   * system properties override both.
+   */
+  @Test
+  public final void testGet_environmentOverridesSettings() {
+    // Given
+    final Map<String, String> environment = ImmutableMap.of("TEST_APP_NAME", "environment",
+        "TEST_APP_INT", String.valueOf(ENVIRONMENT_INT), "TEST_APP_DOUBLE", " ",
+        "TEST_APP_OTHER", "other", "APP_BOOLEAN", "false");
+    System.setProperty("app.int", String.valueOf(SYSTEM_PROPERTY_INT));
+    final AbstractSettings settings;
+    try {
+      settings = new FileBasedAppConfig(environment, PROPERTIES);
+    } finally {
+      System.clearProperty("app.int");
+    }
+
+    // When and Then
+    assertEquals(settings.getString("app.name"), "environment");
+    assertEquals(settings.getInt("app.int"), Integer.valueOf(SYSTEM_PROPERTY_INT));
+    assertEquals(settings.getDouble("app.double"), APP_DOUBLE);
+    assertEquals(settings.getString("app.other"), "");
+    assertEquals(settings.getBoolean("app.boolean"), Boolean.TRUE);
+  }
+
+  /**
+   * Tests that lookups don't read system properties.
+   */
+  @Test
+  public final void testGet_lookupDoesNotReadSystemProperties() {
+    // Given
+    final AbstractSettings settings = new FileBasedAppConfig(PROPERTIES);
+    final Properties systemProperties = System.getProperties();
+    final CountingProperties countingProperties = new CountingProperties(systemProperties);
+
+    // When
+    System.setProperties(countingProperties);
+    try {
+      settings.getString("app.name");
+      settings.getString("app.missing", "default");
+      settings.getInt("app.int");
+      settings.getBoolean("app.boolean");
+    } finally {
+      System.setProperties(systemProperties);
+    }
+
+    // Then
+    assertEquals(countingProperties.reads.get(), 0);
+  }
+
+  /**
+   * Tests the names of the environment variables which override settings.
+   */
+  @Test
+  public final void testToEnvironmentName() {
+    assertEquals(AbstractSettings.toEnvironmentName("app.int"), "APP_INT");
+    assertEquals(AbstractSettings.toEnvironmentName("urlfetch.ratelimit.max-wait"),
+        "URLFETCH_RATELIMIT_MAX_WAIT");
+  }
+
+  /**
+   * Properties which count the properties read.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Constructs a new {@link CountingProperties} instance.
+     *
+     * @param defaults The properties whose values are read.
+     */
+    private CountingProperties(final Properties defaults) {
+      super(defaults);
+    }
+
+    @Override
+    public String getProperty(final String key) {
+      reads.incrementAndGet();
+      return super.getProperty(key);
+    }
+  }
+
+  /**
+   * Test impl class for {@link AbstractSettings} with a lazy file of the settings prefixed with
+   * {@code lazy.}.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class LazyAppConfig extends AbstractSettings {
+
+    /**
+     * Constructor for file base property with a lazy file.
+     *
+     * @param lazyFileName The name of the lazy file.
+     */
+    private LazyAppConfig(final String lazyFileName) {
+      super(PROPERTIES);
+      addLazyFile("lazy.", lazyFileName);
+    }
+
+    @Override
+    protected Class getClassType() {
+      return getClass();
+    }
+
+    @Override
+    protected String getAppConfigFolder() {
+      return "";
+    }
+  }
+
   /**
    * Test impl class for {@link AbstractSettings}.
    *
@@ -77,10 +311,20 @@ public class AbstractSettingsTest {
     /**
      * Constructor for file base property.
      *
+     * @param fileNames The names of files to be loaded.
+     */
+    private FileBasedAppConfig(final String... fileNames) {
+      super(fileNames);
+    }
+
+    /**
+     * Constructor for file base property with environment variables.
+     *
+     * @param environment The environment variables specified.
      * @param fileName The name of file to be loaded.
      */
-    private FileBasedAppConfig(final String fileName) {
-      super(fileName);
+    private FileBasedAppConfig(final Map<String, String> environment, final String fileName) {
+      super(environment, fileName);
     }
 
     /**
@@ -101,5 +345,10 @@ public class AbstractSettingsTest {
     protected String getAppConfigFolder() {
       return "";
     }
+
+    @Override
+    protected String getEnvironmentPrefix() {
+      return "TEST_";
+    }
   }
 }
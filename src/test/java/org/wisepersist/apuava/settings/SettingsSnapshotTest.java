@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SettingsSnapshot} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class SettingsSnapshotTest {
+
+  private static final int SETTINGS = 1000;
+
+  /**
+   * Tests that every setting of a large snapshot is found, and absent ones are not.
+   */
+  @Test
+  public final void testGet_shouldFindAllSettings() {
+    // Given
+    final Map<String, String> settings = new HashMap<>();
+    for (int i = 0; i < SETTINGS; i += 1) {
+      settings.put("key" + i, String.valueOf(i));
+    }
+
+    // When
+    final SettingsSnapshot snapshot = SettingsSnapshot.of(settings);
+
+    // Then
+    assertEquals(snapshot.size(), SETTINGS);
+    for (int i = 0; i < SETTINGS; i += 1) {
+      assertEquals(snapshot.getInt("key" + i), Integer.valueOf(i));
+    }
+    assertNull(snapshot.get("key" + SETTINGS));
+  }
+
+  /**
+   * Tests that keys with the same hash code are told apart.
+   */
+  @Test
+  public final void testGet_collidingKeys() {
+    // Given
+    final Map<String, String> settings = new HashMap<>();
+    settings.put("Aa", "first");
+    settings.put("BB", "second");
+
+    // When
+    final SettingsSnapshot snapshot = SettingsSnapshot.of(settings);
+
+    // Then
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertEquals(snapshot.get("Aa"), "first");
+    assertEquals(snapshot.get("BB"), "second");
+    assertNull(snapshot.get("C#"));
+  }
+
+  /**
+   * Tests that values are parsed to the types they can be read as.
+   */
+  @Test
+  public final void testGet_parsedValues() {
+    // Given
+    final Map<String, String> settings = new HashMap<>();
+    settings.put("number", " 42 ");
+    settings.put("flag", "yes");
+    settings.put("text", "1.5.0");
+
+    // When
+    final SettingsSnapshot snapshot = SettingsSnapshot.of(settings);
+
+    // Then
+    assertEquals(snapshot.get("number"), " 42 ");
+    assertEquals(snapshot.getTrimmed("number"), "42");
+    assertEquals(snapshot.getDouble("number"), Double.valueOf("42"));
+    assertTrue(snapshot.getBoolean("flag"));
+    assertFalse(snapshot.getBoolean("number"));
+    assertNull(snapshot.getInt("text"));
+    assertNull(snapshot.getDouble("text"));
+  }
+}
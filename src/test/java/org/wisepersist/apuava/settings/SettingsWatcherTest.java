@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit tests for {@link SettingsWatcher} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class SettingsWatcherTest {
+
+  private static final String PATH = "/test/reload-settings.properties";
+  private static final long DEBOUNCE_MILLIS = 300;
+  private static final long POLL_MILLIS = 20;
+  private static final long EDIT_INTERVAL_MILLIS = 50;
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+  private Path file;
+
+  /**
+   * Writes the settings file in the test resources folder.
+   *
+   * @throws IOException If IO errors occur.
+   * @throws URISyntaxException If the resources folder cannot be located.
+   */
+  @BeforeMethod
+  public final void setUp() throws IOException, URISyntaxException {
+    file = Paths.get(getClass().getResource("/test").toURI()).resolve("reload-settings.properties");
+    write("a=1\nb=2\n");
+    changes.clear();
+  }
+
+  /**
+   * Deletes the settings file.
+   *
+   * @throws IOException If IO errors occur.
+   */
+  @AfterMethod
+  public final void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Tests that watched files are reloaded and only changed settings are notified.
+   *
+   * @throws Exception If errors occur.
+   */
+  @Test
+  public final void testStart_watchedFileChanged() throws Exception {
+    // Given
+    final AbstractSettings settings = newSettings();
+    try (SettingsWatcher watcher = new SettingsWatcher(settings)
+        .setDebounceMillis(EDIT_INTERVAL_MILLIS).start()) {
+
+      // When
+      write("a=1\nb=3\nc=4\n");
+
+      // Then
+      assertEquals(takeChanges(2), ImmutableSet.of("b:2->3", "c:null->4"));
+      assertEquals(settings.getString("b"), "3");
+      assertEquals(settings.getString("c"), "4");
+      assertNull(changes.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+      assertEquals(watcher.getReloadCount(), 1L);
+    }
+  }
+
+  /**
+   * Tests that polled files are reloaded once after a burst of edits.
+   *
+   * @throws Exception If errors occur.
+   */
+  @Test
+  public final void testStart_polledFileEditedInBurst() throws Exception {
+    // Given
+    final AbstractSettings settings = newSettings();
+    try (SettingsWatcher watcher = new SettingsWatcher(settings).setWatchServiceEnabled(false)
+        .setPollMillis(POLL_MILLIS).setDebounceMillis(DEBOUNCE_MILLIS).start()) {
+
+      // When
+      write("a=1\nb=3\n");
+      Thread.sleep(EDIT_INTERVAL_MILLIS);
+      write("a=1\nb=4\n");
+      Thread.sleep(EDIT_INTERVAL_MILLIS);
+      write("a=1\nb=5\n");
+
+      // Then
+      assertEquals(takeChanges(1), ImmutableSet.of("b:2->5"));
+      assertEquals(settings.getString("b"), "5");
+      assertNull(changes.poll(DEBOUNCE_MILLIS * 2, TimeUnit.MILLISECONDS));
+      assertEquals(watcher.getReloadCount(), 1L);
+    }
+  }
+
+  /**
+   * Tests that the current settings are kept if a file cannot be read.
+   *
+   * @throws IOException If IO errors occur.
+   */
+  @Test
+  public final void testReload_fileDeleted() throws IOException {
+    // Given
+    final AbstractSettings settings = newSettings();
+    Files.delete(file);
+
+    // When
+    try {
+      settings.reload();
+    } catch (final IllegalStateException expected) {
+      // The current settings are kept
+    }
+
+    // Then
+    assertEquals(settings.getString("b"), "2");
+  }
+
+  /**
+   * Tests that listeners are notified after the reload lock is released, so a listener may wait
+   * for another thread which reloads the settings.
+   *
+   * @throws Exception If errors occur.
+   */
+  @Test
+  public final void testReload_listenerWaitsForOtherReload() throws Exception {
+    // Given
+    final AbstractSettings settings = newSettings();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    settings.addListener(new SettingsListener() {
+      @Override
+      public void onChange(final String name, final String oldValue, final String newValue) {
+        changes.add("reloaded:" + reloadInOtherThread(settings, executor));
+      }
+    });
+    write("a=1\nb=3\n");
+
+    // When
+    settings.reload();
+    executor.shutdown();
+
+    // Then
+    assertEquals(takeChanges(2), ImmutableSet.of("b:2->3", "reloaded:true"));
+  }
+
+  /**
+   * Reloads the settings in the thread of the executor specified and waits for it.
+   *
+   * @param settings The settings to reload.
+   * @param executor The executor to reload the settings in.
+   * @return True if the settings were reloaded in time.
+   */
+  private static boolean reloadInOtherThread(final AbstractSettings settings,
+      final ExecutorService executor) {
+    final Future<?> reload = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        settings.reload();
+      }
+    });
+    boolean reloaded = false;
+    try {
+      reload.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      reloaded = true;
+    } catch (final InterruptedException | ExecutionException | TimeoutException expected) {
+      reload.cancel(true);
+    }
+    return reloaded;
+  }
+
+  /**
+   * Creates settings of the settings file which record the settings changed.
+   *
+   * @return The settings created.
+   */
+  private AbstractSettings newSettings() {
+    final AbstractSettings settings = new FileBasedSettings(PATH);
+    settings.addListener(new SettingsListener() {
+      @Override
+      public void onChange(final String name, final String oldValue, final String newValue) {
+        changes.add(name + ":" + oldValue + "->" + newValue);
+      }
+    });
+    return settings;
+  }
+
+  /**
+   * Takes the settings changed, waiting for them to be notified.
+   *
+   * @param count The number of changes to take.
+   * @return The changes taken.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  private Set<String> takeChanges(final int count) throws InterruptedException {
+    final Set<String> taken = new HashSet<>();
+    for (int i = 0; i < count; i += 1) {
+      taken.add(changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+    return taken;
+  }
+
+  /**
+   * Writes the settings file.
+   *
+   * @param content The content of the settings file.
+   * @throws IOException If IO errors occur.
+   */
+  private void write(final String content) throws IOException {
+    Files.write(file, content.getBytes(Charsets.UTF_8));
+  }
+
+  /**
+   * Test impl class for {@link AbstractSettings}.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileBasedSettings extends AbstractSettings {
+
+    /**
+     * Constructor for file base property.
+     *
+     * @param fileName The name of file to be loaded.
+     */
+    private FileBasedSettings(final String fileName) {
+      super(fileName);
+    }
+
+    @Override
+    protected Class getClassType() {
+      return getClass();
+    }
+
+    @Override
+    protected String getAppConfigFolder() {
+      return "";
+    }
+  }
+}
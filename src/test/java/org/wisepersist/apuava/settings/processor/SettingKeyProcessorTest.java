@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings.processor;
+
+import org.testng.annotations.Test;
+import org.wisepersist.apuava.settings.AbstractSettings;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Unit tests for {@link SettingKeyProcessor} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class SettingKeyProcessorTest {
+
+  private static final int APP_INT = 123;
+  private static final double APP_DOUBLE = 10.1;
+  private static final long APP_TIMEOUT = 30000L;
+  private static final int INVALID_METHODS = 3;
+
+  /**
+   * Tests that the generated implementation reads the settings and the default values.
+   */
+  @Test
+  public final void testProcess_generatedImplementation() {
+    // Given
+    final FileBasedSettings settings = new FileBasedSettings("/test/test-settings.properties");
+
+    // When
+    final TestTypedSettings typedSettings = new TestTypedSettingsImpl(settings);
+
+    // Then
+    assertEquals(typedSettings.appName(), "testapp");
+    assertEquals(typedSettings.appInt(), APP_INT);
+    assertEquals(typedSettings.appDouble(), APP_DOUBLE);
+    assertTrue(typedSettings.appBoolean());
+    assertEquals(typedSettings.appTimeout(), APP_TIMEOUT);
+  }
+
+  /**
+   * Tests that all missing settings are reported when the implementation is created.
+   */
+  @Test
+  public final void testProcess_missingSettings() {
+    // Given
+    final FileBasedSettings settings = new FileBasedSettings("/test/freemarker_test.html");
+
+    try {
+      // When
+      new TestTypedSettingsImpl(settings);
+      fail("Missing settings should be reported");
+    } catch (final IllegalStateException ex) {
+      // Then
+      assertTrue(ex.getMessage().contains("app.name is missing, app.int is missing"));
+      assertFalse(ex.getMessage().contains("app.timeout"));
+    }
+  }
+
+  /**
+   * Tests that interfaces which cannot be implemented are reported as compilation errors.
+   *
+   * @throws IOException If IO errors occur.
+   */
+  @Test
+  public final void testProcess_invalidInterface() throws IOException {
+    // Given
+    final String source = "public interface InvalidSettings {\n"
+        + "  @org.wisepersist.apuava.settings.SettingKey(\"a\") java.util.Date date();\n"
+        + "  @org.wisepersist.apuava.settings.SettingKey(value = \"b\", defaultValue = \"x\")"
+        + " int number();\n"
+        + "  String unannotated();\n"
+        + "}\n";
+
+    // When
+    final List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(source);
+
+    // Then
+    assertEquals(diagnostics.size(), INVALID_METHODS, diagnostics.toString());
+    assertTrue(diagnostics.toString().contains("must return String, int, long, double"));
+    assertTrue(diagnostics.toString().contains("Default value 'x' of b is not a valid int"));
+    assertTrue(diagnostics.toString().contains("must be annotated with @SettingKey"));
+  }
+
+  /**
+   * Runs the processor on a settings interface.
+   *
+   * @param source The source of the settings interface.
+   * @return The diagnostics reported.
+   * @throws IOException If IO errors occur.
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(final String source)
+      throws IOException {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final Path output = Files.createTempDirectory("apuava-processor");
+    output.toFile().deleteOnExit();
+    final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+        Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path"),
+            "-s", output.toString(), "-d", output.toString()),
+        null, Collections.singletonList(new StringSource(source)));
+    task.setProcessors(Collections.singletonList(new SettingKeyProcessor()));
+    task.call();
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Source of a compilation unit in memory.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class StringSource extends SimpleJavaFileObject {
+
+    private final String source;
+
+    /**
+     * Constructs a new {@link StringSource} instance of the InvalidSettings interface.
+     *
+     * @param source The source specified.
+     */
+    private StringSource(final String source) {
+      super(URI.create("string:///InvalidSettings" + Kind.SOURCE.extension), Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+
+  /**
+   * Test impl class for {@link AbstractSettings}.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileBasedSettings extends AbstractSettings {
+
+    /**
+     * Constructor for file base property.
+     *
+     * @param fileName The name of file to be loaded.
+     */
+    private FileBasedSettings(final String fileName) {
+      super(fileName);
+    }
+
+    @Override
+    protected Class getClassType() {
+      return getClass();
+    }
+
+    @Override
+    protected String getAppConfigFolder() {
+      return "";
+    }
+  }
+}
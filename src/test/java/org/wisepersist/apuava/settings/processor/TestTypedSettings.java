@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.settings.processor;
+
+import org.wisepersist.apuava.settings.SettingKey;
+
+/**
+ * Settings interface of the test settings, implemented by the generated
+ * {@code TestTypedSettingsImpl} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public interface TestTypedSettings {
+
+  /**
+   * Gets the application name.
+   *
+   * @return The application name.
+   */
+  @SettingKey("app.name")
+  String appName();
+
+  /**
+   * Gets the integer setting.
+   *
+   * @return The integer setting.
+   */
+  @SettingKey("app.int")
+  int appInt();
+
+  /**
+   * Gets the double setting.
+   *
+   * @return The double setting.
+   */
+  @SettingKey("app.double")
+  double appDouble();
+
+  /**
+   * Gets the boolean setting.
+   *
+   * @return The boolean setting.
+   */
+  @SettingKey("app.boolean")
+  boolean appBoolean();
+
+  /**
+   * Gets the timeout, which isn't in the settings files.
+   *
+   * @return The timeout in milliseconds.
+   */
+  @SettingKey(value = "app.timeout", defaultValue = "30000")
+  long appTimeout();
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BatchFetcher} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class BatchFetcherTest extends AbstractHttpServerSupport {
+
+  private static final int BATCH_SIZE = 20;
+  private static final int MAX_CONCURRENCY = 3;
+  private static final String[] HOSTS = {"127.0.0.1", "localhost"};
+
+  /**
+   * Tests {@link BatchFetcher#fetch(java.util.Collection)} method, which should deliver the
+   * results of all requests across routes.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetch_shouldDeliverAllResults() throws Exception {
+    // Given
+    final List<UrlFetcher> fetchers = newFetchers(HOSTS);
+
+    // When
+    final BatchResults results = new BatchFetcher().setMaxConcurrency(MAX_CONCURRENCY)
+        .setMaxPerRoute(2).fetch(fetchers);
+
+    // Then
+    int count = 0;
+    for (final BatchResult result : results) {
+      assertTrue(result.isSuccess());
+      assertEquals(result.getResponse().getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+      count += 1;
+    }
+    assertEquals(count, BATCH_SIZE);
+  }
+
+  /**
+   * Tests {@link BatchFetcher#fetch(java.util.Collection)} method, which should deliver the
+   * error of a request with a malformed URL.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetch_shouldDeliverErrorOfMalformedUrl() throws Exception {
+    // Given
+    final UrlFetcher fetcher = new UrlFetcher().setUrl("not a url");
+
+    // When
+    final BatchResult result = new BatchFetcher().fetch(Lists.newArrayList(fetcher)).iterator()
+        .next();
+
+    // Then
+    assertFalse(result.isSuccess());
+    assertEquals(result.getFetcher(), fetcher);
+  }
+
+  /**
+   * Tests {@link BatchFetcher#fetch(java.util.Collection)} method, which should start no more
+   * requests than the total and per route limits allow.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetch_shouldBoundRequestsInFlight() throws Exception {
+    // Given
+    final List<Runnable> started = Lists.newArrayList();
+    final BatchFetcher batchFetcher = new BatchFetcher().setMaxConcurrency(MAX_CONCURRENCY)
+        .setMaxPerRoute(2).setExecutor(new Executor() {
+          @Override
+          public void execute(final Runnable command) {
+            started.add(command);
+          }
+        });
+
+    // When
+    batchFetcher.fetch(newFetchers(HOSTS[0]));
+
+    // Then
+    assertEquals(started.size(), 2);
+  }
+
+  /**
+   * Tests {@link BatchFetcher#fetch(java.util.Collection)} method, which should start the
+   * requests run inline by a direct executor from the same stack depth rather than recursively
+   * from the completion of the previous ones.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetch_shouldNotRecurseWithDirectExecutor() throws Exception {
+    // Given
+    final List<Integer> depths = Lists.newArrayList();
+    final BatchFetcher batchFetcher = new BatchFetcher().setMaxConcurrency(1)
+        .setExecutor(newDirectExecutor(depths));
+
+    // When
+    final BatchResults results = batchFetcher.fetch(newFetchers(HOSTS));
+
+    // Then
+    for (final BatchResult result : results) {
+      assertTrue(result.isSuccess());
+    }
+    assertEquals(depths.size(), BATCH_SIZE);
+    assertEquals(ImmutableSet.copyOf(depths).size(), 1);
+  }
+
+  /**
+   * Tests {@link BatchFetcher#fetch(java.util.Collection)} method, which should deliver the
+   * rejection of each request the executor rejects.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetch_shouldDeliverRejections() throws Exception {
+    // Given
+    final BatchFetcher batchFetcher = new BatchFetcher().setExecutor(new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        throw new RejectedExecutionException("Executor is full");
+      }
+    });
+
+    // When
+    final BatchResults results = batchFetcher.fetch(newFetchers(HOSTS));
+
+    // Then
+    int count = 0;
+    for (final BatchResult result : results) {
+      assertTrue(result.getError() instanceof RejectedExecutionException);
+      count += 1;
+    }
+    assertEquals(count, BATCH_SIZE);
+  }
+
+  /**
+   * Creates an executor which runs tasks in the calling thread and records the stack depth they
+   * are started from.
+   *
+   * @param depths The stack depths recorded.
+   * @return The executor created.
+   */
+  private static Executor newDirectExecutor(final List<Integer> depths) {
+    return new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        depths.add(Thread.currentThread().getStackTrace().length);
+        command.run();
+      }
+    };
+  }
+
+  /**
+   * Creates {@link #BATCH_SIZE} URL fetchers of the GET test servlet spread across hosts.
+   *
+   * @param hosts The hosts specified.
+   * @return The URL fetchers created.
+   */
+  private List<UrlFetcher> newFetchers(final String... hosts) {
+    final List<UrlFetcher> fetchers = Lists.newArrayList();
+    for (int i = 0; i < BATCH_SIZE; i += 1) {
+      final String host = hosts[i % hosts.length];
+      fetchers.add(new UrlFetcher().setUrl("http://" + host + ":15100/testget"));
+    }
+    return fetchers;
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
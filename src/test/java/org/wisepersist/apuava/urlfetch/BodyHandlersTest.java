@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.io.CharStreams;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link BodyHandler} and {@link BodyHandlers} classes.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class BodyHandlersTest extends AbstractHttpServerSupport {
+
+  private static final String TEXT = "Grüße, café";
+
+  /**
+   * Tests {@link UrlFetcher#execute(BodyHandler)} method with a custom handler, which should
+   * decode the body straight from the response stream.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldDecodeWithCustomHandler() throws Exception {
+    // Given
+    final UrlFetcher fetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .addParam("a", "1").addParam("b", "2");
+    final BodyHandler<Map<String, String>> asMap = new BodyHandler<Map<String, String>>() {
+      @Override
+      public Map<String, String> handle(final UrlStreamResponse response) throws IOException {
+        final String body = CharStreams.toString(
+            new InputStreamReader(response.getInputStream(), Charsets.UTF_8));
+        return Splitter.on('&').withKeyValueSeparator('=').split(body);
+      }
+    };
+
+    // When
+    final Map<String, String> result = fetcher.execute(asMap);
+
+    // Then
+    assertEquals(result.get("a"), "1");
+    assertEquals(result.get("b"), "2");
+  }
+
+  /**
+   * Tests {@link BodyHandlers#ofString()} method, which should decode the body with the charset
+   * of the Content-Type header.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOfString_shouldUseCharsetOfContentType() throws Exception {
+    // Given
+    final UrlFetcher fetcher = newPostFetcher("text/plain; charset=ISO-8859-1",
+        TEXT.getBytes(Charsets.ISO_8859_1));
+
+    // When
+    final String result = fetcher.execute(BodyHandlers.ofString());
+
+    // Then
+    assertEquals(result, TEXT);
+  }
+
+  /**
+   * Tests {@link BodyHandlers#ofFile(Path)} method, which should write the body to the file.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOfFile_shouldWriteBodyToFile() throws Exception {
+    // Given
+    final byte[] bytes = TEXT.getBytes(Charsets.UTF_8);
+    final UrlFetcher fetcher = newPostFetcher("application/octet-stream", bytes);
+    final Path directory = Files.createTempDirectory("body");
+    final Path file = Files.write(directory.resolve("body.bin"), new byte[1]);
+
+    // When
+    final Path result = fetcher.executeAsync(BodyHandlers.ofFile(file)).get();
+
+    // Then
+    assertEquals(result, file);
+    assertEquals(Files.readAllBytes(file), bytes);
+    assertEquals(directory.toFile().list(), new String[] {"body.bin"});
+    Files.delete(file);
+    Files.delete(directory);
+  }
+
+  /**
+   * Creates a URL fetcher which posts a body to the echo servlet.
+   *
+   * @param contentType The content type of the body.
+   * @param bytes The body bytes.
+   * @return The URL fetcher created.
+   */
+  private UrlFetcher newPostFetcher(final String contentType, final byte[] bytes) {
+    return new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.POST).addHeader("Content-Type", contentType)
+        .setBody(RequestBodies.of(bytes));
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link CachingHostResolver} and {@link ResolvingConnectionFactory} classes.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CachingHostResolverTest extends AbstractHttpServerSupport {
+
+  private static final String HOST = "apuava.invalid";
+  private static final long TTL = 200L;
+  private static final long REFRESH_AGE = 170L;
+  private static final long EXPIRED_AGE = 220L;
+
+  private InetAddress first;
+  private InetAddress second;
+  private CountingResolver delegate;
+
+  /**
+   * Initialises before method.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @BeforeMethod
+  public final void setUp() throws Exception {
+    first = InetAddress.getByName("10.0.0.1");
+    second = InetAddress.getByName("10.0.0.2");
+    delegate = new CountingResolver(first, second);
+  }
+
+  /**
+   * Tests that addresses are resolved once and returned round-robin.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testResolve_shouldCacheAndRotateAddresses() throws Exception {
+    // Given
+    final CachingHostResolver resolver = newResolver();
+
+    // When
+    final InetAddress[] addresses1 = resolver.resolve(HOST);
+    final InetAddress[] addresses2 = resolver.resolve(HOST);
+
+    // Then
+    assertEquals(delegate.count, 1);
+    assertEquals(addresses1, new InetAddress[] {first, second});
+    assertEquals(addresses2, new InetAddress[] {second, first});
+  }
+
+  /**
+   * Tests that addresses keep their order when round-robin is disabled.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testResolve_withoutRoundRobin() throws Exception {
+    // Given
+    final CachingHostResolver resolver = newResolver().setRoundRobin(false);
+
+    // When
+    resolver.resolve(HOST);
+    final InetAddress[] addresses = resolver.resolve(HOST);
+
+    // Then
+    assertEquals(addresses, new InetAddress[] {first, second});
+  }
+
+  /**
+   * Tests that addresses used near the end of their time to live are refreshed in the
+   * background while the cached ones are returned.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testResolve_shouldRefreshAhead() throws Exception {
+    // Given
+    final CachingHostResolver resolver = newResolver();
+    resolver.resolve(HOST);
+    Thread.sleep(REFRESH_AGE);
+    delegate.addresses = new InetAddress[] {second};
+
+    // When
+    final InetAddress[] cached = resolver.resolve(HOST);
+    final InetAddress[] refreshed = resolver.resolve(HOST);
+
+    // Then
+    assertEquals(delegate.count, 2);
+    assertEquals(cached.length, 2);
+    assertEquals(refreshed, new InetAddress[] {second});
+  }
+
+  /**
+   * Tests that expired addresses are used if resolving fails.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testResolve_shouldUseExpiredAddressesOnFailure() throws Exception {
+    // Given
+    final CachingHostResolver resolver = newResolver().setRoundRobin(false);
+    resolver.resolve(HOST);
+    Thread.sleep(EXPIRED_AGE);
+    delegate.addresses = null;
+
+    // When
+    final InetAddress[] addresses = resolver.resolve(HOST);
+
+    // Then
+    assertEquals(delegate.count, 2);
+    assertEquals(addresses, new InetAddress[] {first, second});
+  }
+
+  /**
+   * Tests that unknown hosts fail.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = UnknownHostException.class)
+  public final void testResolve_unknownHost() throws Exception {
+    delegate.addresses = null;
+    newResolver().resolve(HOST);
+  }
+
+  /**
+   * Tests that the host is resolved with the resolver before the connection is opened.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOpen_shouldResolveHostBeforeConnecting() throws Exception {
+    // Given
+    delegate.addresses = new InetAddress[] {InetAddress.getByName("127.0.0.1")};
+    final ConnectionManager connectionManager = new LimitingConnectionManager()
+        .setConnectionFactory(new ResolvingConnectionFactory(newResolver()));
+    final UrlFetcher urlFetcher = new UrlFetcher().setConnectionManager(connectionManager)
+        .setUrl(getBaseUrl() + "/testget");
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(delegate.count, 1);
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+
+  /**
+   * Creates a resolver of the test addresses which refreshes on the calling thread.
+   *
+   * @return The resolver created.
+   */
+  private CachingHostResolver newResolver() {
+    return new CachingHostResolver(delegate, TTL, TimeUnit.MILLISECONDS)
+        .setRefreshExecutor(MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Resolver which counts the hosts resolved, and fails if it has no addresses.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingResolver implements HostResolver {
+
+    private InetAddress[] addresses;
+    private int count;
+
+    /**
+     * Constructs a new {@link CountingResolver} instance.
+     *
+     * @param addresses The addresses resolved.
+     */
+    private CountingResolver(final InetAddress... addresses) {
+      this.addresses = addresses;
+    }
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+      count += 1;
+      if (addresses == null) {
+        throw new UnknownHostException(host);
+      }
+      return addresses;
+    }
+  }
+}
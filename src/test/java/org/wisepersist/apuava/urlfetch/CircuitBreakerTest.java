@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.Lists;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link CircuitBreaker} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class CircuitBreakerTest extends AbstractHttpServerSupport {
+
+  private static final long OPEN_DURATION = 50L;
+
+  /**
+   * Tests that a circuit opens when the failure rate is reached, and closes after a
+   * successful probe once the open duration has elapsed.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testComplete_shouldOpenAndCloseCircuit() throws Exception {
+    // Given
+    final List<CircuitState> states = Lists.newArrayList();
+    final CircuitBreaker breaker = new CircuitBreakers().setWindow(2, 2)
+        .setOpenDuration(OPEN_DURATION).setHalfOpenCalls(1).addListener(newListener(states))
+        .getCircuitBreaker(new URL(getBaseUrl()));
+
+    // When
+    fail(breaker);
+    fail(breaker);
+    Thread.sleep(OPEN_DURATION);
+    breaker.complete(breaker.acquire(), System.nanoTime(), false);
+
+    // Then
+    assertEquals(states, Lists.newArrayList(CircuitState.OPEN, CircuitState.HALF_OPEN,
+        CircuitState.CLOSED));
+  }
+
+  /**
+   * Tests that listeners are notified after the lock of the circuit breaker is released, so
+   * that they can read the circuit breaker from other threads.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testComplete_shouldNotifyListenersOutsideLock() throws Exception {
+    // Given
+    final List<Boolean> unlocked = Lists.newArrayList();
+    final CircuitBreaker breaker = new CircuitBreakers().setWindow(1, 1)
+        .addListener(newUnlockedListener(unlocked)).getCircuitBreaker(new URL(getBaseUrl()));
+
+    // When
+    fail(breaker);
+
+    // Then
+    assertEquals(unlocked, Lists.newArrayList(true));
+  }
+
+  /**
+   * Tests that a call acquired before the circuit opened isn't counted as a probe of the half
+   * open circuit when it completes.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testComplete_shouldIgnoreCallsOfPreviousState() throws Exception {
+    // Given
+    final CircuitBreaker breaker = new CircuitBreakers().setWindow(1, 1)
+        .setOpenDuration(OPEN_DURATION).setHalfOpenCalls(1)
+        .getCircuitBreaker(new URL(getBaseUrl()));
+    final long stalePermit = breaker.acquire();
+    fail(breaker);
+    Thread.sleep(OPEN_DURATION);
+    breaker.acquire();
+
+    // When
+    breaker.complete(stalePermit, System.nanoTime(), false);
+
+    // Then
+    assertEquals(breaker.getState(), CircuitState.HALF_OPEN);
+  }
+
+  /**
+   * Tests that a listener which throws neither fails the call nor keeps the other listeners
+   * from being notified.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testComplete_shouldIgnoreListenerErrors() throws Exception {
+    // Given
+    final List<CircuitState> states = Lists.newArrayList();
+    final CircuitBreaker breaker = new CircuitBreakers().setWindow(1, 1)
+        .addListener(newFailingListener()).addListener(newListener(states))
+        .getCircuitBreaker(new URL(getBaseUrl()));
+
+    // When
+    fail(breaker);
+
+    // Then
+    assertEquals(states, Lists.newArrayList(CircuitState.OPEN));
+  }
+
+  /**
+   * Tests that calls are rejected while the circuit is open.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = CallNotPermittedException.class)
+  public final void testAcquire_shouldRejectWhenOpen() throws Exception {
+    // Given
+    final CircuitBreaker breaker = new CircuitBreakers().setWindow(1, 1)
+        .getCircuitBreaker(new URL(getBaseUrl()));
+    fail(breaker);
+
+    // When and Then
+    breaker.acquire();
+  }
+
+  /**
+   * Tests that calls beyond the bulkhead limit are rejected.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = CallNotPermittedException.class)
+  public final void testAcquire_shouldRejectWhenBulkheadFull() throws Exception {
+    // Given
+    final CircuitBreaker breaker = new CircuitBreakers().setMaxConcurrentCalls(1)
+        .getCircuitBreaker(new URL(getBaseUrl()));
+    breaker.acquire();
+
+    // When and Then
+    breaker.acquire();
+  }
+
+  /**
+   * Tests that a URL fetcher fails fast once the circuit of a failing host is open.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = CallNotPermittedException.class)
+  public final void testExecute_shouldFailFastWhenOpen() throws Exception {
+    // Given
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testflaky")
+        .addParam("id", "circuit").addParam("fail", "100")
+        .setCircuitBreakers(new CircuitBreakers().setWindow(1, 1));
+    try {
+      urlFetcher.execute();
+    } catch (final HttpStatusException ex) {
+      assertEquals(TestFlakyServlet.getRequests("circuit"), 1);
+    }
+
+    // When and Then
+    urlFetcher.execute();
+  }
+
+  /**
+   * Records a failed call.
+   *
+   * @param breaker The circuit breaker specified.
+   * @throws CallNotPermittedException If the call isn't permitted.
+   */
+  private static void fail(final CircuitBreaker breaker) throws CallNotPermittedException {
+    breaker.complete(breaker.acquire(), System.nanoTime(), true);
+  }
+
+  /**
+   * Creates a listener which records the new states.
+   *
+   * @param states The list which new states are added to.
+   * @return The listener created.
+   */
+  private static CircuitBreakerListener newListener(final List<CircuitState> states) {
+    return new CircuitBreakerListener() {
+      @Override
+      public void onStateChange(final CircuitBreaker breaker, final CircuitState from,
+          final CircuitState to) {
+        states.add(to);
+      }
+    };
+  }
+
+  /**
+   * Creates a listener which fails on each state change.
+   *
+   * @return The listener created.
+   */
+  private static CircuitBreakerListener newFailingListener() {
+    return new CircuitBreakerListener() {
+      @Override
+      public void onStateChange(final CircuitBreaker breaker, final CircuitState from,
+          final CircuitState to) {
+        throw new IllegalStateException("Listener failed on " + to);
+      }
+    };
+  }
+
+  /**
+   * Creates a listener which records whether another thread can read the failure rate of the
+   * circuit breaker during the notification.
+   *
+   * @param unlocked The list which the results are added to.
+   * @return The listener created.
+   */
+  private static CircuitBreakerListener newUnlockedListener(final List<Boolean> unlocked) {
+    return new CircuitBreakerListener() {
+      @Override
+      public void onStateChange(final CircuitBreaker breaker, final CircuitState from,
+          final CircuitState to) {
+        unlocked.add(canReadFromOtherThread(breaker));
+      }
+    };
+  }
+
+  /**
+   * Checks whether another thread can read the failure rate of a circuit breaker within a
+   * second.
+   *
+   * @param breaker The circuit breaker specified.
+   * @return True if the failure rate is read.
+   */
+  private static boolean canReadFromOtherThread(final CircuitBreaker breaker) {
+    final Future<Double> rate = FetchExecutors.defaultExecutor().submit(new Callable<Double>() {
+      @Override
+      public Double call() {
+        return breaker.getFailureRate();
+      }
+    });
+    boolean read = false;
+    try {
+      rate.get(1, TimeUnit.SECONDS);
+      read = true;
+    } catch (final InterruptedException | ExecutionException | TimeoutException ex) {
+      read = false;
+    }
+    return read;
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
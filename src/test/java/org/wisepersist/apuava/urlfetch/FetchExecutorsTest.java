@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link FetchExecutors} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class FetchExecutorsTest {
+
+  /**
+   * Tests {@link FetchExecutors#virtualThreadExecutor()} method, which should run tasks in
+   * virtual threads only if the runtime supports them.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testVirtualThreadExecutor_shouldRunTasks() throws Exception {
+    // Given
+    final boolean expected = hasMethod(Thread.class, "isVirtual");
+
+    // When
+    final boolean virtual = FetchExecutors.virtualThreadExecutor().submit(
+        new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return expected && (Boolean) Thread.class.getMethod("isVirtual")
+                .invoke(Thread.currentThread());
+          }
+        }).get();
+
+    // Then
+    assertEquals(FetchExecutors.isVirtualThreadAvailable(), expected);
+    assertEquals(virtual, expected);
+  }
+
+  /**
+   * Tests that the shared executors reject tasks once their threads are busy and their queue is
+   * full, instead of creating more threads.
+   */
+  @Test(expectedExceptions = RejectedExecutionException.class)
+  public final void testAttemptExecutor_shouldBeBounded() {
+    // Given
+    final ListeningExecutorService executor = FetchExecutors.attemptExecutor();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Runnable blocked = new Runnable() {
+      @Override
+      public void run() {
+        Uninterruptibles.awaitUninterruptibly(release);
+      }
+    };
+    try {
+      saturate(executor, blocked);
+
+      // When and Then
+      executor.execute(blocked);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /**
+   * Occupies all threads and the whole queue of a shared executor.
+   *
+   * @param executor The executor specified.
+   * @param blocked The task which blocks its thread.
+   */
+  private static void saturate(final ListeningExecutorService executor, final Runnable blocked) {
+    for (int i = 0; i < FetchExecutors.MAX_THREADS + FetchExecutors.MAX_QUEUED_TASKS; i += 1) {
+      executor.execute(blocked);
+    }
+  }
+
+  /**
+   * Checks whether a class has a public method without parameters.
+   *
+   * @param type The class specified.
+   * @param name The method name.
+   * @return True if the method exists.
+   */
+  private static boolean hasMethod(final Class<?> type, final String name) {
+    boolean result = true;
+    try {
+      type.getMethod(name);
+    } catch (final NoSuchMethodException ex) {
+      result = false;
+    }
+    return result;
+  }
+}
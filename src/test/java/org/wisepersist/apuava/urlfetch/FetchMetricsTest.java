@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Unit tests for {@link FetchEventListener}, {@link FetchTrace} and {@link FetchMetrics}
+ * classes.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class FetchMetricsTest extends AbstractHttpServerSupport {
+
+  private static final String BODY = "a=1&b=2";
+  private static final double MEDIAN = 50.0;
+  private static final List<FetchPhase> POST_PHASES = ImmutableList.copyOf(FetchPhase.values())
+      .subList(FetchPhase.CONNECT_START.ordinal(), FetchPhase.CALL_FAILED.ordinal());
+  private static final List<FetchPhase> GET_PHASES = ImmutableList.of(FetchPhase.CALL_START,
+      FetchPhase.CONNECT_START, FetchPhase.CONNECT_END, FetchPhase.RESPONSE_HEADERS_END,
+      FetchPhase.RESPONSE_BODY_END, FetchPhase.CALL_END);
+
+  /**
+   * Tests {@link UrlFetcher#setEventListener(FetchEventListener)} method, which should report
+   * the phases of an exchange in order with the bytes transferred.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testSetEventListener_shouldReportPhasesInOrder() throws Exception {
+    // Given
+    final RecordingListener listener = new RecordingListener();
+    final UrlFetcher fetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.POST).addParam("a", "1").addParam("b", "2")
+        .setEventListener(listener);
+
+    // When
+    fetcher.execute();
+
+    // Then
+    assertEquals(listener.phases.get(0), FetchPhase.CALL_START);
+    assertEquals(listener.phases.subList(1, listener.phases.size()), POST_PHASES);
+    final FetchTrace trace = listener.traces.get(0);
+    assertEquals(trace.getStatusCode(), HttpURLConnection.HTTP_OK);
+    assertEquals(trace.getRequestBytes(), BODY.length());
+    assertEquals(trace.getResponseBytes(), BODY.length());
+    assertTrue(trace.getDuration(FetchPhase.CALL_START, FetchPhase.CALL_END,
+        TimeUnit.NANOSECONDS) >= 0);
+  }
+
+  /**
+   * Tests that the JDK resolving the host isn't reported as a separate phase, and that errors
+   * of the listener don't fail the exchange.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testSetEventListener_shouldIgnoreListenerErrors() throws Exception {
+    // Given
+    final RecordingListener listener = new RecordingListener();
+    listener.failing = true;
+
+    // When
+    final UrlResponse response = new UrlFetcher().setUrl(getBaseUrl() + "/testget")
+        .setEventListener(listener).execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(listener.phases, GET_PHASES);
+  }
+
+  /**
+   * Tests that resolving the host by a {@link HostResolver} is reported as a separate phase.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testSetEventListener_shouldReportResolvingByHostResolver() throws Exception {
+    // Given
+    final RecordingListener listener = new RecordingListener();
+    final ConnectionManager connectionManager = new LimitingConnectionManager()
+        .setConnectionFactory(new ResolvingConnectionFactory(new SystemHostResolver()));
+
+    // When
+    new UrlFetcher().setUrl(getBaseUrl() + "/testget").setConnectionManager(connectionManager)
+        .setEventListener(listener).execute();
+
+    // Then
+    assertEquals(listener.phases.subList(0, FetchPhase.CONNECT_START.ordinal()),
+        ImmutableList.of(FetchPhase.CALL_START, FetchPhase.DNS_START, FetchPhase.DNS_END));
+    assertEquals(listener.phases.size(), GET_PHASES.size() + 2);
+  }
+
+  /**
+   * Tests {@link FetchMetrics} class, which should record latencies, bytes and failures per
+   * route.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testFetchMetrics_shouldRecordPerRoute() throws Exception {
+    // Given
+    final FetchMetrics metrics = new FetchMetrics();
+
+    // When
+    new UrlFetcher().setUrl(getBaseUrl() + "/testecho").addParam("a", "1")
+        .setEventListener(metrics).execute();
+    executeNotFound(metrics);
+
+    // Then
+    assertEquals(metrics.getHostMetrics().size(), 1);
+    final HostMetrics host = metrics.getHostMetrics().iterator().next();
+    assertEquals(host.getCalls(), 2);
+    assertEquals(host.getFailures(), 1);
+    assertEquals(host.getResponseBytes(), "a=1".length());
+    assertEquals(host.getTotalTime().getCount(), 2);
+    assertEquals(host.getTimeToFirstByte().getCount(), 2);
+    assertEquals(host.getConnectTime().getCount(), 2);
+    assertTrue(host.getTotalTime().getValueAtPercentile(MEDIAN) > 0);
+  }
+
+  /**
+   * Executes a request of a missing page, which should fail with status 404.
+   *
+   * @param metrics The metrics recorder of the request.
+   */
+  private void executeNotFound(final FetchMetrics metrics) {
+    try {
+      new UrlFetcher().setUrl(getBaseUrl() + "/missing").setEventListener(metrics).execute();
+      fail("HttpStatusException expected");
+    } catch (final IOException expected) {
+      assertEquals(((HttpStatusException) expected).getStatusCode(),
+          HttpURLConnection.HTTP_NOT_FOUND);
+    }
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+
+  /**
+   * Event listener which records the events reported, and fails on each event if failing.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class RecordingListener implements FetchEventListener {
+
+    private final List<FetchPhase> phases = new CopyOnWriteArrayList<>();
+    private final List<FetchTrace> traces = new CopyOnWriteArrayList<>();
+    private boolean failing;
+
+    @Override
+    public void onEvent(final FetchPhase phase, final FetchTrace trace) {
+      phases.add(phase);
+      traces.add(trace);
+      if (failing) {
+        throw new IllegalStateException("Listener failed on " + phase);
+      }
+    }
+  }
+}
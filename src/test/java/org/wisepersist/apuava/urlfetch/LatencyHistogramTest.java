@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LatencyHistogram} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class LatencyHistogramTest {
+
+  private static final long SEED = 7L;
+  private static final int SAMPLES = 100000;
+  private static final int THREADS = 4;
+  private static final double MAX_ERROR = 1.0 / 32;
+  private static final double DELTA = 1e-6;
+  private static final double PERCENT = 100.0;
+  private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, };
+
+  /**
+   * Tests {@link LatencyHistogram#indexOf(long)} method, which should map each value into the
+   * bucket whose highest value is the first one not less than it.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testIndexOf_shouldBoundValues() throws Exception {
+    // Given
+    final Random random = new Random(SEED);
+
+    for (int i = 0; i < SAMPLES; i += 1) {
+      final long value = random.nextLong() >>> 1 + random.nextInt(Long.SIZE - 1);
+
+      // When
+      final int index = LatencyHistogram.indexOf(value);
+
+      // Then
+      assertTrue(LatencyHistogram.highestValueOf(index) >= value, String.valueOf(value));
+      assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+    }
+    assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)),
+        Long.MAX_VALUE);
+  }
+
+  /**
+   * Tests {@link LatencyHistogram#getValueAtPercentile(double)} method, which should be within
+   * the relative error of the buckets, while values are recorded concurrently.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetValueAtPercentile_shouldBeAccurate() throws Exception {
+    // Given
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    // When
+    recordConcurrently(histogram);
+
+    // Then
+    assertEquals(histogram.getCount(), (long) THREADS * SAMPLES);
+    assertEquals(histogram.getMax(), SAMPLES);
+    assertEquals(histogram.getMean(), (SAMPLES + 1) / 2.0, DELTA);
+    for (final double percentile : PERCENTILES) {
+      final double exact = percentile / PERCENT * SAMPLES;
+      final long value = histogram.getValueAtPercentile(percentile);
+      assertTrue(value >= exact && value <= exact * (1 + MAX_ERROR), percentile + ": " + value);
+    }
+    assertEquals(histogram.getValueAtPercentile(PERCENT), SAMPLES);
+  }
+
+  /**
+   * Records the values from 1 to {@link #SAMPLES} from several threads at once.
+   *
+   * @param histogram The histogram to record to.
+   * @throws Exception If uncaught errors occur.
+   */
+  private static void recordConcurrently(final LatencyHistogram histogram) throws Exception {
+    final ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(THREADS));
+    final List<ListenableFuture<Object>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t += 1) {
+      futures.add(executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (int value = 1; value <= SAMPLES; value += 1) {
+            histogram.record(value);
+          }
+          return null;
+        }
+      }));
+    }
+    Futures.allAsList(futures).get();
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit tests for {@link LimitingConnectionManager} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class LimitingConnectionManagerTest {
+
+  private static final String URL_A = "http://127.0.0.1:15100/a";
+  private static final String URL_B = "http://localhost:15100/b";
+  private static final int UNLIMITED_LEASES = 50;
+
+  /**
+   * Tests {@link LimitingConnectionManager#getStats()} method, which should reflect leased
+   * and released connections.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetStats_shouldTrackLeasedConnections() throws Exception {
+    // Given
+    final LimitingConnectionManager manager = new LimitingConnectionManager(2, 2);
+
+    // When
+    final HttpURLConnection conn = manager.open(new URL(URL_A));
+
+    // Then
+    assertEquals(manager.getStats().getLeased(), 1);
+    assertEquals(manager.getStats().getAvailable(), 1);
+    manager.release(conn, true);
+    manager.release(conn, true);
+    assertEquals(manager.getStats().getLeased(), 0);
+    assertEquals(manager.getStats().getAvailable(), 2);
+  }
+
+  /**
+   * Tests {@link LimitingConnectionManager#open(URL)} method, which should time out when the
+   * per route limit is reached.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public final void testOpen_shouldTimeoutWhenRouteLimitReached() throws Exception {
+    // Given
+    final LimitingConnectionManager manager =
+        new LimitingConnectionManager(2, 1).setLeaseTimeout(1);
+    manager.open(new URL(URL_A));
+
+    // When and Then
+    manager.open(new URL(URL_A));
+  }
+
+  /**
+   * Tests {@link LimitingConnectionManager#open(URL)} method, which should time out when the
+   * total limit is reached and give back the route permit acquired.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOpen_shouldTimeoutWhenTotalLimitReached() throws Exception {
+    // Given
+    final LimitingConnectionManager manager =
+        new LimitingConnectionManager(1, 1).setLeaseTimeout(1);
+    final HttpURLConnection conn = manager.open(new URL(URL_A));
+
+    // When
+    try {
+      manager.open(new URL(URL_B));
+    } catch (final IOException ex) {
+      manager.release(conn, false);
+    }
+
+    // Then
+    manager.release(manager.open(new URL(URL_B)), true);
+    assertEquals(manager.getStats().getPending(), 0);
+    assertEquals(manager.getStats().getAvailable(), 1);
+  }
+
+  /**
+   * Tests {@link LimitingConnectionManager#open(URL)} method, which should not wait for
+   * connections of the same route to be released when no limits are specified.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOpen_shouldNotLimitByDefault() throws Exception {
+    // Given
+    final LimitingConnectionManager manager = new LimitingConnectionManager().setLeaseTimeout(1);
+
+    // When
+    for (int i = 0; i < UNLIMITED_LEASES; i += 1) {
+      manager.open(new URL(URL_A));
+    }
+
+    // Then
+    assertEquals(manager.getStats().getLeased(), UNLIMITED_LEASES);
+    assertEquals(manager.getStats().getPending(), 0);
+  }
+
+  /**
+   * Tests that Guice shares one {@link ConnectionManager} instance across URL fetchers.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testInjection_shouldShareConnectionManager() throws Exception {
+    // Given
+    final Injector injector = Guice.createInjector();
+
+    // When
+    final ConnectionManager manager1 = injector.getInstance(ConnectionManager.class);
+    final ConnectionManager manager2 = injector.getInstance(ConnectionManager.class);
+
+    // Then
+    assertSame(manager1, manager2);
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates load on {@link TestLoadServlet} of the embedded Jetty server with
+ * {@link UrlFetcher}, so it runs fully offline. Requests are sent open-loop at a constant
+ * arrival rate: each request is scheduled at a fixed time whether or not earlier requests have
+ * completed, and its latency is measured from that time, so a slow server shows up in the
+ * percentiles instead of silently lowering the load. Generators are not thread-safe.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class LoadGenerator {
+
+  private static final long MILLIS_PER_SECOND = 1000L;
+  private static final long COMPLETION_TIMEOUT = 30000L;
+  private static final int DEFAULT_RATE = 100;
+  private static final long DEFAULT_DURATION = 1000L;
+  private static final int DEFAULT_PAYLOAD_SIZE = 1024;
+  private static final int DEFAULT_CONCURRENCY = 8;
+
+  private final String baseUrl;
+  private Mode mode = Mode.POOLED;
+  private int rate = DEFAULT_RATE;
+  private long duration = DEFAULT_DURATION;
+  private int payloadSize = DEFAULT_PAYLOAD_SIZE;
+  private int serverDelay;
+  private int concurrency = DEFAULT_CONCURRENCY;
+
+  /**
+   * Constructs a new {@link LoadGenerator} instance.
+   *
+   * @param baseUrl The base URL of the embedded Jetty server.
+   */
+  public LoadGenerator(final String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
+
+  /**
+   * Specifies how the requests are sent, {@link Mode#POOLED} by default.
+   *
+   * @param theMode The mode specified.
+   * @return This generator.
+   */
+  public LoadGenerator setMode(final Mode theMode) {
+    this.mode = theMode;
+    return this;
+  }
+
+  /**
+   * Specifies the number of requests scheduled per second, 100 by default.
+   *
+   * @param theRate The arrival rate specified.
+   * @return This generator.
+   */
+  public LoadGenerator setRate(final int theRate) {
+    this.rate = theRate;
+    return this;
+  }
+
+  /**
+   * Specifies how long requests are scheduled for, one second by default.
+   *
+   * @param theDuration The duration in milliseconds.
+   * @return This generator.
+   */
+  public LoadGenerator setDuration(final long theDuration) {
+    this.duration = theDuration;
+    return this;
+  }
+
+  /**
+   * Specifies the size of the response bodies, 1KB by default.
+   *
+   * @param thePayloadSize The payload size in bytes.
+   * @return This generator.
+   */
+  public LoadGenerator setPayloadSize(final int thePayloadSize) {
+    this.payloadSize = thePayloadSize;
+    return this;
+  }
+
+  /**
+   * Specifies how long the server waits before answering, no delay by default.
+   *
+   * @param theServerDelay The server delay in milliseconds.
+   * @return This generator.
+   */
+  public LoadGenerator setServerDelay(final int theServerDelay) {
+    this.serverDelay = theServerDelay;
+    return this;
+  }
+
+  /**
+   * Specifies the number of threads sending requests, which is also the maximum number of
+   * connections, 8 by default.
+   *
+   * @param theConcurrency The number of threads specified.
+   * @return This generator.
+   */
+  public LoadGenerator setConcurrency(final int theConcurrency) {
+    this.concurrency = theConcurrency;
+    return this;
+  }
+
+  /**
+   * Sends the requests and waits until they have completed.
+   *
+   * @return The report of the run.
+   * @throws IOException If the request can't be created.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  public LoadReport run() throws IOException, InterruptedException {
+    final int total = (int) (rate * duration / MILLIS_PER_SECOND);
+    final ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+    try {
+      final LoadRun loadRun = new LoadRun(newRequest(workers), workers, total);
+      loadRun.schedule(TimeUnit.SECONDS.toNanos(1) / rate);
+      return loadRun.report;
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates the request sent by the run.
+   *
+   * @param workers The threads which send the requests.
+   * @return The request created.
+   * @throws IOException If the request can't be created.
+   */
+  private UrlRequest newRequest(final ExecutorService workers) throws IOException {
+    ConnectionManager connectionManager = new UnpooledConnectionManager();
+    if (mode != Mode.SYNC) {
+      connectionManager = new LimitingConnectionManager(concurrency, concurrency);
+    }
+    return new UrlFetcher().setUrl(baseUrl + "/testload")
+        .addParam("size", String.valueOf(payloadSize))
+        .addParam("delay", String.valueOf(serverDelay))
+        .setConnectionManager(connectionManager).setExecutor(workers).toRequest();
+  }
+
+  /**
+   * How requests are sent.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  public enum Mode {
+
+    /**
+     * Blocking fetches with a new connection for each request.
+     */
+    SYNC,
+
+    /**
+     * Blocking fetches reusing keep-alive connections from a {@link LimitingConnectionManager}.
+     */
+    POOLED,
+
+    /**
+     * Fetches with {@link UrlRequest#executeAsync()} reusing pooled connections.
+     */
+    ASYNC
+  }
+
+  /**
+   * State of one run of the generator.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private final class LoadRun {
+
+    private final UrlRequest request;
+    private final ExecutorService workers;
+    private final int total;
+    private final LoadReport report;
+    private final CountDownLatch done;
+
+    /**
+     * Constructs a new {@link LoadRun} instance.
+     *
+     * @param request The request sent.
+     * @param workers The threads which send the requests.
+     * @param total The number of requests scheduled.
+     */
+    private LoadRun(final UrlRequest request, final ExecutorService workers, final int total) {
+      this.request = request;
+      this.workers = workers;
+      this.total = total;
+      this.report = new LoadReport(mode, total);
+      this.done = new CountDownLatch(total);
+    }
+
+    /**
+     * Starts the requests at a constant rate and waits until they have completed.
+     *
+     * @param interval The time between the starts of two requests in nanoseconds.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private void schedule(final long interval) throws InterruptedException {
+      final long start = System.nanoTime();
+      for (int i = 0; i < total; i += 1) {
+        final long intended = start + i * interval;
+        LockSupport.parkNanos(intended - System.nanoTime());
+        send(intended);
+      }
+      done.await(duration + COMPLETION_TIMEOUT, TimeUnit.MILLISECONDS);
+      report.setElapsedNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends a request in the mode of the generator.
+     *
+     * @param intended The time when the request was scheduled to start.
+     */
+    private void send(final long intended) {
+      if (mode == Mode.ASYNC) {
+        sendAsync(intended);
+      } else {
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            complete(intended, !fetch());
+          }
+        });
+      }
+    }
+
+    /**
+     * Sends a request asynchronously.
+     *
+     * @param intended The time when the request was scheduled to start.
+     */
+    private void sendAsync(final long intended) {
+      Futures.addCallback(request.executeAsync(), new FutureCallback<UrlResponse>() {
+        @Override
+        public void onSuccess(final UrlResponse response) {
+          complete(intended, response.getContentLength() != payloadSize);
+        }
+
+        @Override
+        public void onFailure(final Throwable ex) {
+          complete(intended, true);
+        }
+      }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Sends a request and waits for the response.
+     *
+     * @return True if the whole response body was received.
+     */
+    private boolean fetch() {
+      boolean succeeded = false;
+      try {
+        succeeded = request.execute().getContentLength() == payloadSize;
+      } catch (final IOException expected) {
+        // Counted as an error
+      }
+      return succeeded;
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param intended The time when the request was scheduled to start.
+     * @param failed True if the request failed.
+     */
+    private void complete(final long intended, final boolean failed) {
+      report.record(System.nanoTime() - intended, failed);
+      done.countDown();
+    }
+  }
+
+  /**
+   * Connection manager which opens a new connection for each request and closes it when
+   * released.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class UnpooledConnectionManager implements ConnectionManager {
+
+    @Override
+    public HttpURLConnection open(final URL url) throws IOException {
+      return (HttpURLConnection) url.openConnection();
+    }
+
+    @Override
+    public void release(final HttpURLConnection conn, final boolean reusable) {
+      conn.disconnect();
+    }
+
+    @Override
+    public PoolStats getStats() {
+      return new PoolStats(0, 0, 0);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs short loads with {@link LoadGenerator} in each mode. Longer runs can be done by
+ * raising the rate and duration, e.g. when comparing changes to {@link UrlFetcher}.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class LoadGeneratorTest extends AbstractHttpServerSupport {
+
+  private static final Logger log = getLogger(LoadGeneratorTest.class); // NOPMD
+  private static final int RATE = 200;
+  private static final long DURATION = 500L;
+  private static final int PAYLOAD_SIZE = 16384;
+  private static final int SERVER_DELAY = 2;
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+
+  /**
+   * Tests blocking fetches with a new connection for each request.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testRun_sync() throws Exception {
+    assertCompleted(run(LoadGenerator.Mode.SYNC));
+  }
+
+  /**
+   * Tests blocking fetches with pooled connections.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testRun_pooled() throws Exception {
+    assertCompleted(run(LoadGenerator.Mode.POOLED));
+  }
+
+  /**
+   * Tests asynchronous fetches with pooled connections.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testRun_async() throws Exception {
+    assertCompleted(run(LoadGenerator.Mode.ASYNC));
+  }
+
+  /**
+   * Runs a short load in the mode specified.
+   *
+   * @param mode The mode specified.
+   * @return The report of the run.
+   * @throws Exception If uncaught errors occur.
+   */
+  private LoadReport run(final LoadGenerator.Mode mode) throws Exception {
+    // Given
+    final LoadGenerator generator = new LoadGenerator(getBaseUrl()).setMode(mode)
+        .setRate(RATE).setDuration(DURATION).setPayloadSize(PAYLOAD_SIZE)
+        .setServerDelay(SERVER_DELAY);
+
+    // When
+    final LoadReport report = generator.run();
+    log.info(report.toString());
+    return report;
+  }
+
+  /**
+   * Asserts that all requests of a run completed successfully.
+   *
+   * @param report The report of the run.
+   */
+  private void assertCompleted(final LoadReport report) {
+    // Then
+    assertEquals(report.getCompleted(), report.getScheduled());
+    assertEquals(report.getErrors(), 0);
+    assertTrue(report.getThroughput() > 0);
+    assertTrue(report.getLatency(LoadReport.P99, TimeUnit.MILLISECONDS) >= SERVER_DELAY);
+  }
+}
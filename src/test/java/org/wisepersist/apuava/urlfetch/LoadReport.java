@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of a run of {@link LoadGenerator}. Latencies are measured from the time each request
+ * was scheduled to start rather than when it actually started, so time spent queueing behind
+ * slow requests is included and the percentiles don't suffer from coordinated omission.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public final class LoadReport {
+
+  static final double P99 = 99.0;
+  private static final double P50 = 50.0;
+  private static final double P999 = 99.9;
+
+  private final LoadGenerator.Mode mode;
+  private final int scheduled;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final AtomicInteger errors = new AtomicInteger();
+  private volatile long elapsedNanos;
+
+  /**
+   * Constructs a new {@link LoadReport} instance, which the results of the run are recorded to.
+   *
+   * @param mode The mode which the requests are sent in.
+   * @param scheduled The number of requests scheduled.
+   */
+  LoadReport(final LoadGenerator.Mode mode, final int scheduled) {
+    this.mode = mode;
+    this.scheduled = scheduled;
+  }
+
+  /**
+   * Records a completed request. It may be called concurrently.
+   *
+   * @param latencyNanos The time from when the request was scheduled until it completed.
+   * @param failed True if the request failed.
+   */
+  void record(final long latencyNanos, final boolean failed) {
+    latencies.record(latencyNanos);
+    if (failed) {
+      errors.incrementAndGet();
+    }
+  }
+
+  /**
+   * Specifies the duration of the run.
+   *
+   * @param theElapsedNanos The time from the first scheduled request until the last completed.
+   */
+  void setElapsedNanos(final long theElapsedNanos) {
+    this.elapsedNanos = theElapsedNanos;
+  }
+
+  public LoadGenerator.Mode getMode() {
+    return mode;
+  }
+
+  public int getScheduled() {
+    return scheduled;
+  }
+
+  /**
+   * Gets the number of requests which completed, successfully or not.
+   *
+   * @return The number of requests completed.
+   */
+  public long getCompleted() {
+    return latencies.getCount();
+  }
+
+  public int getErrors() {
+    return errors.get();
+  }
+
+  /**
+   * Gets the number of requests completed per second.
+   *
+   * @return The throughput in requests per second.
+   */
+  public double getThroughput() {
+    return getCompleted() * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1L);
+  }
+
+  /**
+   * Gets the latency at a percentile.
+   *
+   * @param percentile The percentile between 0 and 100.
+   * @param unit The time unit of the latency returned.
+   * @return The latency at the percentile.
+   */
+  public long getLatency(final double percentile, final TimeUnit unit) {
+    return unit.convert(latencies.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gets the maximum latency.
+   *
+   * @param unit The time unit of the latency returned.
+   * @return The maximum latency.
+   */
+  public long getMaxLatency(final TimeUnit unit) {
+    return unit.convert(latencies.getMax(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    final TimeUnit micros = TimeUnit.MICROSECONDS;
+    return String.format(Locale.ROOT,
+        "%s: %d/%d completed, %d errors, %.1f req/s, latency us p50=%d p99=%d p99.9=%d max=%d",
+        mode, getCompleted(), scheduled, getErrors(), getThroughput(), getLatency(P50, micros),
+        getLatency(P99, micros), getLatency(P999, micros), getMaxLatency(micros));
+  }
+}
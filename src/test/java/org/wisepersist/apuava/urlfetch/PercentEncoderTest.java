@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.testng.annotations.Test;
+
+import java.net.URLEncoder;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link PercentEncoder} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class PercentEncoderTest {
+
+  private static final long SEED = 42L;
+  private static final int SAMPLES = 2000;
+  private static final int MAX_LENGTH = 16;
+  private static final int EMOJI = 0x1F600;
+  private static final char HIGH = Character.highSurrogate(EMOJI);
+  private static final char LOW = Character.lowSurrogate(EMOJI);
+  private static final String PAIR = new String(Character.toChars(EMOJI));
+
+  /**
+   * Tests {@link PercentEncoder#encode(CharSequence, StringBuilder)} method, which should
+   * produce the same output as {@link URLEncoder} for ASCII, multi-byte characters, surrogate
+   * pairs and unpaired surrogates.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testEncode_shouldMatchUrlEncoder() throws Exception {
+    // Given
+    final String[] values = {"", "abc-XYZ_0.9*", "a b&c=d/e?f", "~!'()", "中文 é",
+        PAIR + " smile", HIGH + " lone", "lone " + LOW, LOW + PAIR + HIGH, };
+
+    for (final String value : values) {
+      // When
+      final String encoded = PercentEncoder.encode(value, new StringBuilder()).toString();
+
+      // Then
+      assertEquals(encoded, URLEncoder.encode(value, "UTF-8"), value);
+    }
+  }
+
+  /**
+   * Tests {@link PercentEncoder#encode(CharSequence, StringBuilder)} method with random
+   * strings, which should produce the same output as {@link URLEncoder}.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testEncode_shouldMatchUrlEncoderForRandomStrings() throws Exception {
+    // Given
+    final Random random = new Random(SEED);
+    final StringBuilder out = new StringBuilder();
+
+    for (int i = 0; i < SAMPLES; i += 1) {
+      final String value = randomString(random);
+      out.setLength(0);
+
+      // When
+      PercentEncoder.encode(value, out);
+
+      // Then
+      assertEquals(out.toString(), URLEncoder.encode(value, "UTF-8"), value);
+    }
+  }
+
+  /**
+   * Tests {@link QueryStrings#join(CharSequence, Iterable)} method, which should append
+   * encoded parameters to the prefix specified.
+   */
+  @Test
+  public final void testJoin_shouldAppendToPrefix() {
+    // Given
+    final UrlFetcher fetcher = new UrlFetcher().addParam("a b", "1+1").addParam("c", "é");
+
+    // When
+    final String query = QueryStrings.join("x=1", fetcher.getParams());
+
+    // Then
+    assertEquals(query, "x=1&a+b=1%2B1&c=%C3%A9");
+    assertEquals(QueryStrings.join("", fetcher.getParams()), "a+b=1%2B1&c=%C3%A9");
+  }
+
+  /**
+   * Creates a random string mixing ASCII, multi-byte and surrogate characters.
+   *
+   * @param random The random generator.
+   * @return The string created.
+   */
+  private static String randomString(final Random random) {
+    final char[] pool = {'a', 'Z', '5', '.', ' ', '%', '&', '~', 'é', 'ࠀ', '中', HIGH, LOW, };
+    final StringBuilder value = new StringBuilder();
+    final int length = random.nextInt(MAX_LENGTH);
+    for (int i = 0; i < length; i += 1) {
+      value.append(pool[random.nextInt(pool.length)]);
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import org.testng.annotations.Test;
+import org.wisepersist.apuava.settings.AbstractSettings;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RateLimits} and {@link TokenBucket} classes.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RateLimitsTest {
+
+  private static final int BURST = 3;
+  private static final double RATE = 20.0;
+  private static final long MAX_WAIT = 200L;
+  private static final long MIN_WAIT = 40L;
+  private static final int UNLIMITED_CALLS = 1000;
+
+  /**
+   * Tests that a token bucket permits a burst and then rejects requests.
+   */
+  @Test
+  public final void testTryAcquire_shouldPermitBurst() {
+    // Given
+    final TokenBucket bucket = new TokenBucket("example.com", 1.0, BURST);
+
+    // When
+    for (int i = 0; i < BURST; i += 1) {
+      assertTrue(bucket.tryAcquire());
+    }
+
+    // Then
+    assertFalse(bucket.tryAcquire());
+  }
+
+  /**
+   * Tests that requests wait for a permit up to the maximum wait.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testAcquire_shouldWaitForPermit() throws Exception {
+    // Given
+    final RateLimits rateLimits = new RateLimits().setDefaultLimit(RATE, 1).setMaxWait(MAX_WAIT);
+    final URL url = new URL("http://example.com/");
+    final long start = System.nanoTime();
+
+    // When
+    rateLimits.acquire(url);
+    rateLimits.acquire(url);
+
+    // Then
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(MIN_WAIT));
+    assertEquals(rateLimits.getTokenBuckets().size(), 1);
+  }
+
+  /**
+   * Tests that the limits of hosts are read from settings, and that requests beyond the limit
+   * fail.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = CallNotPermittedException.class)
+  public final void testAcquire_shouldUseLimitsOfSettings() throws Exception {
+    // Given
+    final RateLimits rateLimits = new RateLimits(new FileBasedSettings());
+    final URL unlimited = new URL("http://example.com/");
+    final URL limited = new URL("http://limited.example.com/");
+    for (int i = 0; i < UNLIMITED_CALLS; i += 1) {
+      rateLimits.acquire(unlimited);
+    }
+    rateLimits.acquire(limited);
+    rateLimits.acquire(limited);
+
+    // When
+    rateLimits.acquire(limited);
+  }
+
+  /**
+   * Settings of the rate limits of tests.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class FileBasedSettings extends AbstractSettings {
+
+    /**
+     * Constructs a new {@link FileBasedSettings} instance.
+     */
+    private FileBasedSettings() {
+      super("/test/test-ratelimits.properties");
+    }
+
+    @Override
+    protected Class getClassType() {
+      return getClass();
+    }
+
+    @Override
+    protected String getAppConfigFolder() {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link RequestBodies} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RequestBodiesTest {
+
+  private static final String CONTENT = "param1=value1&param2=value2";
+
+  /**
+   * Tests {@link RequestBodies#of(ByteBuffer)} method, which should write the remaining bytes
+   * of a direct buffer without changing its position.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOf_shouldWriteDirectByteBuffer() throws Exception {
+    // Given
+    final byte[] bytes = CONTENT.getBytes(Charsets.UTF_8);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    // When
+    final RequestBody body = RequestBodies.of(buffer);
+    body.writeTo(out);
+
+    // Then
+    assertEquals(body.getContentLength(), bytes.length);
+    assertEquals(out.toString("UTF-8"), CONTENT);
+    assertEquals(buffer.remaining(), bytes.length);
+  }
+
+  /**
+   * Tests {@link RequestBodies#of(byte[])} method, which should be writable more than once.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOf_shouldWriteBytesRepeatedly() throws Exception {
+    // Given
+    final RequestBody body = RequestBodies.of(CONTENT.getBytes(Charsets.UTF_8));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    // When
+    body.writeTo(out);
+    body.writeTo(out);
+
+    // Then
+    assertEquals(out.toString("UTF-8"), CONTENT + CONTENT);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link RequestCoalescer} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RequestCoalescerTest extends AbstractHttpServerSupport {
+
+  private static final int CALLERS = 5;
+
+  /**
+   * Tests that identical requests in flight share one response.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldCoalesceIdenticalRequests() throws Exception {
+    // Given
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final UrlRequest request = new UrlFetcher().setUrl(getBaseUrl() + "/testflaky")
+        .addParam("id", "coalesce").addParam("delay", "500")
+        .setRequestCoalescer(coalescer).toRequest();
+
+    // When
+    final List<UrlResponse> responses = executeConcurrently(request);
+
+    // Then
+    assertEquals(TestFlakyServlet.getRequests("coalesce"), 1);
+    assertEquals(coalescer.getCoalescedCount(), CALLERS - 1);
+    for (final UrlResponse response : responses) {
+      assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    }
+  }
+
+  /**
+   * Tests that concurrent requests with a body aren't coalesced.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldNotCoalescePost() throws Exception {
+    // Given
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final UrlRequest request = new UrlFetcher().setUrl(getBaseUrl() + "/testflaky")
+        .setRequestMethod(RequestMethod.POST).addParam("id", "nocoalesce")
+        .addParam("delay", "500").setRequestCoalescer(coalescer).toRequest();
+
+    // When
+    executeConcurrently(request);
+
+    // Then
+    assertEquals(TestFlakyServlet.getRequests("nocoalesce"), CALLERS);
+    assertEquals(coalescer.getCoalescedCount(), 0);
+  }
+
+  /**
+   * Executes a request from concurrent callers.
+   *
+   * @param request The request specified.
+   * @return The responses of the callers.
+   * @throws Exception If uncaught errors occur.
+   */
+  private List<UrlResponse> executeConcurrently(final UrlRequest request) throws Exception {
+    final List<ListenableFuture<UrlResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i += 1) {
+      futures.add(request.executeAsync());
+    }
+    return Futures.allAsList(futures).get();
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
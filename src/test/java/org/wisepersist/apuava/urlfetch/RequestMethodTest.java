@@ -19,6 +19,8 @@ package org.wisepersist.apuava.urlfetch;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Unit tests for {@link RequestMethod} class.
@@ -27,6 +29,8 @@ import static org.testng.Assert.assertEquals;
  */
 public class RequestMethodTest {
 
+  private static final int METHODS = 7;
+
   /**
    * Tests {@link RequestMethod#values()} method.
    *
@@ -35,7 +39,7 @@ public class RequestMethodTest {
   @Test
   public final void testValues() throws Exception {
     final RequestMethod[] values = RequestMethod.values();
-    assertEquals(values.length, 2);
+    assertEquals(values.length, METHODS);
   }
 
   /**
@@ -49,4 +53,36 @@ public class RequestMethodTest {
     final RequestMethod valueOf = RequestMethod.valueOf(requestMethod.name());
     assertEquals(valueOf, requestMethod);
   }
+
+  /**
+   * Tests {@link RequestMethod#isIdempotent()} method.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testIsIdempotent() throws Exception {
+    assertTrue(RequestMethod.GET.isIdempotent());
+    assertFalse(RequestMethod.POST.isIdempotent());
+    assertTrue(RequestMethod.HEAD.isIdempotent());
+    assertTrue(RequestMethod.PUT.isIdempotent());
+    assertFalse(RequestMethod.PATCH.isIdempotent());
+    assertTrue(RequestMethod.DELETE.isIdempotent());
+    assertTrue(RequestMethod.OPTIONS.isIdempotent());
+  }
+
+  /**
+   * Tests {@link RequestMethod#hasRequestBody()} method.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testHasRequestBody() throws Exception {
+    assertFalse(RequestMethod.GET.hasRequestBody());
+    assertTrue(RequestMethod.POST.hasRequestBody());
+    assertFalse(RequestMethod.HEAD.hasRequestBody());
+    assertTrue(RequestMethod.PUT.hasRequestBody());
+    assertTrue(RequestMethod.PATCH.hasRequestBody());
+    assertFalse(RequestMethod.DELETE.hasRequestBody());
+    assertFalse(RequestMethod.OPTIONS.hasRequestBody());
+  }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.net.ProtocolException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ResponseHeaders} and {@link ResponseTiming} classes, and the request
+ * methods other than GET and POST.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class ResponseHeadersTest extends AbstractHttpServerSupport {
+
+  /**
+   * Tests {@link UrlResponse#getHeaders()} method, which should look headers up
+   * case-insensitively.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetHeaders_shouldBeCaseInsensitive() throws Exception {
+    // Given
+    final UrlFetcher fetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .addParam("a", "1");
+
+    // When
+    final UrlResponse response = fetcher.execute();
+
+    // Then
+    final ResponseHeaders headers = response.getHeaders();
+    assertEquals(headers.get("x-echo-method"), "GET");
+    assertEquals(headers.getAll("X-ECHO-METHOD"), ImmutableList.of("GET"));
+    assertEquals(headers.getContentLength(), response.getContentLength());
+    assertFalse(headers.contains("X-Missing"));
+    assertNull(headers.get("X-Missing"));
+    assertTrue(headers.getAll("X-Missing").isEmpty());
+  }
+
+  /**
+   * Tests {@link UrlResponse#getTiming()} method, which should be ordered and positive.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetTiming_shouldMeasureRequest() throws Exception {
+    // Given
+    final long before = System.currentTimeMillis();
+
+    // When
+    final ResponseTiming timing = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .execute().getTiming();
+
+    // Then
+    assertTrue(timing.getStartTime() >= before);
+    assertTrue(timing.getTimeToHeaders(TimeUnit.NANOSECONDS) > 0);
+    assertTrue(timing.getTotalTime(TimeUnit.NANOSECONDS)
+        >= timing.getTimeToHeaders(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Tests {@link RequestMethod#HEAD}, which should return the headers without a body.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testHead_shouldReturnHeadersOnly() throws Exception {
+    // When
+    final UrlResponse response = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.HEAD).addParam("a", "1").execute();
+
+    // Then
+    assertEquals(response.getContentLength(), 0);
+    assertEquals(response.getHeaders().get("X-Echo-Method"), "HEAD");
+  }
+
+  /**
+   * Tests {@link RequestMethod#PUT} and {@link RequestMethod#PATCH}, which should send the
+   * parameters as the body, PATCH with the X-HTTP-Method-Override header as method override
+   * is enabled.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testPutAndPatch_shouldSendBody() throws Exception {
+    for (final RequestMethod method : new RequestMethod[] {RequestMethod.PUT,
+        RequestMethod.PATCH, }) {
+      // When
+      final UrlResponse response = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+          .setRequestMethod(method).setMethodOverride(true).addParam("a", "1").execute();
+
+      // Then
+      assertEquals(response.getContent(), "a=1");
+      assertEquals(response.getHeaders().get("X-Echo-Method"), method.name());
+    }
+  }
+
+  /**
+   * Tests {@link RequestMethod#PATCH}, which should fail with the connections of the JDK
+   * unless method override is enabled.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = ProtocolException.class)
+  public final void testPatch_shouldFailWithoutMethodOverride() throws Exception {
+    // When and Then
+    new UrlFetcher().setUrl(getBaseUrl() + "/testecho").setRequestMethod(RequestMethod.PATCH)
+        .addParam("a", "1").execute();
+  }
+
+  /**
+   * Tests {@link RequestMethod#DELETE} and {@link RequestMethod#OPTIONS}, which should send
+   * the parameters in the query string.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testDeleteAndOptions_shouldSendQueryString() throws Exception {
+    // When
+    final UrlResponse delete = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.DELETE).addParam("a", "1").execute();
+    final UrlResponse options = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.OPTIONS).execute();
+
+    // Then
+    assertEquals(delete.getContent(), "a=1");
+    assertTrue(options.getHeaders().get("Allow").contains("DELETE"));
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
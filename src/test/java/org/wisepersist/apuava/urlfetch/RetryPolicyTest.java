@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.net.HttpURLConnection;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RetryPolicy} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class RetryPolicyTest extends AbstractHttpServerSupport {
+
+  private static final int ATTEMPTS = 3;
+  private static final long SLOW_DELAY = 2000L;
+  private static final long HEDGE_DELAY = 50L;
+
+  /**
+   * Tests that failed attempts of GET requests are retried until one succeeds.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldRetryUntilSuccess() throws Exception {
+    // Given
+    final RetryPolicy policy = new RetryPolicy().setMaxAttempts(ATTEMPTS).setBackoff(1, 10);
+    final UrlFetcher urlFetcher = newFetcher("retry").addParam("fail", "2")
+        .setRetryPolicy(policy);
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(TestFlakyServlet.getRequests("retry"), ATTEMPTS);
+  }
+
+  /**
+   * Tests that POST requests aren't retried.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldNotRetryPost() throws Exception {
+    // Given
+    final UrlFetcher urlFetcher = newFetcher("post").addParam("fail", "1")
+        .setRequestMethod(RequestMethod.POST).setRetryPolicy(new RetryPolicy());
+
+    // When
+    int statusCode = 0;
+    try {
+      urlFetcher.execute();
+    } catch (final HttpStatusException ex) {
+      statusCode = ex.getStatusCode();
+    }
+
+    // Then
+    assertEquals(statusCode, HttpURLConnection.HTTP_UNAVAILABLE);
+    assertEquals(TestFlakyServlet.getRequests("post"), 1);
+  }
+
+  /**
+   * Tests that a slow attempt is hedged and the faster attempt wins.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldHedgeSlowAttempt() throws Exception {
+    // Given
+    final RetryPolicy policy = new RetryPolicy().setHedgeDelay(HEDGE_DELAY);
+    final UrlFetcher urlFetcher = newFetcher("hedge").addParam("delay",
+        String.valueOf(SLOW_DELAY)).setRetryPolicy(policy);
+
+    final double tokens = policy.getRetryBudget().getTokens();
+
+    // When
+    final long start = System.currentTimeMillis();
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertTrue(System.currentTimeMillis() - start < SLOW_DELAY);
+    assertTrue(policy.getRetryBudget().getTokens() < tokens);
+  }
+
+  /**
+   * Tests that hedged attempts run on the executor of the fetcher, and that an attempt queued
+   * behind the fetch on a saturated executor is run by the fetch rather than waited for.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecuteAsync_shouldRunAttemptsOnFetcherExecutor() throws Exception {
+    // Given
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final UrlFetcher urlFetcher = newFetcher("hedge-async").addParam("delay",
+        String.valueOf(HEDGE_DELAY * 2)).setRetryPolicy(new RetryPolicy()
+        .setHedgeDelay(HEDGE_DELAY)).setExecutor(executor);
+
+    // When
+    final UrlResponse response;
+    try {
+      response = urlFetcher.executeAsync().get(SLOW_DELAY, TimeUnit.MILLISECONDS);
+    } finally {
+      executor.shutdown();
+    }
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(TestFlakyServlet.getRequests("hedge-async"), 1);
+  }
+
+  /**
+   * Tests that requests failing with errors other than transient connection failures aren't
+   * retried.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = UnknownHostException.class)
+  public final void testExecute_shouldNotRetryUnknownHost() throws Exception {
+    // Given
+    final RetryPolicy policy = new RetryPolicy().setMaxAttempts(ATTEMPTS).setBackoff(1, 10);
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl("http://apuava.invalid/")
+        .setRetryPolicy(policy);
+
+    // When and Then
+    try {
+      urlFetcher.execute();
+    } finally {
+      assertTrue(policy.getRetryBudget().canRetry());
+      assertEquals(policy.getRetryBudget().getTokens(), new RetryPolicy().getRetryBudget()
+          .getTokens());
+    }
+  }
+
+  /**
+   * Tests {@link RetryBudget} class, which should stop retries once half of the tokens are
+   * used and allow them again after successes.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testRetryBudget_shouldCapRetries() throws Exception {
+    // Given
+    final RetryBudget budget = new RetryBudget(2, 1);
+
+    // When
+    budget.recordFailure();
+
+    // Then
+    assertEquals(budget.canRetry(), false);
+    budget.recordSuccess();
+    assertEquals(budget.canRetry(), true);
+  }
+
+  /**
+   * Creates a URL fetcher of the flaky test servlet.
+   *
+   * @param id The id which the servlet counts requests of.
+   * @return The URL fetcher created.
+   */
+  private UrlFetcher newFetcher(final String id) {
+    return new UrlFetcher().setUrl(getBaseUrl() + "/testflaky").addParam("id", id);
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link StreamHandlerConnectionFactory} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class StreamHandlerConnectionFactoryTest extends AbstractHttpServerSupport {
+
+  /**
+   * Tests that a URL fetcher opens connections with the stream handler plugged into its
+   * connection manager.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testOpen_shouldUsePluggedStreamHandler() throws Exception {
+    // Given
+    final CountingHandlerFactory handlerFactory = new CountingHandlerFactory();
+    final ConnectionManager manager = new LimitingConnectionManager().setConnectionFactory(
+        new StreamHandlerConnectionFactory(handlerFactory));
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testget")
+        .setConnectionManager(manager);
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(handlerFactory.opened.get(), 1);
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+
+  /**
+   * Stream handler factory for http which counts the connections opened and opens them with
+   * the JDK.
+   *
+   * @author delight.wjk@gmail.com
+   */
+  private static final class CountingHandlerFactory implements URLStreamHandlerFactory {
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    @Override
+    public URLStreamHandler createURLStreamHandler(final String protocol) {
+      URLStreamHandler handler = null;
+      if ("http".equals(protocol)) {
+        handler = new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(final URL url) throws IOException {
+            opened.incrementAndGet();
+            return new URL(url.toString()).openConnection();
+          }
+        };
+      }
+      return handler;
+    }
+  }
+}
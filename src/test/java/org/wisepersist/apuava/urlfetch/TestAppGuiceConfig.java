@@ -56,6 +56,11 @@ public class TestAppGuiceConfig extends GuiceServletContextListener {
         serve("/").with(TestWelcomeServlet.class);
         serve("/testget").with(TestGetServlet.class);
         serve("/testpost").with(TestPostServlet.class);
+        serve("/testecho").with(TestEchoServlet.class);
+        serve("/testgzip").with(TestGzipServlet.class);
+        serve("/testcache").with(TestCacheServlet.class);
+        serve("/testflaky").with(TestFlakyServlet.class);
+        serve("/testload").with(TestLoadServlet.class);
       }
     };
   }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet is for testing {@link UrlResponseCache}. It answers with the Cache-Control
+ * header given by the {@code cc} parameter, the Vary header given by the {@code vary}
+ * parameter, a response counter and an ETag, and with 304 to matching conditional requests.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+public class TestCacheServlet extends HttpServlet {
+
+  /**
+   * The entity tag of responses.
+   */
+  public static final String ETAG = "\"v1\"";
+
+  /**
+   * The header which counts all responses, including 304 ones.
+   */
+  public static final String RESPONSE_COUNT = "X-Response-Count";
+
+  private static final AtomicInteger FULL_RESPONSES = new AtomicInteger();
+  private static final AtomicInteger RESPONSES = new AtomicInteger();
+
+  @Override
+  protected final void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    resp.setHeader("ETag", ETAG);
+    resp.setHeader("Cache-Control", Strings.nullToEmpty(req.getParameter("cc")));
+    resp.setHeader(RESPONSE_COUNT, String.valueOf(RESPONSES.incrementAndGet()));
+    if (req.getParameter("vary") != null) {
+      resp.setHeader("Vary", req.getParameter("vary"));
+    }
+    if (ETAG.equals(req.getHeader("If-None-Match"))) {
+      resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    } else {
+      FULL_RESPONSES.incrementAndGet();
+      resp.getOutputStream().write(TestWelcomeServlet.WELCOME_MESSAGE.getBytes(Charsets.UTF_8));
+    }
+  }
+
+  /**
+   * Gets the number of responses sent with a body so far.
+   *
+   * @return The number of full responses.
+   */
+  public static int getFullResponses() {
+    return FULL_RESPONSES.get();
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet is for testing {@link UrlFetcher} with request bodies and query strings, which
+ * replies with the request body and its content type, or the query string received. The
+ * request method, or the method in the X-HTTP-Method-Override header, is replied in the
+ * X-Echo-Method header.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+public class TestEchoServlet extends HttpServlet {
+
+  private static final String METHOD_OVERRIDE = "X-HTTP-Method-Override";
+
+  @Override
+  protected final void service(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    String method = req.getMethod();
+    if (req.getHeader(METHOD_OVERRIDE) != null) {
+      method = req.getHeader(METHOD_OVERRIDE);
+    }
+    resp.setHeader("X-Echo-Method", method);
+    super.service(req, resp);
+  }
+
+  @Override
+  protected final void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    resp.getWriter().print(req.getQueryString());
+  }
+
+  @Override
+  protected final void doDelete(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    doGet(req, resp);
+  }
+
+  @Override
+  protected final void doPut(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    doPost(req, resp);
+  }
+
+  @Override
+  protected final void doPost(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    if (req.getContentType() != null) {
+      resp.setContentType(req.getContentType());
+    }
+    IOUtils.copy(req.getInputStream(), resp.getOutputStream());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet is for testing {@link RetryPolicy}. For each {@code id} parameter, it answers
+ * the first {@code fail} requests with 503, and delays the first request by {@code delay}
+ * milliseconds.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+public class TestFlakyServlet extends HttpServlet {
+
+  private static final ConcurrentMap<String, AtomicInteger> REQUESTS = new ConcurrentHashMap<>();
+
+  @Override
+  protected final void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    final int request = getCounter(req.getParameter("id")).incrementAndGet();
+    if (request == 1) {
+      Uninterruptibles.sleepUninterruptibly(getInt(req, "delay"), TimeUnit.MILLISECONDS);
+    }
+    if (request <= getInt(req, "fail")) {
+      resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    } else {
+      resp.getWriter().print(TestWelcomeServlet.WELCOME_MESSAGE);
+    }
+  }
+
+  @Override
+  protected final void doPost(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    doGet(req, resp);
+  }
+
+  /**
+   * Gets the number of requests received with the id specified.
+   *
+   * @param id The id specified.
+   * @return The number of requests.
+   */
+  public static int getRequests(final String id) {
+    return getCounter(id).get();
+  }
+
+  /**
+   * Gets the request counter of the id specified.
+   *
+   * @param id The id specified.
+   * @return The request counter.
+   */
+  private static AtomicInteger getCounter(final String id) {
+    REQUESTS.putIfAbsent(id, new AtomicInteger());
+    return REQUESTS.get(id);
+  }
+
+  /**
+   * Gets an integer parameter.
+   *
+   * @param req The request specified.
+   * @param name The parameter name.
+   * @return The parameter value, or 0 if absent.
+   */
+  private static int getInt(final HttpServletRequest req, final String name) {
+    final String value = req.getParameter(name);
+    int result = 0;
+    if (value != null) {
+      result = Integer.parseInt(value);
+    }
+    return result;
+  }
+}
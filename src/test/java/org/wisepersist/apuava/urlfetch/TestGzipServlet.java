@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet is for testing {@link UrlFetcher} with compressed requests and responses.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+public class TestGzipServlet extends HttpServlet {
+
+  /**
+   * Number of times the welcome message is repeated in responses.
+   */
+  public static final int REPEAT = 100;
+
+  @Override
+  protected final void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    final String accept = req.getHeader("Accept-Encoding");
+    final byte[] body = repeatedWelcome().getBytes(Charsets.UTF_8);
+    if (accept != null && accept.contains("gzip")) {
+      resp.setHeader("Content-Encoding", "gzip");
+      final GZIPOutputStream out = new GZIPOutputStream(resp.getOutputStream());
+      out.write(body);
+      out.finish();
+    } else {
+      resp.getOutputStream().write(body);
+    }
+  }
+
+  @Override
+  protected final void doPost(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    if ("gzip".equals(req.getHeader("Content-Encoding"))) {
+      IOUtils.copy(new GZIPInputStream(req.getInputStream()), resp.getOutputStream());
+    } else {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Gets the welcome message repeated {@link #REPEAT} times.
+   *
+   * @return The repeated welcome message.
+   */
+  public static String repeatedWelcome() {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < REPEAT; i += 1) {
+      builder.append(TestWelcomeServlet.WELCOME_MESSAGE);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Singleton;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet is for load testing {@link UrlFetcher} with {@link LoadGenerator}. It waits
+ * {@code delay} milliseconds and then answers with a body of {@code size} bytes.
+ *
+ * @author delight.wjk@gmail.com
+ */
+@Singleton
+public class TestLoadServlet extends HttpServlet {
+
+  private static final int CHUNK_SIZE = 8192;
+  private static final byte[] CHUNK = new byte[CHUNK_SIZE];
+
+  static {
+    Arrays.fill(CHUNK, (byte) 'x');
+  }
+
+  @Override
+  protected final void doGet(final HttpServletRequest req, final HttpServletResponse resp)
+      throws ServletException, IOException {
+    final int delay = NumberUtils.toInt(req.getParameter("delay"));
+    if (delay > 0) {
+      Uninterruptibles.sleepUninterruptibly(delay, TimeUnit.MILLISECONDS);
+    }
+    int remaining = NumberUtils.toInt(req.getParameter("size"));
+    resp.setContentType("application/octet-stream");
+    resp.setContentLength(remaining);
+    final OutputStream out = resp.getOutputStream();
+    while (remaining > 0) {
+      final int length = Math.min(remaining, CHUNK_SIZE);
+      out.write(CHUNK, 0, length);
+      remaining -= length;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for compression support of {@link UrlFetcher} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlFetcherCompressionTest extends AbstractHttpServerSupport {
+
+  /**
+   * Tests {@link UrlFetcher#setAcceptCompressed(boolean)} method, which should decompress a
+   * gzip encoded response and count the bytes transferred.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldDecompressGzipResponse() throws Exception {
+    // Given
+    final CompressionStats stats = new CompressionStats();
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testgzip")
+        .setAcceptCompressed(true).setCompressionStats(stats);
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestGzipServlet.repeatedWelcome());
+    assertEquals(stats.getResponseDecodedBytes(), response.getContentLength());
+    assertTrue(stats.getResponseEncodedBytes() < stats.getResponseDecodedBytes());
+  }
+
+  /**
+   * Tests {@link UrlFetcher#setCompressRequest(boolean)} method, which should send a gzip
+   * encoded request body.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldCompressRequestBody() throws Exception {
+    // Given
+    final CompressionStats stats = new CompressionStats();
+    final String content = TestGzipServlet.repeatedWelcome();
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testgzip")
+        .setRequestMethod(RequestMethod.POST).setCompressRequest(true)
+        .setCompressionStats(stats).setBody(RequestBodies.of(content.getBytes(Charsets.UTF_8)));
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), content);
+    assertEquals(stats.getRequestRawBytes(), response.getContentLength());
+    assertTrue(stats.getRequestEncodedBytes() < stats.getRequestRawBytes());
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
@@ -16,11 +16,22 @@
 
 package org.wisepersist.apuava.urlfetch;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.inject.servlet.GuiceServletContextListener;
 
+import org.apache.commons.io.IOUtils;
 import org.testng.annotations.Test;
+import org.wisepersist.apuava.resource.ResourceHandler;
+import org.wisepersist.apuava.resource.ResourceManager;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.List;
 import java.util.UUID;
@@ -57,6 +68,76 @@ public class UrlFetcherTest extends AbstractHttpServerSupport {
     assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
   }
 
+  /**
+   * Tests {@link UrlFetcher#executeAsync()} method, which should complete with the welcome
+   * message when GET method is used.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecuteAsync_shouldReturnWelcomeMessageWithGetMethod() throws Exception {
+    // Given
+    final UrlFetcher urlFetcher = new UrlFetcher()
+        .setUrl(getBaseUrl() + "/testget")
+        .setRequestMethod(RequestMethod.GET);
+
+    // When
+    final UrlResponse response = urlFetcher.executeAsync().get();
+
+    // Then
+    final int expectedCode = 200;
+    assertEquals(response.getStatusCode(), expectedCode);
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+  }
+
+  /**
+   * Tests {@link UrlFetcher#executeStreaming()} method, which should stream the welcome
+   * message and release the connection when the response is closed.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecuteStreaming_shouldStreamWelcomeMessage() throws Exception {
+    // Given
+    final LimitingConnectionManager manager = new LimitingConnectionManager();
+    final UrlFetcher urlFetcher = new UrlFetcher()
+        .setUrl(getBaseUrl() + "/testget")
+        .setConnectionManager(manager);
+
+    // When
+    final String content = readContent(urlFetcher.executeStreaming());
+
+    // Then
+    assertEquals(content, TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(manager.getStats().getLeased(), 0);
+  }
+
+  /**
+   * Tests {@link UrlFetcher#execute()} method, which should release the connection when a
+   * header is rejected.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldReleaseConnectionIfHeaderRejected() throws Exception {
+    // Given
+    final LimitingConnectionManager manager = new LimitingConnectionManager();
+    final UrlFetcher urlFetcher = new UrlFetcher()
+        .setUrl(getBaseUrl() + "/testget")
+        .addHeader("X-Injected", "value\r\nX-Other: value")
+        .setConnectionManager(manager);
+
+    // When
+    try {
+      urlFetcher.execute();
+    } catch (final IllegalArgumentException expected) {
+      // Expected
+    }
+
+    // Then
+    assertEquals(manager.getStats().getLeased(), 0);
+  }
+
   /**
    * Tests {@link UrlFetcher#execute()} method, which should return the welcome message
    * when GET method is used..
@@ -109,6 +190,86 @@ public class UrlFetcherTest extends AbstractHttpServerSupport {
     }
   }
 
+  /**
+   * Reads the body of a streamed response and closes it.
+   *
+   * @param response The streamed response specified.
+   * @return The body string.
+   * @throws IOException If IO errors occur.
+   */
+  private String readContent(final UrlStreamResponse response) throws IOException {
+    return new ResourceManager().with(response).run(new ResourceHandler<String>() {
+      @Override
+      public String handle(final Closeable closeable) throws IOException {
+        return IOUtils.toString(response.getInputStream(), Charsets.UTF_8);
+      }
+    });
+  }
+
+  /**
+   * Tests {@link UrlFetcher#setBody(RequestBody)} method, which should upload a file body.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldUploadFileBody() throws Exception {
+    // Given
+    final String content = UUID.randomUUID().toString();
+    final Path file = Files.createTempFile("urlfetch", ".txt");
+    Files.write(file, content.getBytes(Charsets.UTF_8));
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.POST).setBody(RequestBodies.of(file));
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+    Files.delete(file);
+
+    // Then
+    assertEquals(response.getContent(), content);
+  }
+
+  /**
+   * Tests that a file body fails instead of spinning if the file shrinks before it is written.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public final void testWriteTo_shouldFailIfFileShrinks() throws Exception {
+    // Given
+    final Path file = Files.createTempFile("urlfetch", ".txt");
+    Files.write(file, UUID.randomUUID().toString().getBytes(Charsets.UTF_8));
+    final RequestBody body = RequestBodies.of(file);
+    Files.write(file, new byte[0]);
+
+    // When and Then
+    try {
+      body.writeTo(ByteStreams.nullOutputStream());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests {@link UrlFetcher#setBody(RequestBody)} method, which should upload a body of
+   * unknown length with chunked transfer encoding.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldUploadChunkedStreamBody() throws Exception {
+    // Given
+    final String content = UUID.randomUUID().toString();
+    final InputStream inputStream = new ByteArrayInputStream(content.getBytes(Charsets.UTF_8));
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .setRequestMethod(RequestMethod.POST).setBody(RequestBodies.of(inputStream));
+
+    // When
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), content);
+  }
+
   /**
    * Builds parameters for tests.
    *
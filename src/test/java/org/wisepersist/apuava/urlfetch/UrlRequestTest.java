@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link UrlRequest} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlRequestTest extends AbstractHttpServerSupport {
+
+  private static final int EXECUTIONS = 10;
+
+  /**
+   * Tests {@link UrlRequest#execute(java.util.Map)} method, which should append the dynamic
+   * parameters to the static ones without changing the request.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldAppendDynamicParams() throws Exception {
+    // Given
+    final UrlRequest request = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .addParam("key", "a b").toRequest();
+
+    // When
+    final UrlResponse response1 = request.execute(ImmutableMap.of("q", "1&2"));
+    final UrlResponse response2 = request.execute();
+
+    // Then
+    assertEquals(response1.getContent(), "key=a+b&q=1%262");
+    assertEquals(response2.getContent(), "key=a+b");
+  }
+
+  /**
+   * Tests {@link UrlRequest#executeAsync(java.util.Map)} method, which should allow one
+   * request to be executed concurrently.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecuteAsync_shouldExecuteConcurrently() throws Exception {
+    // Given
+    final UrlRequest request = new UrlFetcher().setUrl(getBaseUrl() + "/testecho").toRequest();
+    final List<ListenableFuture<UrlResponse>> futures = Lists.newArrayList();
+
+    // When
+    for (int i = 0; i < EXECUTIONS; i += 1) {
+      futures.add(request.executeAsync(ImmutableMap.of("i", String.valueOf(i))));
+    }
+
+    // Then
+    final List<UrlResponse> responses = Futures.allAsList(futures).get();
+    for (int i = 0; i < EXECUTIONS; i += 1) {
+      assertEquals(responses.get(i).getContent(), "i=" + i);
+    }
+  }
+
+  /**
+   * Tests {@link UrlFetcher#execute()} method, which should leave the URL fetcher unchanged so
+   * that it can be executed again.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldNotChangeUrlFetcher() throws Exception {
+    // Given
+    final UrlFetcher urlFetcher = new UrlFetcher().setUrl(getBaseUrl() + "/testecho")
+        .addParam("key", "value");
+
+    // When
+    urlFetcher.execute();
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), "key=value");
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
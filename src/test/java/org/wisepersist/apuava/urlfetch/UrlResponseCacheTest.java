@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.inject.servlet.GuiceServletContextListener;
+
+import org.testng.annotations.Test;
+
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link UrlResponseCache} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlResponseCacheTest extends AbstractHttpServerSupport {
+
+  /**
+   * Tests that a fresh response is served from the cache without a network call.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldServeFreshResponseFromCache() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+    final UrlFetcher urlFetcher = newFetcher(cache, "max-age=60", "fresh");
+    final int fullResponses = TestCacheServlet.getFullResponses();
+
+    // When
+    urlFetcher.execute();
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(TestCacheServlet.getFullResponses(), fullResponses + 1);
+    assertEquals(cache.getStats().getHits(), 1);
+    assertEquals(cache.getStats().getMisses(), 1);
+  }
+
+  /**
+   * Tests that a stale response is revalidated with a conditional request.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldRevalidateStaleResponse() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+    final UrlFetcher urlFetcher = newFetcher(cache, "no-cache", "stale");
+    final int fullResponses = TestCacheServlet.getFullResponses();
+
+    // When
+    urlFetcher.execute();
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getStatusCode(), HttpURLConnection.HTTP_OK);
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(TestCacheServlet.getFullResponses(), fullResponses + 1);
+    assertEquals(cache.getStats().getNotModified(), 1);
+  }
+
+  /**
+   * Tests that the headers of a 304 response replace the stored ones.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldMergeNotModifiedHeaders() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+    final UrlFetcher urlFetcher = newFetcher(cache, "no-cache", "merge");
+
+    // When
+    final UrlResponse first = urlFetcher.execute();
+    final UrlResponse second = urlFetcher.execute();
+
+    // Then
+    final long firstCount = first.getHeaders().getLong(TestCacheServlet.RESPONSE_COUNT, 0L);
+    assertEquals(second.getHeaders().getLong(TestCacheServlet.RESPONSE_COUNT, 0L),
+        firstCount + 1);
+    assertEquals(second.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(cache.getStats().getNotModified(), 1);
+  }
+
+  /**
+   * Tests that an entry is only served to requests with the same values of the Vary headers.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldMatchVaryHeaders() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+
+    // When
+    newFetcher(cache, "max-age=60", "vary").addParam("vary", "Accept-Language")
+        .addHeader("Accept-Language", "en").execute();
+    newFetcher(cache, "max-age=60", "vary").addParam("vary", "Accept-Language")
+        .addHeader("Accept-Language", "de").execute();
+    newFetcher(cache, "max-age=60", "vary").addParam("vary", "Accept-Language")
+        .addHeader("Accept-Language", "de").execute();
+
+    // Then
+    assertEquals(cache.getStats().getHits(), 1);
+    assertEquals(cache.getStats().getMisses(), 2);
+  }
+
+  /**
+   * Tests that responses with {@code Vary: *} aren't cached.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldNotStoreVaryAnyResponse() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+    final UrlFetcher urlFetcher =
+        newFetcher(cache, "max-age=60", "varyany").addParam("vary", "*");
+
+    // When
+    urlFetcher.execute();
+    urlFetcher.execute();
+
+    // Then
+    assertEquals(cache.getStats().getHits(), 0);
+    assertEquals(cache.getStats().getMisses(), 2);
+  }
+
+  /**
+   * Tests that no-store responses aren't cached.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldNotStoreNoStoreResponse() throws Exception {
+    // Given
+    final UrlResponseCache cache = new UrlResponseCache(1024 * 1024);
+    final UrlFetcher urlFetcher = newFetcher(cache, "no-store", "nostore");
+
+    // When
+    urlFetcher.execute();
+    urlFetcher.execute();
+
+    // Then
+    assertEquals(cache.getStats().getHits(), 0);
+    assertEquals(cache.getStats().getMisses(), 2);
+  }
+
+  /**
+   * Tests that entries evicted from memory are served from the disk tier.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testExecute_shouldServeEvictedResponseFromDisk() throws Exception {
+    // Given
+    final Path directory = Files.createTempDirectory("apuava-cache");
+    final DiskCacheStore disk = new DiskCacheStore(directory, 1024 * 1024);
+    final UrlResponseCache cache = new UrlResponseCache(0, disk);
+    final UrlFetcher urlFetcher = newFetcher(cache, "max-age=60", "disk");
+
+    // When
+    urlFetcher.execute();
+    final UrlResponse response = urlFetcher.execute();
+
+    // Then
+    assertEquals(response.getContent(), TestWelcomeServlet.WELCOME_MESSAGE);
+    assertEquals(cache.getStats().getHits(), 1);
+    cache.clear();
+  }
+
+  /**
+   * Creates a URL fetcher of the cache test servlet.
+   *
+   * @param cache The response cache.
+   * @param cacheControl The Cache-Control header the servlet answers with.
+   * @param id The parameter which makes the URL unique.
+   * @return The URL fetcher created.
+   */
+  private UrlFetcher newFetcher(final UrlResponseCache cache, final String cacheControl,
+      final String id) {
+    return new UrlFetcher().setUrl(getBaseUrl() + "/testcache").setResponseCache(cache)
+        .addParam("cc", cacheControl).addParam("id", id);
+  }
+
+  @Override
+  protected final GuiceServletContextListener getGuiceServletContextListener() {
+    return new TestAppGuiceConfig();
+  }
+
+  @Override
+  protected final String getWelcomeServiceMessage() {
+    return TestWelcomeServlet.WELCOME_MESSAGE;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 WisePersist.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wisepersist.apuava.urlfetch;
+
+import com.google.common.base.Charsets;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link UrlResponse} class.
+ *
+ * @author delight.wjk@gmail.com
+ */
+public class UrlResponseTest {
+
+  private static final int STATUS_OK = 200;
+
+  /**
+   * Tests {@link UrlResponse#getContent()} method, which should decode the body bytes.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetContent_shouldDecodeBody() throws Exception {
+    // Given
+    final String content = "Welcome à URLFetch";
+
+    // When
+    final UrlResponse response = new UrlResponse(STATUS_OK, content.getBytes(Charsets.UTF_8));
+
+    // Then
+    assertEquals(response.getContent(), content);
+    assertEquals(response.getContentLength(), content.getBytes(Charsets.UTF_8).length);
+  }
+
+  /**
+   * Tests {@link UrlResponse#getByteBuffer()} method, which should return a read-only view.
+   *
+   * @throws Exception If uncaught errors occur.
+   */
+  @Test
+  public final void testGetByteBuffer_shouldBeReadOnly() throws Exception {
+    // Given
+    final UrlResponse response = new UrlResponse(STATUS_OK, "content");
+
+    // When
+    final ByteBuffer buffer = response.getByteBuffer();
+
+    // Then
+    assertTrue(buffer.isReadOnly());
+    assertEquals(buffer.remaining(), response.getBytes().length);
+  }
+}